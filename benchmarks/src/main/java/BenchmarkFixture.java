@@ -0,0 +1,142 @@
+/**
+ * BenchmarkFixture class implements benchmarks.Fixture against the application
+ * classes, which like this class are in the default package.
+ *
+ * The data comes from DataGenerator with its default seed, written to a temporary
+ * file and loaded, so benchmarks see the same data as DataGenerator runs with the
+ * same settings. The task limit is turned off so the largest sizes fit.
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class BenchmarkFixture implements benchmarks.Fixture {
+
+    private static final char[] TASK_TYPES = {'A', 'S', 'L'};
+
+    private ProjectStore projects = new ProjectStore();
+    private Project[] projectList = new Project[0];
+    private Project busiest;
+
+    // Project changeOneTask() changes next
+    private int nextChange;
+
+    @Override
+    public void populate(int taskCount) {
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.UNLIMITED);
+        DataGenerator generator = new DataGenerator();
+        generator.setTaskCount(taskCount);
+        generator.setCompletedFraction(0.25);
+
+        try {
+            Path file = Files.createTempFile("benchmark", ".txt");
+            try {
+                generator.generate(file);
+                projects = new ProjectDataLoader().load(file.toFile());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        projectList = new Project[projects.size()];
+        int i = 0;
+        for (Project p : projects) {
+            projectList[i++] = p;
+        }
+        busiest = projects.get(1);
+        nextChange = 0;
+    }
+
+    @Override
+    public int load(Path file) throws IOException {
+        return new ProjectDataLoader().load(file.toFile()).getCompletionIndex().getTaskCount();
+    }
+
+    @Override
+    public void save(Path file) throws IOException {
+        new ProjectDataWriter().save(projects, file);
+    }
+
+    @Override
+    public int saveChanges(Path file) throws IOException {
+        return new ProjectDataWriter().saveChanges(projects, file);
+    }
+
+    @Override
+    public void changeOneTask() {
+        Project p = projectList[nextChange];
+        nextChange = (nextChange + 1) % projectList.length;
+        for (Task t : p.getTasks()) {
+            if (t != null) {
+                t.setCompleted(!t.isCompleted());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public double summary() {
+        double checksum = 0;
+        DurationStats all = projects.getDurationStats();
+        for (char type : TASK_TYPES) {
+            checksum += all.getAverage(type) + all.getCount(type);
+        }
+        for (Project p : projects) {
+            DurationStats stats = p.getDurationStats();
+            for (char type : TASK_TYPES) {
+                checksum += stats.getAverage(type) + stats.getTotal(type);
+            }
+        }
+        return checksum;
+    }
+
+    @Override
+    public int filterByType(char type) {
+        int visited = 0;
+        for (Task t : projects.getTasksByType(type)) {
+            if (t.getProject() != null) visited++;
+        }
+        return visited;
+    }
+
+    @Override
+    public int completedScan() {
+        int visited = 0;
+        for (Task t : projects.getCompletionIndex().completedTasks()) {
+            if (t.isCompleted()) visited++;
+        }
+        return visited;
+    }
+
+    @Override
+    public long query(String query) {
+        return TaskQuery.parse(query).run(projects).getMatchCount();
+    }
+
+    @Override
+    public int projectIdChurn() {
+        if (!projects.hasAvailableId()) {
+            return 0;
+        }
+        int id = projects.nextFreeId();
+        Project p = new Project();
+        p.setProjectId(id);
+        projects.add(p);
+        projects.remove(id);
+        return id;
+    }
+
+    @Override
+    public int taskIdChurn() {
+        if (!busiest.hasFreeTaskId()) {
+            return 0;
+        }
+        int id = busiest.nextFreeTaskId();
+        busiest.addTask(new Task(id, "Churn", 'A', 1, false));
+        busiest.removeTask(id);
+        return id;
+    }
+}
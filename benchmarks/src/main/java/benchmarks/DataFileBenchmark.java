@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading and saving the text data file (Load and Save menu options).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class DataFileBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int taskCount;
+
+    private Fixture fixture;
+    private Path directory;
+    private Path loadFile;
+    private Path saveFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = Fixture.create();
+        fixture.populate(taskCount);
+        directory = Files.createTempDirectory("pms-bench");
+        loadFile = directory.resolve("ProjectData.txt");
+        saveFile = directory.resolve("Saved.txt");
+        fixture.save(loadFile);
+        fixture.save(saveFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(loadFile);
+        Files.deleteIfExists(saveFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int loadFromFile() throws IOException {
+        return fixture.load(loadFile);
+    }
+
+    @Benchmark
+    public void saveToFileInFull() throws IOException {
+        fixture.save(saveFile);
+    }
+
+    @Benchmark
+    public int saveToFileOneChange() throws IOException {
+        fixture.changeOneTask();
+        return fixture.saveChanges(saveFile);
+    }
+
+    @Benchmark
+    public int saveToFileNoChanges() throws IOException {
+        return fixture.saveChanges(saveFile);
+    }
+}
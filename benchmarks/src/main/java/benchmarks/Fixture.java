@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Fixture is what the benchmarks call to reach the application.
+ *
+ * The application classes are in the default package, which code in a named
+ * package cannot refer to, and JMH will not generate benchmarks in the default
+ * package. BenchmarkFixture sits in the default package and implements this
+ * interface; it is loaded by name once during setup, so each measured call is
+ * a plain interface call.
+ */
+public interface Fixture {
+
+    /**
+     * Creates the fixture with no projects.
+     * @return Fixture
+     */
+    static Fixture create() {
+        try {
+            return (Fixture) Class.forName("BenchmarkFixture").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkFixture is missing from the class path", e);
+        }
+    }
+
+    /**
+     * Replaces the projects with generated ones holding the given number of tasks in total.
+     * The same count always gives the same projects.
+     * @param taskCount int
+     */
+    void populate(int taskCount);
+
+    /**
+     * Loads a data file the way the Load menu option does.
+     * @return The number of tasks loaded.
+     */
+    int load(Path file) throws IOException;
+
+    /**
+     * Writes every project to a data file in full.
+     */
+    void save(Path file) throws IOException;
+
+    /**
+     * Saves the projects the way the Save menu option does, writing only what changed.
+     * @return The number of project segments written.
+     */
+    int saveChanges(Path file) throws IOException;
+
+    /**
+     * Flips one task's completion, moving on to another project each call.
+     */
+    void changeOneTask();
+
+    /**
+     * Works out the figures the Display Project Summary option prints.
+     * @return A checksum of the figures.
+     */
+    double summary();
+
+    /**
+     * Visits every task of a type, as Filter Tasks by Type does.
+     * @return The number of tasks visited.
+     */
+    int filterByType(char type);
+
+    /**
+     * Visits every completed task.
+     * @return The number of tasks visited.
+     */
+    int completedScan();
+
+    /**
+     * Runs a task query (query text as in the Query Tasks menu option).
+     * @return The number of matching tasks.
+     */
+    long query(String query);
+
+    /**
+     * Takes the next free project ID and gives it back.
+     * @return The ID, or 0 if every ID is in use.
+     */
+    int projectIdChurn();
+
+    /**
+     * Takes the next free task ID in the project with the most tasks and gives it back.
+     * @return The ID, or 0 if every ID is in use.
+     */
+    int taskIdChurn();
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handing out free project and task IDs as the ID ranges fill up.
+ * At 10000 tasks and more every project ID is in use, and so is every task ID
+ * in the busiest project, so those sizes measure how fast running out is detected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class IdBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int taskCount;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = Fixture.create();
+        fixture.populate(taskCount);
+    }
+
+    @Benchmark
+    public int projectId() {
+        return fixture.projectIdChurn();
+    }
+
+    @Benchmark
+    public int taskId() {
+        return fixture.taskIdChurn();
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reports over all projects (Display Project Summary, Filter Tasks by Type,
+ * Display Completed Tasks and Query Tasks menu options), without the printing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class QueryBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int taskCount;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = Fixture.create();
+        fixture.populate(taskCount);
+    }
+
+    @Benchmark
+    public double summary() {
+        return fixture.summary();
+    }
+
+    @Benchmark
+    public int filterTasksByType() {
+        return fixture.filterByType('A');
+    }
+
+    @Benchmark
+    public int completedTaskScan() {
+        return fixture.completedScan();
+    }
+
+    @Benchmark
+    public long taskQueryTopTen() {
+        return fixture.query("type=A completed=false duration=20..80 sort=-duration,description limit=10");
+    }
+
+    @Benchmark
+    public long taskQueryCount() {
+        return fixture.query("type=S count");
+    }
+}
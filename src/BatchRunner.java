@@ -0,0 +1,270 @@
+/**
+ * BatchRunner class runs project and task commands from a file or stdin
+ * without the interactive menu, for bulk changes and scripted runs.
+ *
+ * One command per line, with comma-separated fields like the data file format.
+ * Blank lines and lines starting with # are ignored.
+ *
+ *   create-project,ID,Name,Type
+ *   remove-project,ID
+ *   add-task,ProjectID,TaskID,Description,Type,Duration[,Completed]
+ *   remove-task,ProjectID,TaskID
+ *   complete,ProjectID,TaskID
+ *   report
+ *   list
+ *   query,Terms         e.g. query,type=A completed=false sort=-duration limit=10 (see TaskQuery)
+ *   load,File
+ *   save,File
+ *
+ * A command that fails is reported with its line number and the run carries on.
+ * The number of commands run and the throughput are printed at the end.
+ */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class BatchRunner {
+
+    // Task types and their names, in report order
+    private static final char[] TASK_TYPES = {'A', 'S', 'L'};
+    private static final String[] TASK_TYPE_NAMES = {"Admin", "Support", "Logistics"};
+
+    private final ProjectService service;
+    private final OutputStream outStream;
+    private final PrintWriter out;
+
+    private int commandCount;
+    private int failedCount;
+
+    /**
+     * Creates a runner that works on the projects behind the given service.
+     *
+     * @param service The projects to change.
+     * @param outStream Where reports and errors are written.
+     */
+    public BatchRunner(ProjectService service, OutputStream outStream) {
+        this.service = service;
+        this.outStream = outStream;
+        this.out = new PrintWriter(new OutputStreamWriter(outStream, StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * Runs every command from the reader, then prints the throughput.
+     *
+     * @param in The commands to run.
+     * @throws IOException if the commands cannot be read.
+     */
+    public void run(BufferedReader in) throws IOException {
+        long start = System.nanoTime();
+        int lineNumber = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            commandCount++;
+            try {
+                execute(line.split(",", -1));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                failedCount++;
+                out.println("[ERROR] Line " + lineNumber + ": " + e.getMessage());
+            } catch (IOException | UncheckedIOException e) {
+                failedCount++;
+                out.println("[ERROR] Line " + lineNumber + ": " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.printf("Ran %d commands (%d failed) in %.3f s, %.0f commands/s%n",
+                commandCount, failedCount, seconds, (seconds > 0) ? commandCount / seconds : 0);
+        out.flush();
+    }
+
+    /**
+     * Gets the number of commands that failed.
+     * @return count as int
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    // -------------------------------------------------------------------------
+    // Commands
+    // -------------------------------------------------------------------------
+
+    private void execute(String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+
+        switch (fields[0].toLowerCase()) {
+            case "create-project": createProject(fields); break;
+            case "remove-project": removeProject(fields); break;
+            case "add-task": addTask(fields); break;
+            case "remove-task": removeTask(fields); break;
+            case "complete": completeTask(fields); break;
+            case "report": expectFields(fields, 1); report(); break;
+            case "list": expectFields(fields, 1); list(); break;
+            case "query": query(fields); break;
+            case "load": load(fields); break;
+            case "save": save(fields); break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + fields[0]);
+        }
+    }
+
+    private void createProject(String[] fields) {
+        expectFields(fields, 4);
+        service.createProject(parseNumber(fields[1], "project ID"), fields[2], fields[3]);
+    }
+
+    private void removeProject(String[] fields) {
+        expectFields(fields, 2);
+        int id = parseNumber(fields[1], "project ID");
+        if (!service.removeProject(id)) {
+            throw new IllegalArgumentException("No project with ID " + id);
+        }
+    }
+
+    private void addTask(String[] fields) {
+        if (fields.length != 6 && fields.length != 7) {
+            throw new IllegalArgumentException("add-task expects ProjectID,TaskID,Description,Type,Duration[,Completed]");
+        }
+        if (fields[4].length() != 1) {
+            throw new IllegalArgumentException("Invalid task type: " + fields[4]);
+        }
+        boolean completed = fields.length == 7 && fields[6].equalsIgnoreCase("true");
+        service.addTask(parseNumber(fields[1], "project ID"), parseNumber(fields[2], "task ID"),
+                fields[3], fields[4].charAt(0), parseNumber(fields[5], "task duration"), completed);
+    }
+
+    private void removeTask(String[] fields) {
+        expectFields(fields, 3);
+        int projectId = parseNumber(fields[1], "project ID");
+        int taskId = parseNumber(fields[2], "task ID");
+        if (!service.removeTask(projectId, taskId)) {
+            throw new IllegalArgumentException("No task with ID " + taskId + " in project " + projectId);
+        }
+    }
+
+    private void completeTask(String[] fields) {
+        expectFields(fields, 3);
+        service.completeTask(parseNumber(fields[1], "project ID"), parseNumber(fields[2], "task ID"));
+    }
+
+    /**
+     * Prints project, task and completion counts and the average, median, 90th and
+     * 99th percentile duration of each task type.
+     */
+    private void report() {
+        service.readAllIndexed(projects -> {
+            reportLocked(projects);
+            return null;
+        });
+    }
+
+    private void reportLocked(ProjectStore projects) {
+        DurationStats stats = projects.getDurationStats();
+        CompletionIndex completion = projects.getCompletionIndex();
+        out.println("Projects: " + projects.size()
+                + " | Tasks: " + completion.getTaskCount()
+                + " | Completed: " + completion.getCompletedCount());
+        for (int i = 0; i < TASK_TYPES.length; i++) {
+            char type = TASK_TYPES[i];
+            out.println(TASK_TYPE_NAMES[i] + ": " + stats.getCount(type) + " tasks, average "
+                    + stats.formatAverage(type) + " hours, median " + stats.getMedian(type)
+                    + ", p90 " + stats.getPercentile(type, 90) + ", p99 " + stats.getPercentile(type, 99));
+        }
+    }
+
+    /**
+     * Prints every project and task in the data file format.
+     * Only reads the projects, so other readers are not held up.
+     */
+    private void list() throws IOException {
+        out.flush();
+        try {
+            service.readAllIndexed(projects -> {
+                try {
+                    new ProjectDataWriter().write(projects, outStream);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Prints the matching tasks with the chosen fields separated by commas, then the match count and plan.
+     */
+    private void query(String[] fields) {
+        if (fields.length < 2) {
+            throw new IllegalArgumentException("query expects query terms, e.g. query,type=A limit=10");
+        }
+        // The terms may hold commas themselves (fields=taskId,duration)
+        TaskQuery query = TaskQuery.parse(String.join(",", Arrays.copyOfRange(fields, 1, fields.length)));
+        TaskQuery.Result result = service.query(query);
+
+        if (!query.isCountOnly()) {
+            StringBuilder row = new StringBuilder();
+            for (TaskQuery.Match match : result.getMatches()) {
+                row.setLength(0);
+                for (TaskQuery.Field field : query.getFields()) {
+                    if (row.length() > 0) row.append(',');
+                    row.append(field.valueOf(match));
+                }
+                out.println(row);
+            }
+        }
+        out.println((result.isComplete() ? "Matches: " : "Matches (stopped at limit): ")
+                + result.getMatchCount() + " | Plan: " + result.getPlan());
+    }
+
+    private void load(String[] fields) throws IOException {
+        expectFields(fields, 2);
+        // The loader prints its warnings straight to System.out
+        out.flush();
+        service.replaceAll(new ProjectDataLoader().load(new File(fields[1])));
+    }
+
+    private void save(String[] fields) throws IOException {
+        expectFields(fields, 2);
+        if (service.isJournaled(Paths.get(fields[1]))) {
+            // Every change was saved to the journal when it was made
+            return;
+        }
+        service.writeAll(projects -> new ProjectDataWriter().saveChanges(projects, Paths.get(fields[1])));
+    }
+
+    // -------------------------------------------------------------------------
+    // Field Helpers
+    // -------------------------------------------------------------------------
+
+    private static void expectFields(String[] fields, int count) {
+        if (fields.length != count) {
+            throw new IllegalArgumentException(fields[0] + " expects " + (count - 1) + " field(s), got " + (fields.length - 1));
+        }
+    }
+
+    private static int parseNumber(String field, String name) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + field);
+        }
+    }
+}
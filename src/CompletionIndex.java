@@ -0,0 +1,198 @@
+/**
+ * CompletionIndex class tracks which tasks are completed using bitmaps.
+ * Every indexed task is given a dense ordinal (its bit position), and freed
+ * ordinals are reused so the bitmaps stay compact.
+ *
+ * Listing completed or incomplete tasks only visits the set bits, and the
+ * counts are kept as running totals.
+ */
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class CompletionIndex {
+
+    // Ordinal -> task, null for free ordinals
+    private Task[] tasks = new Task[16];
+
+    // Bits set for completed and incomplete tasks, by ordinal
+    private final BitSet completed = new BitSet();
+    private final BitSet incomplete = new BitSet();
+
+    // Ordinals given back by removed tasks, reused before new ones
+    private int[] freeOrdinals = new int[16];
+    private int freeCount;
+
+    // Next never-used ordinal
+    private int nextOrdinal;
+
+    private int completedCount;
+    private int incompleteCount;
+
+    /**
+     * Adds a task and gives it an ordinal.
+     * @param task Task not already in the index
+     */
+    public void add(Task task) {
+        int ordinal;
+        if (freeCount > 0) {
+            ordinal = freeOrdinals[--freeCount];
+        } else {
+            ordinal = nextOrdinal++;
+            if (ordinal == tasks.length) {
+                tasks = Arrays.copyOf(tasks, tasks.length * 2);
+            }
+        }
+
+        tasks[ordinal] = task;
+        task.setOrdinal(ordinal);
+        mark(ordinal, task.isCompleted());
+    }
+
+    /**
+     * Removes a task and frees its ordinal.
+     * @param task Task in the index
+     */
+    public void remove(Task task) {
+        int ordinal = task.getOrdinal();
+        if (ordinal < 0 || tasks[ordinal] != task) {
+            return;
+        }
+
+        unmark(ordinal);
+        tasks[ordinal] = null;
+        task.setOrdinal(-1);
+
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeOrdinals.length * 2);
+        }
+        freeOrdinals[freeCount++] = ordinal;
+    }
+
+    /**
+     * Updates the bitmaps after a task was marked completed or not completed.
+     * @param task Task in the index
+     */
+    public void completionChanged(Task task) {
+        int ordinal = task.getOrdinal();
+        if (ordinal < 0 || tasks[ordinal] != task) {
+            return;
+        }
+        unmark(ordinal);
+        mark(ordinal, task.isCompleted());
+    }
+
+    /**
+     * Gets the task at an ordinal.
+     * @param ordinal int
+     * @return Task, or null if no task has that ordinal
+     */
+    public Task getTask(int ordinal) {
+        return (ordinal < 0 || ordinal >= nextOrdinal) ? null : tasks[ordinal];
+    }
+
+    /**
+     * Gets the number of completed tasks.
+     * @return count as int
+     */
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    /**
+     * Gets the number of tasks not yet completed.
+     * @return count as int
+     */
+    public int getIncompleteCount() {
+        return incompleteCount;
+    }
+
+    /**
+     * Gets the number of tasks in the index.
+     * @return count as int
+     */
+    public int getTaskCount() {
+        return completedCount + incompleteCount;
+    }
+
+    /**
+     * Gets every completed task, in ordinal order.
+     * @return Iterable of Task
+     */
+    public Iterable<Task> completedTasks() {
+        return () -> new BitIterator(completed);
+    }
+
+    /**
+     * Gets every task not yet completed, in ordinal order.
+     * @return Iterable of Task
+     */
+    public Iterable<Task> incompleteTasks() {
+        return () -> new BitIterator(incomplete);
+    }
+
+    /**
+     * Removes every task from the index.
+     */
+    public void clear() {
+        for (int i = 0; i < nextOrdinal; i++) {
+            if (tasks[i] != null) tasks[i].setOrdinal(-1);
+        }
+        Arrays.fill(tasks, null);
+        completed.clear();
+        incomplete.clear();
+        freeCount = 0;
+        nextOrdinal = 0;
+        completedCount = 0;
+        incompleteCount = 0;
+    }
+
+    private void mark(int ordinal, boolean isCompleted) {
+        if (isCompleted) {
+            completed.set(ordinal);
+            completedCount++;
+        } else {
+            incomplete.set(ordinal);
+            incompleteCount++;
+        }
+    }
+
+    private void unmark(int ordinal) {
+        if (completed.get(ordinal)) {
+            completed.clear(ordinal);
+            completedCount--;
+        } else if (incomplete.get(ordinal)) {
+            incomplete.clear(ordinal);
+            incompleteCount--;
+        }
+    }
+
+    /**
+     * Walks the set bits of a bitmap, returning the task at each ordinal.
+     */
+    private class BitIterator implements Iterator<Task> {
+        private final BitSet bits;
+        private int next;
+
+        BitIterator(BitSet bits) {
+            this.bits = bits;
+            this.next = bits.nextSetBit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public Task next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            Task task = tasks[next];
+            next = bits.nextSetBit(next + 1);
+            return task;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/**
+ * DataGenerator class writes synthetic data files in the text format read by
+ * ProjectDataLoader, for load testing and benchmarks.
+ *
+ * The same settings and seed always give the same file, byte for byte, so
+ * benchmarks and regression runs can share inputs without checking them in.
+ *
+ * Projects get IDs from 1 up (at most ProjectStore.MAX_PROJECT_ID of them) and the
+ * tasks are split evenly between them. Each project numbers its tasks from 1, starting
+ * again after Project.DEFAULT_MAX_TASK_ID as the loader accepts repeated task IDs.
+ * Projects with more tasks than their type allows need --task-limits unlimited to load in full.
+ *
+ * Malformed lines, in the style of CursedData.txt, are inserted between the valid
+ * lines, so the valid projects and tasks are the same whatever the malformed fraction.
+ *
+ * Usage: java DataGenerator [options] FILE   (FILE "-" writes to stdout)
+ *   --tasks N               total tasks (default 1000)
+ *   --projects N            number of projects (default one per 10 tasks, 1 to 999)
+ *   --types A:S:L           relative weights of task types (default 1:1:1)
+ *   --completed FRACTION    share of tasks marked completed (default 0.3)
+ *   --durations SPEC        uniform:MIN-MAX (default uniform:1-100), normal:MEAN,SD or exponential:MEAN
+ *   --malformed FRACTION    malformed lines inserted per valid line (default 0)
+ *   --seed N                random seed (default 42)
+ */
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+public class DataGenerator {
+
+    public static final long DEFAULT_SEED = 42;
+
+    private static final char[] TASK_TYPES = {'A', 'S', 'L'};
+    private static final String[] PROJECT_TYPES = {"Small", "Medium", "Large"};
+
+    private static final String[] VERBS = {
+        "Write", "Review", "Install", "Update", "Test", "Plan", "Order", "Ship", "Fix", "Document"
+    };
+    private static final String[] NOUNS = {
+        "documentation", "dependencies", "budget", "server", "timeline", "supplies",
+        "release", "workspace", "report", "contracts"
+    };
+
+    // Same line ending ProjectDataWriter uses
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // Duration distributions
+    private static final int UNIFORM = 0;
+    private static final int NORMAL = 1;
+    private static final int EXPONENTIAL = 2;
+
+    // Settings
+    private long taskCount = 1000;
+    private int projectCount = -1;
+    private final double[] typeWeights = {1, 1, 1};
+    private double completedFraction = 0.3;
+    private int durationDistribution = UNIFORM;
+    private double durationA = 1;
+    private double durationB = 100;
+    private double malformedFraction;
+    private long seed = DEFAULT_SEED;
+
+    // Counts from the last run
+    private long linesWritten;
+    private long malformedWritten;
+
+    // -------------------------------------------------------------------------
+    // Settings
+    // -------------------------------------------------------------------------
+
+    /**
+     * Sets the total number of tasks.
+     * @param taskCount long, 0 or more
+     */
+    public void setTaskCount(long taskCount) {
+        if (taskCount < 0) {
+            throw new IllegalArgumentException("Task count cannot be negative: " + taskCount);
+        }
+        this.taskCount = taskCount;
+    }
+
+    /**
+     * Sets the number of projects. By default there is one per 10 tasks.
+     * @param projectCount int, from 1 to ProjectStore.MAX_PROJECT_ID
+     */
+    public void setProjectCount(int projectCount) {
+        if (projectCount < 1 || projectCount > ProjectStore.MAX_PROJECT_ID) {
+            throw new IllegalArgumentException("Project count must be from 1 to " + ProjectStore.MAX_PROJECT_ID
+                    + ": " + projectCount);
+        }
+        this.projectCount = projectCount;
+    }
+
+    /**
+     * Sets the relative weights of the task types.
+     * @param admin double
+     * @param support double
+     * @param logistics double
+     */
+    public void setTypeWeights(double admin, double support, double logistics) {
+        if (admin < 0 || support < 0 || logistics < 0 || admin + support + logistics <= 0) {
+            throw new IllegalArgumentException("Task type weights must not be negative and must not all be 0");
+        }
+        typeWeights[0] = admin;
+        typeWeights[1] = support;
+        typeWeights[2] = logistics;
+    }
+
+    /**
+     * Sets the share of tasks marked completed.
+     * @param fraction double, from 0 to 1
+     */
+    public void setCompletedFraction(double fraction) {
+        this.completedFraction = checkFraction(fraction, "Completed fraction");
+    }
+
+    /**
+     * Draws task durations evenly from min to max.
+     * @param min int
+     * @param max int
+     */
+    public void setUniformDurations(int min, int max) {
+        if (min < 1 || max > 100 || min > max) {
+            throw new IllegalArgumentException("Uniform durations need 1 <= MIN <= MAX <= 100: " + min + "-" + max);
+        }
+        durationDistribution = UNIFORM;
+        durationA = min;
+        durationB = max;
+    }
+
+    /**
+     * Draws task durations from a normal distribution, kept between 1 and 100.
+     * @param mean double
+     * @param standardDeviation double
+     */
+    public void setNormalDurations(double mean, double standardDeviation) {
+        if (standardDeviation < 0) {
+            throw new IllegalArgumentException("Standard deviation cannot be negative: " + standardDeviation);
+        }
+        durationDistribution = NORMAL;
+        durationA = mean;
+        durationB = standardDeviation;
+    }
+
+    /**
+     * Draws task durations from an exponential distribution, kept between 1 and 100.
+     * Gives many short tasks and a few long ones.
+     * @param mean double
+     */
+    public void setExponentialDurations(double mean) {
+        if (mean <= 0) {
+            throw new IllegalArgumentException("Mean duration must be above 0: " + mean);
+        }
+        durationDistribution = EXPONENTIAL;
+        durationA = mean;
+    }
+
+    /**
+     * Sets how many malformed lines are inserted for each valid line, on average.
+     * @param fraction double, from 0 to 1
+     */
+    public void setMalformedFraction(double fraction) {
+        this.malformedFraction = checkFraction(fraction, "Malformed fraction");
+    }
+
+    /**
+     * Sets the random seed.
+     * @param seed long
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the number of lines written by the last run, valid and malformed.
+     * @return count as long
+     */
+    public long getLinesWritten() {
+        return linesWritten;
+    }
+
+    /**
+     * Gets the number of malformed lines written by the last run.
+     * @return count as long
+     */
+    public long getMalformedWritten() {
+        return malformedWritten;
+    }
+
+    /**
+     * Gets the number of projects a run writes.
+     * @return count as int
+     */
+    public int getProjectCount() {
+        if (projectCount > 0) {
+            return projectCount;
+        }
+        return (int) Math.max(1, Math.min(ProjectStore.MAX_PROJECT_ID, taskCount / 10));
+    }
+
+    // -------------------------------------------------------------------------
+    // Generating
+    // -------------------------------------------------------------------------
+
+    /**
+     * Writes a data file.
+     *
+     * @param file The file to create or replace.
+     * @throws IOException if the file cannot be written.
+     */
+    public void generate(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            generate(out);
+        }
+    }
+
+    /**
+     * Writes the data to a stream.
+     *
+     * @param out The stream to write to, it is flushed but not closed.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void generate(OutputStream out) throws IOException {
+        Random random = new Random(seed);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        StringBuilder line = new StringBuilder(64);
+        linesWritten = 0;
+        malformedWritten = 0;
+
+        int projects = getProjectCount();
+        long tasksPerProject = taskCount / projects;
+        long extraTasks = taskCount % projects;
+
+        for (int p = 1; p <= projects; p++) {
+            line.setLength(0);
+            line.append(p).append(",Project ").append(p).append(',')
+                .append(PROJECT_TYPES[random.nextInt(PROJECT_TYPES.length)]);
+            writeLine(writer, line, random);
+
+            long tasks = tasksPerProject + (p <= extraTasks ? 1 : 0);
+            for (long t = 1; t <= tasks; t++) {
+                line.setLength(0);
+                line.append(1 + (t - 1) % Project.DEFAULT_MAX_TASK_ID).append(',')
+                    .append(VERBS[random.nextInt(VERBS.length)]).append(' ')
+                    .append(NOUNS[random.nextInt(NOUNS.length)]).append(',')
+                    .append(taskType(random)).append(',')
+                    .append(duration(random)).append(',')
+                    .append(random.nextDouble() < completedFraction);
+                writeLine(writer, line, random);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes a valid line, with a malformed line before it now and then.
+     */
+    private void writeLine(Writer writer, StringBuilder line, Random random) throws IOException {
+        if (malformedFraction > 0 && random.nextDouble() < malformedFraction) {
+            writer.write(malformedLine(random));
+            writer.write(LINE_SEPARATOR);
+            linesWritten++;
+            malformedWritten++;
+        }
+        writer.append(line);
+        writer.write(LINE_SEPARATOR);
+        linesWritten++;
+    }
+
+    /**
+     * Makes a line the loader skips, picked from the kinds of mistakes in CursedData.txt.
+     * None of them change which project the following task lines belong to.
+     */
+    private static String malformedLine(Random random) {
+        int id = 1 + random.nextInt(99);
+        switch (random.nextInt(10)) {
+            case 0: return "This is a garbage line...";
+            case 1: return "Oops,this,is,not,right";
+            case 2: return (1000 + random.nextInt(9000)) + ",Project That Won't Fit,Large";
+            case 3: return id + ",Weird Name Project,ExtraLarge";
+            case 4: return id + ",BadTypeTask,Z,4,false";
+            case 5: return id + ",Write code,S," + -(1 + random.nextInt(10)) + ",false";
+            case 6: return id + ",X,L," + (101 + random.nextInt(5000)) + ",true";
+            case 7: return id + ",Invalid duration task,L,abc,false";
+            case 8: return id + ", ,A,5,true";
+            default: return ", , ,";
+        }
+    }
+
+    private char taskType(Random random) {
+        double pick = random.nextDouble() * (typeWeights[0] + typeWeights[1] + typeWeights[2]);
+        if (pick < typeWeights[0]) return TASK_TYPES[0];
+        if (pick < typeWeights[0] + typeWeights[1]) return TASK_TYPES[1];
+        return TASK_TYPES[2];
+    }
+
+    private int duration(Random random) {
+        double value;
+        switch (durationDistribution) {
+            case NORMAL:
+                value = durationA + durationB * random.nextGaussian();
+                break;
+            case EXPONENTIAL:
+                value = -durationA * Math.log(1 - random.nextDouble());
+                break;
+            default:
+                return (int) durationA + random.nextInt((int) (durationB - durationA) + 1);
+        }
+        return (int) Math.max(1, Math.min(100, Math.round(value)));
+    }
+
+    private static double checkFraction(double fraction, String name) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException(name + " must be from 0 to 1: " + fraction);
+        }
+        return fraction;
+    }
+
+    // -------------------------------------------------------------------------
+    // Command Line
+    // -------------------------------------------------------------------------
+
+    /**
+     * Generates a data file from the command line, see the class comment for the options.
+     */
+    public static void main(String[] args) {
+        DataGenerator generator = new DataGenerator();
+        String output = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--") || arg.equals("-")) {
+                    if (output != null) {
+                        throw new IllegalArgumentException("Only one output file can be given");
+                    }
+                    output = arg;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--tasks": generator.setTaskCount(Long.parseLong(value)); break;
+                    case "--projects": generator.setProjectCount(Integer.parseInt(value)); break;
+                    case "--types": parseTypeWeights(generator, value); break;
+                    case "--completed": generator.setCompletedFraction(Double.parseDouble(value)); break;
+                    case "--durations": parseDurations(generator, value); break;
+                    case "--malformed": generator.setMalformedFraction(Double.parseDouble(value)); break;
+                    case "--seed": generator.setSeed(Long.parseLong(value)); break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("No output file given");
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException
+            System.err.println("[ERROR] " + e.getMessage());
+            System.err.println("Usage: java DataGenerator [--tasks N] [--projects N] [--types A:S:L] [--completed F]"
+                    + " [--durations uniform:MIN-MAX|normal:MEAN,SD|exponential:MEAN] [--malformed F] [--seed N] FILE");
+            System.exit(2);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (output.equals("-")) {
+                generator.generate(System.out);
+            } else {
+                generator.generate(Paths.get(output));
+            }
+        } catch (IOException e) {
+            System.err.println("[ERROR] Failed to write " + output + ": " + e.getMessage());
+            System.exit(1);
+        }
+        System.err.printf("Wrote %d lines (%d malformed) for %d projects in %.3f s%n",
+                generator.getLinesWritten(), generator.getMalformedWritten(), generator.getProjectCount(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private static void parseTypeWeights(DataGenerator generator, String value) {
+        String[] weights = value.split(":");
+        if (weights.length != 3) {
+            throw new IllegalArgumentException("Task type weights must be A:S:L, e.g. 2:1:1");
+        }
+        generator.setTypeWeights(Double.parseDouble(weights[0]), Double.parseDouble(weights[1]),
+                Double.parseDouble(weights[2]));
+    }
+
+    private static void parseDurations(DataGenerator generator, String value) {
+        int colon = value.indexOf(':');
+        String kind = (colon < 0) ? value : value.substring(0, colon);
+        String[] numbers = (colon < 0) ? new String[0] : value.substring(colon + 1).split("[-,]");
+
+        if (kind.equals("uniform") && numbers.length == 2) {
+            generator.setUniformDurations(Integer.parseInt(numbers[0].trim()), Integer.parseInt(numbers[1].trim()));
+        } else if (kind.equals("normal") && numbers.length == 2) {
+            generator.setNormalDurations(Double.parseDouble(numbers[0].trim()), Double.parseDouble(numbers[1].trim()));
+        } else if (kind.equals("exponential") && numbers.length == 1) {
+            generator.setExponentialDurations(Double.parseDouble(numbers[0].trim()));
+        } else {
+            throw new IllegalArgumentException("Invalid durations: " + value
+                    + ". Expected uniform:MIN-MAX, normal:MEAN,SD or exponential:MEAN");
+        }
+    }
+}
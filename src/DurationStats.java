@@ -0,0 +1,329 @@
+/**
+ * DurationStats class keeps running totals of task durations for each task type
+ * (A = Admin, S = Support, L = Logistics).
+ * Totals are updated as tasks are added, removed or changed, so averages can be
+ * reported without looping over every task.
+ *
+ * Task durations run from 1 to 100 hours, so the number of tasks of each duration
+ * is kept as well. Counts of a duration range, percentiles and histograms are then
+ * read from those 100 counts, whatever the number of tasks. Durations outside
+ * 1-100 are counted together below 1 or above 100.
+ *
+ * Each project only keeps its totals (see DurationStats(boolean)), the counts of
+ * each duration are kept once for the whole store.
+ */
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+public class DurationStats {
+
+    // Task types in the order they are stored
+    private static final char[] TASK_TYPES = {'A', 'S', 'L'};
+
+    // Decimal places shown for averages that are not whole numbers
+    private static final int AVERAGE_SCALE = 2;
+
+    // Longest duration with its own count, longer ones are counted together
+    public static final int MAX_DURATION = 100;
+
+    private final long[] totals = new long[TASK_TYPES.length];
+    private final int[] counts = new int[TASK_TYPES.length];
+
+    // Task count by type and duration: index 0 for durations below 1, 1-100 for
+    // each duration, MAX_DURATION + 1 for durations above 100. Null if only totals are kept.
+    private final int[][] countsByDuration;
+
+    /**
+     * Creates empty totals that also count the tasks of each duration.
+     */
+    public DurationStats() {
+        this(true);
+    }
+
+    /**
+     * Creates empty totals.
+     * @param keepDurationCounts true to also count the tasks of each duration (for range
+     *        counts, percentiles and histograms), false to keep only the totals per type
+     */
+    public DurationStats(boolean keepDurationCounts) {
+        this.countsByDuration = keepDurationCounts ? new int[TASK_TYPES.length][MAX_DURATION + 2] : null;
+    }
+
+    /**
+     * Checks if the tasks of each duration are counted.
+     * @return true if range counts, percentiles and histograms can be read, false otherwise
+     */
+    public boolean keepsDurationCounts() {
+        return countsByDuration != null;
+    }
+
+    /**
+     * Adds a task's duration to the totals. Unknown task types are ignored.
+     * @param taskType char: A, S, or L
+     * @param duration int hours
+     */
+    public void add(char taskType, int duration) {
+        int i = typeIndex(taskType);
+        if (i >= 0) {
+            totals[i] += duration;
+            counts[i]++;
+            if (countsByDuration != null) {
+                countsByDuration[i][bucket(duration)]++;
+            }
+        }
+    }
+
+    /**
+     * Removes a task's duration from the totals. Unknown task types are ignored.
+     * @param taskType char: A, S, or L
+     * @param duration int hours
+     */
+    public void remove(char taskType, int duration) {
+        int i = typeIndex(taskType);
+        if (i >= 0) {
+            totals[i] -= duration;
+            counts[i]--;
+            if (countsByDuration != null) {
+                countsByDuration[i][bucket(duration)]--;
+            }
+        }
+    }
+
+    /**
+     * Adds all of another set of totals to these totals.
+     * @param other DurationStats, counting each duration if these totals do
+     * @throws IllegalArgumentException if these totals count each duration and the other ones do not.
+     */
+    public void addAll(DurationStats other) {
+        checkDurationCounts(other);
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += other.totals[i];
+            counts[i] += other.counts[i];
+            if (countsByDuration != null) {
+                for (int d = 0; d < countsByDuration[i].length; d++) {
+                    countsByDuration[i][d] += other.countsByDuration[i][d];
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all of another set of totals from these totals.
+     * @param other DurationStats, counting each duration if these totals do
+     * @throws IllegalArgumentException if these totals count each duration and the other ones do not.
+     */
+    public void removeAll(DurationStats other) {
+        checkDurationCounts(other);
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] -= other.totals[i];
+            counts[i] -= other.counts[i];
+            if (countsByDuration != null) {
+                for (int d = 0; d < countsByDuration[i].length; d++) {
+                    countsByDuration[i][d] -= other.countsByDuration[i][d];
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets every total to zero.
+     */
+    public void clear() {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = 0;
+            counts[i] = 0;
+            if (countsByDuration != null) {
+                Arrays.fill(countsByDuration[i], 0);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of tasks of a type.
+     * @param taskType char: A, S, or L
+     * @return task count as int
+     */
+    public int getCount(char taskType) {
+        int i = typeIndex(taskType);
+        return (i >= 0) ? counts[i] : 0;
+    }
+
+    /**
+     * Gets the total duration of the tasks of a type.
+     * @param taskType char: A, S, or L
+     * @return total hours as long
+     */
+    public long getTotal(char taskType) {
+        int i = typeIndex(taskType);
+        return (i >= 0) ? totals[i] : 0;
+    }
+
+    /**
+     * Gets the exact average duration of the tasks of a type.
+     * @param taskType char: A, S, or L
+     * @return average hours, or 0 if there are no tasks of that type
+     */
+    public double getAverage(char taskType) {
+        int count = getCount(taskType);
+        return (count > 0) ? (double) getTotal(taskType) / count : 0;
+    }
+
+    /**
+     * Formats the average duration of a type for display.
+     * Whole numbers are shown as they are (e.g. "5"), others to two decimal places (e.g. "4.5", "3.33").
+     * @param taskType char: A, S, or L
+     * @return average hours as String
+     */
+    public String formatAverage(char taskType) {
+        int count = getCount(taskType);
+        if (count == 0) {
+            return "0";
+        }
+        return BigDecimal.valueOf(getTotal(taskType))
+                .divide(BigDecimal.valueOf(count), AVERAGE_SCALE, RoundingMode.HALF_UP)
+                .stripTrailingZeros()
+                .toPlainString();
+    }
+
+    // -------------------------------------------------------------------------
+    // Duration distribution
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets the number of tasks of a type with a duration in a range.
+     * Tasks with durations outside 1-100 are counted if the range reaches below 1
+     * or above 100 (see getOutOfRangeCount).
+     *
+     * @param taskType char: A, S, or L
+     * @param minDuration int hours, inclusive
+     * @param maxDuration int hours, inclusive
+     * @return task count as int
+     * @throws IllegalStateException if the tasks of each duration are not counted
+     */
+    public int getCountInRange(char taskType, int minDuration, int maxDuration) {
+        requireDurationCounts();
+        int i = typeIndex(taskType);
+        if (i < 0 || minDuration > maxDuration) {
+            return 0;
+        }
+        int count = 0;
+        for (int d = bucket(minDuration); d <= bucket(maxDuration); d++) {
+            count += countsByDuration[i][d];
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of tasks of a type with a duration outside 1-100.
+     * Range counts and percentiles are exact when this is 0.
+     * @param taskType char: A, S, or L
+     * @return task count as int
+     * @throws IllegalStateException if the tasks of each duration are not counted
+     */
+    public int getOutOfRangeCount(char taskType) {
+        requireDurationCounts();
+        int i = typeIndex(taskType);
+        return (i >= 0) ? countsByDuration[i][0] + countsByDuration[i][MAX_DURATION + 1] : 0;
+    }
+
+    /**
+     * Gets a percentile of the durations of a type: the shortest duration that at
+     * least the given percent of the tasks do not exceed (so the median of an even
+     * number of tasks is the lower middle one). Durations below 1 are reported as 0
+     * and durations above 100 as 101.
+     *
+     * @param taskType char: A, S, or L
+     * @param percent double, from 0 to 100
+     * @return duration in hours, or 0 if there are no tasks of that type
+     * @throws IllegalArgumentException if percent is not between 0 and 100
+     * @throws IllegalStateException if the tasks of each duration are not counted
+     */
+    public int getPercentile(char taskType, double percent) {
+        requireDurationCounts();
+        if (!(percent >= 0 && percent <= 100)) {
+            throw new IllegalArgumentException("Invalid percentile: " + percent);
+        }
+        int count = getCount(taskType);
+        if (count <= 0) {
+            return 0;
+        }
+        int[] byDuration = countsByDuration[typeIndex(taskType)];
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int d = 0; d < byDuration.length; d++) {
+            seen += byDuration[d];
+            if (seen >= rank) return d;
+        }
+        return MAX_DURATION + 1;
+    }
+
+    /**
+     * Gets the median duration of a type (see getPercentile).
+     * @param taskType char: A, S, or L
+     * @return duration in hours, or 0 if there are no tasks of that type
+     */
+    public int getMedian(char taskType) {
+        return getPercentile(taskType, 50);
+    }
+
+    /**
+     * Counts the tasks of a type in equal duration bins: 1 to binWidth hours,
+     * binWidth + 1 to 2 * binWidth hours and so on up to 100. Durations below 1
+     * are counted in the first bin and durations above 100 in the last.
+     *
+     * @param taskType char: A, S, or L
+     * @param binWidth int hours, from 1 to 100
+     * @return task count of each bin
+     * @throws IllegalArgumentException if binWidth is not between 1 and 100
+     * @throws IllegalStateException if the tasks of each duration are not counted
+     */
+    public int[] getHistogram(char taskType, int binWidth) {
+        requireDurationCounts();
+        if (binWidth < 1 || binWidth > MAX_DURATION) {
+            throw new IllegalArgumentException("Invalid histogram bin width: " + binWidth);
+        }
+        int[] bins = new int[(MAX_DURATION + binWidth - 1) / binWidth];
+        int i = typeIndex(taskType);
+        if (i < 0) {
+            return bins;
+        }
+        int[] byDuration = countsByDuration[i];
+        for (int d = 1; d <= MAX_DURATION; d++) {
+            bins[(d - 1) / binWidth] += byDuration[d];
+        }
+        bins[0] += byDuration[0];
+        bins[bins.length - 1] += byDuration[MAX_DURATION + 1];
+        return bins;
+    }
+
+    private void requireDurationCounts() {
+        if (countsByDuration == null) {
+            throw new IllegalStateException("Only duration totals are kept");
+        }
+    }
+
+    private void checkDurationCounts(DurationStats other) {
+        if (countsByDuration != null && other.countsByDuration == null) {
+            throw new IllegalArgumentException("Duration counts are needed to add or remove totals");
+        }
+    }
+
+    /**
+     * Gets the count position for a duration.
+     */
+    private static int bucket(int duration) {
+        return (duration < 1) ? 0 : Math.min(duration, MAX_DURATION + 1);
+    }
+
+    /**
+     * Gets the storage position for a task type.
+     * @return 0, 1 or 2, or -1 for an unknown type
+     */
+    private static int typeIndex(char taskType) {
+        for (int i = 0; i < TASK_TYPES.length; i++) {
+            if (TASK_TYPES[i] == taskType) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * IdAllocator class tracks which IDs in a fixed range are in use with a bitmap
+ * and hands out the lowest free one.
+ *
+ * Replaces picking random IDs until an unused one turns up, which slows down as
+ * the range fills and never finishes once it is full. Freed IDs are reused, and
+ * asking for an ID when none are left fails straight away.
+ */
+import java.util.BitSet;
+
+public class IdAllocator {
+
+    private final int minId;
+    private final int maxId;
+
+    // Bit (id - minId) is set when the ID is in use
+    private final BitSet used = new BitSet();
+    private int usedCount;
+
+    // Every ID below this one is in use
+    private int lowestFree;
+
+    /**
+     * Creates an allocator for the IDs from minId to maxId, inclusive.
+     * @param minId int
+     * @param maxId int
+     */
+    public IdAllocator(int minId, int maxId) {
+        if (maxId < minId) {
+            throw new IllegalArgumentException("Empty ID range: " + minId + "-" + maxId);
+        }
+        this.minId = minId;
+        this.maxId = maxId;
+        this.lowestFree = minId;
+    }
+
+    /**
+     * Gets the highest ID in the range.
+     * @return maxId as int
+     */
+    public int getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * Gets the lowest ID not in use. The ID is not marked as used until markUsed is called.
+     * Nothing is changed, so several threads may call this at once.
+     *
+     * @return A free ID.
+     * @throws IllegalStateException if every ID in the range is in use.
+     */
+    public int nextFreeId() {
+        if (!hasFreeId()) {
+            throw new IllegalStateException("All IDs from " + minId + " to " + maxId + " are in use");
+        }
+        return minId + used.nextClearBit(lowestFree - minId);
+    }
+
+    /**
+     * Marks an ID as in use. IDs outside the range are ignored.
+     * @param id int
+     */
+    public void markUsed(int id) {
+        if (inRange(id) && !used.get(id - minId)) {
+            used.set(id - minId);
+            usedCount++;
+            if (id == lowestFree) {
+                lowestFree = minId + used.nextClearBit(id - minId);
+            }
+        }
+    }
+
+    /**
+     * Marks an ID as free again so it can be handed out. IDs outside the range are ignored.
+     * @param id int
+     */
+    public void release(int id) {
+        if (inRange(id) && used.get(id - minId)) {
+            used.clear(id - minId);
+            usedCount--;
+            lowestFree = Math.min(lowestFree, id);
+        }
+    }
+
+    /**
+     * Checks if an ID is in use.
+     * @param id int
+     * @return true if the ID is in the range and in use, false otherwise
+     */
+    public boolean isUsed(int id) {
+        return inRange(id) && used.get(id - minId);
+    }
+
+    /**
+     * Checks if any ID in the range is still free.
+     * @return true if nextFreeId will succeed, false otherwise
+     */
+    public boolean hasFreeId() {
+        return usedCount < maxId - minId + 1;
+    }
+
+    /**
+     * Marks every ID as free.
+     */
+    public void clear() {
+        used.clear();
+        usedCount = 0;
+        lowestFree = minId;
+    }
+
+    private boolean inRange(int id) {
+        return id >= minId && id <= maxId;
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Json class has the small amount of JSON handling the HTTP API needs:
+ * quoting strings for output, and parsing request bodies that are a single
+ * flat object of string, number, boolean or null values.
+ */
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Json {
+
+    private final String text;
+    private int pos;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Quotes and escapes a string as a JSON string literal.
+     * @param value String
+     * @return JSON string, or null for a null value
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Parses a flat JSON object. Values are returned as String, Long, Boolean or null.
+     *
+     * @param text The JSON text.
+     * @return Map of field name to value, in the order given.
+     * @throws IllegalArgumentException if the text is not a flat JSON object.
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Json parser = new Json(text);
+        Map<String, Object> fields = parser.readObject();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("unexpected text after object");
+        }
+        return fields;
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return fields;
+        }
+        while (true) {
+            skipWhitespace();
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            fields.put(name, readValue());
+            skipWhitespace();
+            char c = next();
+            if (c == '}') {
+                return fields;
+            }
+            if (c != ',') {
+                throw error("expected , or }");
+            }
+        }
+    }
+
+    private Object readValue() {
+        char c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            int start = pos;
+            if (c == '-') pos++;
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) pos++;
+            try {
+                return Long.parseLong(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("invalid number");
+            }
+        }
+        if (text.startsWith("true", pos)) {
+            pos += 4;
+            return Boolean.TRUE;
+        }
+        if (text.startsWith("false", pos)) {
+            pos += 5;
+            return Boolean.FALSE;
+        }
+        if (text.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        }
+        throw error("unsupported value");
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = next();
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) throw error("bad escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("bad escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw error("bad escape");
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private char peek() {
+        if (pos >= text.length()) throw error("unexpected end");
+        return text.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw error("expected " + c);
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON at position " + pos + ": " + message);
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * LatencyHistogram class counts how long an operation took, in nanoseconds, and
+ * answers percentile queries (e.g. p50, p99) from the counts.
+ *
+ * Each power of two is split into 8 buckets, so a percentile is accurate to within
+ * 12.5% while the whole range of long fits in 488 buckets. The bucket array is
+ * fixed and updated with atomic adds, so recording never allocates or blocks and
+ * can be done from any thread.
+ */
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+    // Each power of two range is split into 2^SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value. Negative values count as 0.
+     * @param nanos long
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of values recorded.
+     * @return count as long
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the sum of every value recorded.
+     * @return total as long
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Gets the largest value recorded.
+     * @return max as long, 0 if nothing was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the value that the given fraction of recorded values are at or below,
+     * rounded up to the top of its bucket.
+     * Values recorded while this runs may or may not be counted.
+     *
+     * @param fraction double, from 0 to 1 (e.g. 0.99 for p99)
+     * @return value as long, 0 if nothing was recorded
+     */
+    public long getPercentile(double fraction) {
+        long recorded = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            recorded += buckets.get(i);
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * recorded));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketTop(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears every count.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    // -------------------------------------------------------------------------
+    // Bucket Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Finds the bucket for a value: values below SUB_BUCKETS have a bucket each,
+     * larger ones are placed by their highest bit and the SUB_BUCKET_BITS bits after it.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the largest value that falls in a bucket.
+     */
+    static long bucketTop(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long bottom = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return bottom + (1L << shift) - 1;
+    }
+}
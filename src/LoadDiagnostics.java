@@ -0,0 +1,340 @@
+/**
+ * LoadDiagnostics class collects the lines ProjectDataLoader skips, so a load
+ * prints one summary instead of a message per bad line.
+ *
+ * Every skipped line is counted by kind (ProjectDataLoader.Issue), but the text
+ * of only the first few is kept, so a file with millions of bad lines loads about
+ * as fast as a clean one. With a report file, every skipped line is written to
+ * it with its line number.
+ *
+ * The parts of a parallel load write their skipped lines to a temporary spill
+ * file instead of keeping them, so memory stays bounded however dirty the file
+ * is, and the lines are copied into the report when the parts are merged.
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoadDiagnostics {
+
+    // Skipped lines shown in the summary
+    public static final int SAMPLE_SIZE = 10;
+
+    private static final ProjectDataLoader.Issue[] ISSUES = ProjectDataLoader.Issue.values();
+
+    private final long[] counts = new long[ISSUES.length];
+
+    // The first SAMPLE_SIZE entries, later ones are only counted
+    private final List<Entry> entries = new ArrayList<>();
+
+    // Every entry is written here as it is added, null if there is no report file
+    private final Path reportFile;
+    private Writer report;
+
+    // Every entry of a part of a parallel load is written here, null if the load has no report file
+    private final Spill spill;
+
+    /**
+     * Creates diagnostics that keep the first SAMPLE_SIZE skipped lines.
+     * @param reportFile Path to write every skipped line to, or null for no report
+     * @throws IOException if the report file cannot be created.
+     */
+    public LoadDiagnostics(Path reportFile) throws IOException {
+        this.reportFile = reportFile;
+        this.spill = null;
+        if (reportFile != null) {
+            report = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Creates diagnostics for one part of a parallel load, to be added to the
+     * load's diagnostics once that part is merged (see addAll) or dropped (see discard).
+     * Parts sharing a spill must be merged or dropped in the order they were filled.
+     * @param spill Spill file every entry is written to (the load has a report file), or null to keep a sample
+     */
+    LoadDiagnostics(Spill spill) {
+        this.reportFile = null;
+        this.spill = spill;
+    }
+
+    // -------------------------------------------------------------------------
+    // Collecting
+    // -------------------------------------------------------------------------
+
+    /**
+     * Checks if the next skipped line's text is kept, so the caller knows to
+     * build it. If not, count() is enough.
+     * @return true if add() should be called, false if count() is enough
+     */
+    public boolean keepsNext() {
+        return report != null || spill != null || entries.size() < SAMPLE_SIZE;
+    }
+
+    /**
+     * Counts a skipped line without keeping its text.
+     * @param issue ProjectDataLoader.Issue
+     */
+    public void count(ProjectDataLoader.Issue issue) {
+        counts[issue.ordinal()]++;
+    }
+
+    /**
+     * Counts a skipped line and keeps its text, if there is still room.
+     *
+     * @param issue Why the line was skipped.
+     * @param lineNumber The line's number in the file, from 1.
+     * @param line The line's text.
+     * @param detail More about the problem, or null.
+     * @throws IOException if the report file cannot be written.
+     */
+    public void add(ProjectDataLoader.Issue issue, long lineNumber, String line, String detail) throws IOException {
+        count(issue);
+        keep(new Entry(issue, lineNumber, line, detail));
+    }
+
+    /**
+     * Adds the counts and entries of one part of a parallel load. With a report
+     * file, the part's entries are copied from its spill file into the report.
+     *
+     * @param part The part's diagnostics.
+     * @param lineOffset Lines in the file before the part, added to its line numbers.
+     * @throws IOException if the spill file cannot be read or the report file cannot be written.
+     */
+    void addAll(LoadDiagnostics part, long lineOffset) throws IOException {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += part.counts[i];
+        }
+        for (Entry entry : part.entries) {
+            if (entries.size() == SAMPLE_SIZE) break;
+            entries.add(entry.movedBy(lineOffset));
+        }
+        if (part.spill != null) {
+            Spill from = part.spill;
+            for (long i = part.getTotal(); i > 0; i--) {
+                Entry entry = from.read().movedBy(lineOffset);
+                if (report != null) {
+                    report.write(entry.toString());
+                    report.write(System.lineSeparator());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops one part of a parallel load that is not merged, skipping its entries in the spill file.
+     * @throws IOException if the spill file cannot be read.
+     */
+    void discard() throws IOException {
+        if (spill != null) {
+            for (long i = getTotal(); i > 0; i--) {
+                spill.read();
+            }
+        }
+    }
+
+    private void keep(Entry entry) throws IOException {
+        if (entries.size() < SAMPLE_SIZE) {
+            entries.add(entry);
+        }
+        if (report != null) {
+            report.write(entry.toString());
+            report.write(System.lineSeparator());
+        }
+        if (spill != null) {
+            spill.write(entry);
+        }
+    }
+
+    /**
+     * Closes the report file, if there is one, and adds the counts to Metrics.
+     * @throws IOException if the report file cannot be written.
+     */
+    public void finish() throws IOException {
+        if (report != null) {
+            report.close();
+            report = null;
+        }
+        for (ProjectDataLoader.Issue issue : ISSUES) {
+            if (counts[issue.ordinal()] > 0) {
+                Metrics.recordIssues(issue, counts[issue.ordinal()]);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Reporting
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets the number of lines skipped for one reason.
+     * @param issue ProjectDataLoader.Issue
+     * @return count as long
+     */
+    public long getCount(ProjectDataLoader.Issue issue) {
+        return counts[issue.ordinal()];
+    }
+
+    /**
+     * Gets the number of lines skipped for any reason.
+     * @return count as long
+     */
+    public long getTotal() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Prints the number of lines skipped for each reason and the first few of them.
+     * Prints nothing if no line was skipped.
+     *
+     * @param out Where to print.
+     * @param source The file name, or a description of where the data came from.
+     */
+    public void printSummary(PrintStream out, String source) {
+        long total = getTotal();
+        if (total == 0) {
+            return;
+        }
+
+        out.println("[WARNING] Skipped " + total + " line(s) while loading " + source + ":");
+        for (ProjectDataLoader.Issue issue : ISSUES) {
+            if (counts[issue.ordinal()] > 0) {
+                out.println("  " + issue.getLevel() + " " + issue.getLabel() + ": " + counts[issue.ordinal()]);
+            }
+        }
+
+        int shown = Math.min(SAMPLE_SIZE, entries.size());
+        out.println((shown < total ? "First " + shown + " of them:" : "Skipped lines:"));
+        for (int i = 0; i < shown; i++) {
+            out.println("  " + entries.get(i));
+        }
+        if (reportFile != null) {
+            out.println("Every skipped line is listed in " + reportFile);
+        } else if (shown < total) {
+            out.println("Start with --load-report FILE to list every skipped line.");
+        }
+    }
+
+    /**
+     * One skipped line.
+     */
+    private static final class Entry {
+        final ProjectDataLoader.Issue issue;
+        final long lineNumber;
+        final String line;
+        final String detail;
+
+        Entry(ProjectDataLoader.Issue issue, long lineNumber, String line, String detail) {
+            this.issue = issue;
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.detail = detail;
+        }
+
+        Entry movedBy(long lineOffset) {
+            return new Entry(issue, lineNumber + lineOffset, line, detail);
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + issue.getLevel() + " " + issue.getLabel()
+                    + (detail != null ? " (" + detail + ")" : "") + ": " + line;
+        }
+    }
+
+    /**
+     * Temporary file holding the skipped lines of one chunk of a parallel load,
+     * written while the chunk is parsed and read back, in the same order, while it is merged.
+     * The file is deleted when the spill is closed.
+     */
+    static final class Spill implements Closeable {
+        private final Path file;
+        private DataOutputStream out;
+        private DataInputStream in;
+
+        private Spill(Path file) throws IOException {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        }
+
+        /**
+         * Creates a spill file next to the load's report file.
+         * @param reportFile Path of the report file
+         * @return Spill
+         * @throws IOException if the file cannot be created.
+         */
+        static Spill create(Path reportFile) throws IOException {
+            Path dir = reportFile.toAbsolutePath().getParent();
+            return new Spill(Files.createTempFile(dir, reportFile.getFileName() + ".", ".part"));
+        }
+
+        void write(Entry entry) throws IOException {
+            out.writeByte(entry.issue.ordinal());
+            out.writeLong(entry.lineNumber);
+            writeText(entry.line);
+            writeText(entry.detail);
+        }
+
+        /**
+         * Reads the next entry, after every entry has been written.
+         */
+        Entry read() throws IOException {
+            if (in == null) {
+                out.close();
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            }
+            ProjectDataLoader.Issue issue = ISSUES[in.readUnsignedByte()];
+            long lineNumber = in.readLong();
+            return new Entry(issue, lineNumber, readText(), readText());
+        }
+
+        private void writeText(String text) throws IOException {
+            if (text == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private String readText() throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Closes and deletes the file.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+                if (in != null) {
+                    in.close();
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
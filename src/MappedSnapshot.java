@@ -0,0 +1,402 @@
+/**
+ * MappedSnapshot class gives read access to a snapshot file (see ProjectSnapshot)
+ * through memory-mapped regions of the file.
+ *
+ * Opening a snapshot only reads the header and the project index. Project and Task
+ * objects are created one project at a time, when a project is first asked for,
+ * so snapshots bigger than the heap open straight away and the OS page cache
+ * holds the data instead.
+ *
+ * Projects are given the task limits saved in the snapshot, or the current ones
+ * if those are larger, so every saved task fits whatever --task-limits is set to.
+ */
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MappedSnapshot {
+
+    // Largest region mapped in one piece, a single mapping cannot pass 2 GB
+    private static final long MAX_REGION_SIZE = 1L << 30;
+
+    // Size of one index entry: projectId (int) + offset (long)
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private final Path file;
+
+    // Task limits given to the projects read from the snapshot
+    private final TaskLimitPolicy taskLimitPolicy;
+
+    // Project IDs and record offsets, in file order
+    private final int[] projectIds;
+    private final long[] offsets;
+
+    // Project ID -> position in projectIds/offsets
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+
+    // Mapped regions, each holding whole project records
+    private final MappedByteBuffer[] regions;
+    private final long[] regionStarts;
+    private final int[] regionOfSlot;
+
+    private MappedSnapshot(Path file, TaskLimitPolicy taskLimitPolicy, int[] projectIds, long[] offsets,
+                           MappedByteBuffer[] regions, long[] regionStarts, int[] regionOfSlot) {
+        this.file = file;
+        this.taskLimitPolicy = taskLimitPolicy;
+        this.projectIds = projectIds;
+        this.offsets = offsets;
+        this.regions = regions;
+        this.regionStarts = regionStarts;
+        this.regionOfSlot = regionOfSlot;
+        for (int i = 0; i < projectIds.length; i++) {
+            slotById.put(projectIds[i], i);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Opening
+    // -------------------------------------------------------------------------
+
+    /**
+     * Opens a snapshot file and maps its project records.
+     *
+     * @param file The snapshot file.
+     * @return The opened snapshot.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if the file is not a valid snapshot or cannot be mapped,
+     *         or if a project holds more tasks than its task limit allows.
+     */
+    public static MappedSnapshot open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(file.toString());
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < ProjectSnapshot.HEADER_SIZE_V1 + ProjectSnapshot.TRAILER_SIZE) {
+                throw new IOException("Not a project snapshot: " + file);
+            }
+
+            // Header
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, ProjectSnapshot.HEADER_SIZE_V1);
+            if (header.getInt() != ProjectSnapshot.MAGIC) {
+                throw new IOException("Not a project snapshot: " + file);
+            }
+            short version = header.getShort();
+            if (version != 1 && version != ProjectSnapshot.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            int projectCount = header.getInt();
+
+            // Task limits, version 1 snapshots did not save them
+            int headerSize = ProjectSnapshot.HEADER_SIZE_V1;
+            TaskLimitPolicy policy = Project.getDefaultTaskLimitPolicy();
+            if (version != 1) {
+                headerSize = ProjectSnapshot.HEADER_SIZE;
+                if (size < headerSize + ProjectSnapshot.TRAILER_SIZE) {
+                    throw new IOException("Not a project snapshot: " + file);
+                }
+                ByteBuffer limits = channel.map(FileChannel.MapMode.READ_ONLY,
+                        ProjectSnapshot.HEADER_SIZE_V1, headerSize - ProjectSnapshot.HEADER_SIZE_V1);
+                try {
+                    policy = taskLimits(limits.getInt(), limits.getInt(), limits.getInt());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Corrupt snapshot: " + e.getMessage() + ": " + file);
+                }
+            }
+
+            // Trailer points at the index
+            long trailerOffset = size - ProjectSnapshot.TRAILER_SIZE;
+            long indexOffset = channel.map(FileChannel.MapMode.READ_ONLY, trailerOffset, ProjectSnapshot.TRAILER_SIZE).getLong();
+            if (projectCount < 0 || indexOffset < headerSize
+                    || indexOffset + (long) projectCount * INDEX_ENTRY_SIZE != trailerOffset) {
+                throw new IOException("Corrupt snapshot: bad project index: " + file);
+            }
+
+            // Index
+            int[] projectIds = new int[projectCount];
+            long[] offsets = new long[projectCount];
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, trailerOffset - indexOffset);
+            for (int i = 0; i < projectCount; i++) {
+                projectIds[i] = index.getInt();
+                offsets[i] = index.getLong();
+                long previous = (i == 0) ? headerSize : offsets[i - 1];
+                if (offsets[i] < previous || offsets[i] >= indexOffset) {
+                    throw new IOException("Corrupt snapshot: bad project index: " + file);
+                }
+            }
+
+            // Map the records in regions, never splitting a project across two regions
+            List<MappedByteBuffer> regions = new ArrayList<>();
+            List<Long> regionStarts = new ArrayList<>();
+            int[] regionOfSlot = new int[projectCount];
+            int slot = 0;
+            while (slot < projectCount) {
+                long start = offsets[slot];
+                int last = slot;
+                while (last + 1 < projectCount && offsets[last + 1] - start < MAX_REGION_SIZE) {
+                    last++;
+                }
+                long end = (last + 1 < projectCount) ? offsets[last + 1] : indexOffset;
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot project record too large to map: " + file);
+                }
+
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                regionStarts.add(start);
+                for (int i = slot; i <= last; i++) {
+                    regionOfSlot[i] = regions.size() - 1;
+                }
+                slot = last + 1;
+            }
+
+            long[] starts = new long[regionStarts.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = regionStarts.get(i);
+            }
+            MappedSnapshot snapshot = new MappedSnapshot(file, policy, projectIds, offsets,
+                    regions.toArray(new MappedByteBuffer[0]), starts, regionOfSlot);
+            snapshot.checkTaskCounts();
+            return snapshot;
+        }
+    }
+
+    /**
+     * Creates the task limits for projects read from a snapshot: the saved limits,
+     * or the current ones for new projects if those are larger.
+     */
+    private static TaskLimitPolicy taskLimits(int small, int medium, int large) {
+        TaskLimitPolicy current = Project.getDefaultTaskLimitPolicy();
+        return TaskLimitPolicy.of(Math.max(small, current.getTaskLimit("Small")),
+                Math.max(medium, current.getTaskLimit("Medium")),
+                Math.max(large, current.getTaskLimit("Large")));
+    }
+
+    /**
+     * Checks that no project holds more tasks than its task limit allows, so no
+     * project fails to read later after its tasks have been counted (see addDurations).
+     * Only version 1 snapshots, which did not save their task limits, should fail this.
+     */
+    private void checkTaskCounts() throws IOException {
+        for (int slot = 0; slot < projectIds.length; slot++) {
+            ByteBuffer record = recordAt(slot);
+            try {
+                record.getInt();
+                String type = ProjectSnapshot.projectType(record.get());
+                int taskCount = record.getInt();
+                int limit = taskLimitPolicy.getTaskLimit(type);
+                if (taskCount < 0) {
+                    throw new IOException("Corrupt snapshot record for project " + projectIds[slot] + ": " + file);
+                }
+                if (taskCount > limit) {
+                    throw new IOException("Project " + projectIds[slot] + " in " + file + " has " + taskCount
+                            + " tasks but " + type + " projects are limited to " + limit
+                            + ", open it with larger --task-limits");
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Corrupt snapshot record for project " + projectIds[slot] + ": " + file, e);
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading Projects
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets the number of projects in the snapshot.
+     * @return project count as int
+     */
+    public int projectCount() {
+        return projectIds.length;
+    }
+
+    /**
+     * Gets the ID of the project at the given position in file order.
+     * @param slot int between 0 and projectCount() - 1
+     * @return projectId as int
+     */
+    public int projectIdAt(int slot) {
+        return projectIds[slot];
+    }
+
+    /**
+     * Checks if the snapshot holds a project with the given ID.
+     * @param projectId int
+     * @return true if the project is in the snapshot, false otherwise
+     */
+    public boolean contains(int projectId) {
+        return slotById.containsKey(projectId);
+    }
+
+    /**
+     * Creates the Project, with its tasks, for the given ID from the mapped records.
+     *
+     * @param projectId int
+     * @return A new Project, or null if the snapshot has no project with that ID.
+     * @throws IllegalStateException if the record is corrupt.
+     */
+    public Project readProject(int projectId) {
+        Integer slot = slotById.get(projectId);
+        if (slot == null) {
+            return null;
+        }
+
+        ByteBuffer record = recordAt(slot);
+        try {
+            return readRecord(record);
+        } catch (BufferUnderflowException | IOException e) {
+            throw new IllegalStateException("Corrupt snapshot record for project " + projectId + ": " + file, e);
+        }
+    }
+
+    /**
+     * Reads a project's name, type and task counts from the mapped record,
+     * without creating the project or its tasks.
+     *
+     * @param projectId int
+     * @return ProjectInfo, or null if the snapshot has no project with that ID.
+     * @throws IllegalStateException if the record is corrupt.
+     */
+    public ProjectStore.ProjectInfo readProjectInfo(int projectId) {
+        Integer slot = slotById.get(projectId);
+        if (slot == null) {
+            return null;
+        }
+
+        ByteBuffer record = recordAt(slot);
+        try {
+            record.getInt();
+            String type = ProjectSnapshot.projectType(record.get());
+            int taskCount = record.getInt();
+            String name = readString(record);
+
+            int completed = 0;
+            for (int i = 0; i < taskCount; i++) {
+                // Skip taskId and type, read flags, skip duration and description
+                record.position(record.position() + 5);
+                if ((record.get() & ProjectSnapshot.COMPLETED_FLAG) != 0) {
+                    completed++;
+                }
+                record.getShort();
+                skipString(record);
+            }
+            return new ProjectStore.ProjectInfo(projectId, name, type, taskCount, completed);
+        } catch (BufferUnderflowException | IllegalArgumentException | IOException e) {
+            throw new IllegalStateException("Corrupt snapshot record for project " + projectId + ": " + file, e);
+        }
+    }
+
+    /**
+     * Creates every project in the snapshot, in file order.
+     *
+     * @return A ProjectStore holding all the projects.
+     * @throws IOException if a record is corrupt.
+     */
+    public ProjectStore readAll() throws IOException {
+        ProjectStore projects = new ProjectStore();
+        for (int projectId : projectIds) {
+            try {
+                if (!projects.add(readProject(projectId))) {
+                    throw new IOException("Corrupt snapshot: duplicate project ID " + projectId);
+                }
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage(), e.getCause());
+            }
+        }
+        return projects;
+    }
+
+    /**
+     * Adds the duration of every task in the snapshot to the given totals,
+     * reading the mapped records directly without creating any objects.
+     *
+     * @param stats The totals to add to.
+     */
+    public void addDurations(DurationStats stats) {
+        for (int slot = 0; slot < projectIds.length; slot++) {
+            ByteBuffer record = recordAt(slot);
+
+            // Skip projectId and type, then the name
+            record.position(record.position() + 5);
+            int taskCount = record.getInt();
+            skipString(record);
+
+            for (int i = 0; i < taskCount; i++) {
+                // Skip taskId, read type, skip flags, read duration, skip description
+                record.position(record.position() + 4);
+                char taskType = (char) (record.get() & 0xFF);
+                record.get();
+                stats.add(taskType, record.getShort());
+                skipString(record);
+            }
+        }
+    }
+
+    /**
+     * Gets a buffer positioned at the start of the record in the given slot.
+     */
+    private ByteBuffer recordAt(int slot) {
+        int region = regionOfSlot[slot];
+        ByteBuffer record = regions[region].duplicate();
+        record.position((int) (offsets[slot] - regionStarts[region]));
+        return record;
+    }
+
+    /**
+     * Reads one project record and its task records.
+     */
+    private Project readRecord(ByteBuffer record) throws IOException {
+        Project p = new Project();
+        p.setTaskLimitPolicy(taskLimitPolicy);
+        p.setProjectId(record.getInt());
+        String type = ProjectSnapshot.projectType(record.get());
+        int taskCount = record.getInt();
+        p.setProjectName(readString(record));
+        p.setProjectType(type);
+
+        // Descriptions are copied through one buffer into the project's task table
+        byte[] description = new byte[64];
+        for (int i = 0; i < taskCount; i++) {
+            int taskId = record.getInt();
+            char taskType = (char) (record.get() & 0xFF);
+            boolean completed = (record.get() & ProjectSnapshot.COMPLETED_FLAG) != 0;
+            int duration = record.getShort();
+            int length = record.getShort() & 0xFFFF;
+            if (length > description.length) {
+                description = new byte[Math.max(length, description.length * 2)];
+            }
+            record.get(description, 0, length);
+            try {
+                if (!p.addTask(taskId, description, 0, length, taskType, duration, completed)) {
+                    throw new IOException("Corrupt snapshot: too many tasks in project " + p.getProjectId());
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt snapshot: " + e.getMessage() + " in project " + p.getProjectId(), e);
+            }
+        }
+        return p;
+    }
+
+    private static void skipString(ByteBuffer record) {
+        int length = record.getShort() & 0xFFFF;
+        record.position(record.position() + length);
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,354 @@
+/**
+ * Metrics class counts and times operations, whichever client makes them
+ * (menu, batch or HTTP), and counts each kind of problem the loader reports.
+ * It backs the "Display statistics" menu option and is published over JMX
+ * as ProjectManagement:type=Metrics.
+ *
+ * Every operation has a fixed LatencyHistogram and byte and line counters, updated
+ * with atomic adds, so recording never allocates and is cheap enough to leave on.
+ * Only operations that finish are recorded. Times are taken with System.nanoTime()
+ * and shown in microseconds. Lines and bytes per second are worked out over the
+ * time spent in the operation, not the time since startup.
+ */
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+public class Metrics implements DynamicMBean {
+
+    public static final String OBJECT_NAME = "ProjectManagement:type=Metrics";
+
+    /**
+     * Operations that are timed. The ones that read or write a data file also count lines and bytes.
+     */
+    public enum Operation {
+        CREATE_PROJECT("Create project", false),
+        REMOVE_PROJECT("Remove project", false),
+        ADD_TASK("Add task", false),
+        COMPLETE_TASK("Complete task", false),
+        REMOVE_TASK("Remove task", false),
+        DISPLAY_PROJECTS("Display projects", false),
+        DISPLAY_COMPLETED("Display completed tasks", false),
+        FILTER_BY_TYPE("Filter tasks by type", false),
+        PROJECT_SUMMARY("Project summary", false),
+        QUERY("Query tasks", false),
+        TEXT_SEARCH("Search by text", false),
+        LOAD("Load text file", true),
+        SAVE("Save text file in full", true),
+        SAVE_CHANGES("Save text file changes", true),
+        SNAPSHOT_SAVE("Save snapshot", true),
+        SNAPSHOT_OPEN("Open snapshot", true),
+        CONVERT("Convert data file", false);
+
+        private final String label;
+        private final boolean transfer;
+
+        Operation(String label, boolean transfer) {
+            this.label = label;
+            this.transfer = transfer;
+        }
+
+        /**
+         * Gets the name shown in the statistics report.
+         * @return label as String
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Checks if the operation reads or writes a data file, so lines and bytes are counted.
+         * @return true if lines and bytes are counted, false otherwise
+         */
+        public boolean isTransfer() {
+            return transfer;
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final ProjectDataLoader.Issue[] ISSUES = ProjectDataLoader.Issue.values();
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final AtomicLongArray lines = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLongArray bytes = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLongArray issues = new AtomicLongArray(ISSUES.length);
+
+    // JMX attribute name to getter, in the order shown by JMX clients
+    private final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+    private final MBeanInfo info;
+
+    /**
+     * Creates an empty set of metrics. The application records into global().
+     */
+    public Metrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        info = buildInfo();
+    }
+
+    /**
+     * Gets the metrics the application records into.
+     * @return Metrics
+     */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    // -------------------------------------------------------------------------
+    // Recording
+    // -------------------------------------------------------------------------
+
+    /**
+     * Records a finished operation in the global metrics.
+     * @param operation Operation
+     * @param startNanos long, System.nanoTime() when the operation started
+     */
+    public static void record(Operation operation, long startNanos) {
+        GLOBAL.recordTime(operation, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a finished data file operation in the global metrics.
+     * @param operation Operation
+     * @param startNanos long, System.nanoTime() when the operation started
+     * @param lineCount long, lines read or written (0 for binary files)
+     * @param byteCount long, bytes read or written
+     */
+    public static void record(Operation operation, long startNanos, long lineCount, long byteCount) {
+        GLOBAL.recordTransfer(operation, System.nanoTime() - startNanos, lineCount, byteCount);
+    }
+
+    /**
+     * Counts problems of one kind reported by the loader in the global metrics.
+     * @param issue ProjectDataLoader.Issue
+     * @param count long
+     */
+    public static void recordIssues(ProjectDataLoader.Issue issue, long count) {
+        GLOBAL.issues.addAndGet(issue.ordinal(), count);
+    }
+
+    /**
+     * Records how long an operation took.
+     * @param operation Operation
+     * @param nanos long
+     */
+    public void recordTime(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records how long a data file operation took and how much it read or wrote.
+     * @param operation Operation
+     * @param nanos long
+     * @param lineCount long
+     * @param byteCount long
+     */
+    public void recordTransfer(Operation operation, long nanos, long lineCount, long byteCount) {
+        lines.addAndGet(operation.ordinal(), lineCount);
+        bytes.addAndGet(operation.ordinal(), byteCount);
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Clears every count.
+     */
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i].reset();
+            lines.set(i, 0);
+            bytes.set(i, 0);
+        }
+        for (int i = 0; i < ISSUES.length; i++) {
+            issues.set(i, 0);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets the number of times an operation finished.
+     * @param operation Operation
+     * @return count as long
+     */
+    public long getCount(Operation operation) {
+        return latencies[operation.ordinal()].getCount();
+    }
+
+    /**
+     * Gets an operation's latency at a percentile, to within 12.5%.
+     * @param operation Operation
+     * @param fraction double, e.g. 0.5 for p50
+     * @return microseconds as long
+     */
+    public long getPercentileMicros(Operation operation, double fraction) {
+        return latencies[operation.ordinal()].getPercentile(fraction) / 1000;
+    }
+
+    /**
+     * Gets the longest an operation took.
+     * @param operation Operation
+     * @return microseconds as long
+     */
+    public long getMaxMicros(Operation operation) {
+        return latencies[operation.ordinal()].getMax() / 1000;
+    }
+
+    /**
+     * Gets the lines read or written per second spent in a data file operation.
+     * @param operation Operation
+     * @return lines per second as double, 0 if the operation has not run
+     */
+    public double getLinesPerSecond(Operation operation) {
+        return perSecond(lines.get(operation.ordinal()), operation);
+    }
+
+    /**
+     * Gets the bytes read or written per second spent in a data file operation.
+     * @param operation Operation
+     * @return bytes per second as double, 0 if the operation has not run
+     */
+    public double getBytesPerSecond(Operation operation) {
+        return perSecond(bytes.get(operation.ordinal()), operation);
+    }
+
+    /**
+     * Gets the number of problems of one kind the loader reported.
+     * @param issue ProjectDataLoader.Issue
+     * @return count as long
+     */
+    public long getIssueCount(ProjectDataLoader.Issue issue) {
+        return issues.get(issue.ordinal());
+    }
+
+    private double perSecond(long amount, Operation operation) {
+        long nanos = latencies[operation.ordinal()].getTotal();
+        return nanos == 0 ? 0 : amount * 1e9 / nanos;
+    }
+
+    // -------------------------------------------------------------------------
+    // JMX
+    // -------------------------------------------------------------------------
+
+    /**
+     * Publishes the global metrics on the platform MBean server, for jconsole and other JMX clients.
+     * Does nothing if they are already published.
+     *
+     * @throws JMException if the MBean cannot be registered.
+     */
+    public static void registerMBean() throws JMException {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already published
+        }
+    }
+
+    /**
+     * Lists one read-only attribute per value, e.g. LoadCount, LoadP99Micros,
+     * LoadBytesPerSecond and InvalidDurationCount, plus a reset operation.
+     */
+    private MBeanInfo buildInfo() {
+        for (Operation op : OPERATIONS) {
+            String name = attributeName(op.name());
+            attributes.put(name + "Count", () -> getCount(op));
+            attributes.put(name + "P50Micros", () -> getPercentileMicros(op, 0.50));
+            attributes.put(name + "P99Micros", () -> getPercentileMicros(op, 0.99));
+            attributes.put(name + "MaxMicros", () -> getMaxMicros(op));
+            if (op.isTransfer()) {
+                attributes.put(name + "LinesPerSecond", () -> getLinesPerSecond(op));
+                attributes.put(name + "BytesPerSecond", () -> getBytesPerSecond(op));
+            }
+        }
+        for (ProjectDataLoader.Issue issue : ISSUES) {
+            attributes.put(attributeName(issue.name()) + "Count", () -> getIssueCount(issue));
+        }
+
+        MBeanAttributeInfo[] attributeInfo = new MBeanAttributeInfo[attributes.size()];
+        int i = 0;
+        for (Map.Entry<String, Supplier<Object>> entry : attributes.entrySet()) {
+            String type = (entry.getValue().get() instanceof Double) ? "double" : "long";
+            attributeInfo[i++] = new MBeanAttributeInfo(entry.getKey(), type, entry.getKey(), true, false, false);
+        }
+        MBeanOperationInfo[] operationInfo = {
+            new MBeanOperationInfo("reset", "Clears every count", new MBeanParameterInfo[0], "void",
+                    MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), "Operation counts, latencies and loader problems",
+                attributeInfo, null, operationInfo, null);
+    }
+
+    /**
+     * Turns an enum name such as SAVE_CHANGES into SaveChanges.
+     */
+    private static String attributeName(String enumName) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : enumName.split("_")) {
+            sb.append(word.charAt(0)).append(word.substring(1).toLowerCase());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Supplier<Object> getter = attributes.get(attribute);
+        if (getter == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return getter.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Supplier<Object> getter = attributes.get(name);
+            if (getter != null) {
+                list.add(new Attribute(name, getter.get()));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if (actionName.equals("reset") && (params == null || params.length == 0)) {
+            reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+}
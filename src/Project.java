@@ -1,7 +1,16 @@
 /** 
  * Project class represents a project containing multiple tasks
  * Manages tasks based on project type constraints
+ *
+ * The tasks' values are kept column by column in the project's TaskTable,
+ * and each Task in the task storage is a view of its row there.
  */
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
 public class Project {
     
     // Unique identifier for the project
@@ -13,8 +22,53 @@ public class Project {
     // Type of project: Small, Medium, or Large
     private String projectType;
     
-    // Up to 3 tasks associated with this project
-    private Task[] tasks;  
+    // Highest task ID handed out for new tasks (IDs run from 1 to 99), unless the
+    // project's task limit is higher, then IDs run up to the task limit
+    public static final int DEFAULT_MAX_TASK_ID = 99;
+
+    // Task limits used by new projects
+    private static volatile TaskLimitPolicy defaultTaskLimitPolicy = TaskLimitPolicy.STANDARD;
+
+    // Largest task storage allocated up front, it grows from here as tasks are added
+    private static final int INITIAL_TASK_CAPACITY = 8;
+
+    // How many tasks this project may hold, by project type
+    private TaskLimitPolicy taskLimitPolicy = defaultTaskLimitPolicy;
+
+    // Task storage. Empty slots are null and reused before the storage grows.
+    private Task[] tasks = new Task[0];
+
+    // Values of the tasks, one row per slot of the task storage
+    private final TaskTable table = new TaskTable(this);
+
+    // Number of slots handed out so far, slots at or past this have never been used
+    private int slotsUsed;
+
+    // Slots emptied by removed tasks, used as a stack
+    private int[] freeSlots = new int[0];
+    private int freeSlotCount;
+
+    // Task ID -> slot. A task whose ID is already used by another task is not in here.
+    private final Map<Integer, Integer> slotById = new HashMap<>();
+
+    // Number of tasks left out of slotById because another task has the same ID
+    private int duplicateIdCount;
+
+    // Task IDs in use, for handing out free ones (IDs run from 1 to getMaxTaskId())
+    private IdAllocator taskIds = new IdAllocator(1, DEFAULT_MAX_TASK_ID);
+
+    // Number of tasks in the project
+    private int taskCount;
+
+    // Running duration totals of this project's tasks, by task type (the counts
+    // of each duration are only kept by the store)
+    private final DurationStats durationStats = new DurationStats(false);
+
+    // Store this project belongs to, told about task changes so its totals stay current
+    private ProjectStore store;
+
+    // Goes up whenever the project or one of its tasks changes
+    private long version;
     
     /**
      * Gets the project ID.
@@ -30,6 +84,7 @@ public class Project {
      */
     public void setProjectId(int projectId) {
         this.projectId = projectId;
+        markChanged();
     }
     
     /**
@@ -45,7 +100,12 @@ public class Project {
      * @param projectName String
      */
     public void setProjectName(String projectName) {
+        String oldName = this.projectName;
         this.projectName = projectName;
+        if (store != null) {
+            store.projectRenamed(this, oldName);
+        }
+        markChanged();
     }
     
     /**
@@ -62,33 +122,455 @@ public class Project {
      */
     public void setProjectType(String projectType) {
         this.projectType = projectType;
-        setTasksArraySize();
+        resetTasks();
+        markChanged();
     }
 
     /**
-     * Initialises the tasks array based on the project type. 
+     * Gets the project's version, which goes up whenever the project's name or type
+     * or any of its tasks change. If this project object still has the version it had
+     * when it was saved, it has not changed since.
+     * @return version as long
      */
-    private void setTasksArraySize() {
-        if (projectType.equalsIgnoreCase("Small")) {
-            tasks = new Task[1];
-        } else if (projectType.equalsIgnoreCase("Medium")) {
-            tasks = new Task [2];
-        } else if (projectType.equalsIgnoreCase("Large")) {
-            tasks = new Task[3];
-        } else {
-            tasks = new Task[0]; 
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the policy that sets how many tasks new projects may hold.
+     * @return TaskLimitPolicy
+     */
+    public static TaskLimitPolicy getDefaultTaskLimitPolicy() {
+        return defaultTaskLimitPolicy;
+    }
+
+    /**
+     * Sets the policy that sets how many tasks new projects may hold.
+     * Existing projects keep their own policy.
+     * @param policy TaskLimitPolicy
+     */
+    public static void setDefaultTaskLimitPolicy(TaskLimitPolicy policy) {
+        defaultTaskLimitPolicy = policy;
+    }
+
+    /**
+     * Sets the policy that sets how many tasks this project may hold.
+     * Tasks already in the project are kept even if they are over the new limit.
+     * @param policy TaskLimitPolicy
+     */
+    public void setTaskLimitPolicy(TaskLimitPolicy policy) {
+        this.taskLimitPolicy = policy;
+        resizeTaskIds();
+    }
+
+    /**
+     * Gets the most tasks this project may hold, from its type and task limit policy.
+     * @return task limit as int
+     */
+    public int getTaskLimit() {
+        return (projectType == null) ? 0 : taskLimitPolicy.getTaskLimit(projectType);
+    }
+
+    /**
+     * Gets the highest task ID this project hands out and accepts for new tasks:
+     * 99, or the task limit if that is higher, so a project can be filled up to its limit.
+     * @return highest task ID as int
+     */
+    public int getMaxTaskId() {
+        return Math.max(DEFAULT_MAX_TASK_ID, getTaskLimit());
+    }
+
+    /**
+     * Drops every task and sizes the task storage for the project type.
+     */
+    private void resetTasks() {
+        for (int i = 0; i < slotsUsed; i++) {
+            if (tasks[i] != null) taskRemoved(tasks[i]);
         }
+        int capacity = Math.min(getTaskLimit(), INITIAL_TASK_CAPACITY);
+        tasks = new Task[capacity];
+        table.reset(capacity);
+        slotsUsed = 0;
+        freeSlotCount = 0;
+        slotById.clear();
+        duplicateIdCount = 0;
+        taskIds = new IdAllocator(1, getMaxTaskId());
+        taskCount = 0;
     }
     
     /** 
-     * Gets the array of the tasks.
+     * Gets the task storage array. Empty slots are null.
      * @return Task array
      */
     public Task[] getTasks() {
         return tasks;
     }
 
+    /**
+     * Gets the number of tasks in the project.
+     * @return task count as int
+     */
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    /**
+     * Gets the task with the given ID.
+     * @param taskId int
+     * @return the matching Task, or null if no task uses that ID
+     */
+    public Task getTask(int taskId) {
+        Integer slot = slotById.get(taskId);
+        return (slot == null) ? null : tasks[slot];
+    }
+
+    /**
+     * Checks if a task in this project uses the given ID.
+     * @param taskId int
+     * @return true if the ID is taken, false otherwise
+     */
+    public boolean containsTask(int taskId) {
+        return slotById.containsKey(taskId);
+    }
+
+    /**
+     * Gets the lowest task ID (1 to getMaxTaskId()) not used by any task in this project.
+     *
+     * @return A free task ID.
+     * @throws IllegalStateException if every task ID is in use.
+     */
+    public int nextFreeTaskId() {
+        return taskIds.nextFreeId();
+    }
+
+    /**
+     * Checks if any task ID (1 to getMaxTaskId()) is still unused in this project.
+     * @return true if nextFreeTaskId will succeed, false otherwise
+     */
+    public boolean hasFreeTaskId() {
+        return taskIds.hasFreeId();
+    }
+
+    /**
+     * Checks if the project can accept another task under its task limit.
+     * @return true if there is room for a task, false otherwise
+     */
+    public boolean hasRoomForTask() {
+        return taskCount < getTaskLimit();
+    }
+
+    /**
+     * Adds a task, reusing an empty slot if there is one. The task's values move
+     * into the project's task table, and the task becomes a view of its row.
+     * @param task the Task to add
+     * @return true if the task was added, false if the project is full
+     * @throws IllegalArgumentException if the type is not A, S or L, or the duration is not 1-100.
+     */
+    public boolean addTask(Task task) {
+        if (!hasRoomForTask()) {
+            return false;
+        }
+        TaskTable.checkValues(task.getTaskType(), task.getTaskDuration());
+
+        int slot = takeSlot();
+        tasks[slot] = task;
+        task.attach(table, slot);
+        taskAdded(task);
+        return true;
+    }
+
+    /**
+     * Adds a task with its description given as UTF-8 bytes (e.g. part of a line
+     * read from a file), copied straight into the task table without creating a String.
+     *
+     * @param description Array holding the description.
+     * @param offset Start of the description in the array.
+     * @param length Length of the description in bytes.
+     * @return true if the task was added, false if the project is full
+     * @throws IllegalArgumentException if the type is not A, S or L, or the duration is not 1-100.
+     */
+    public boolean addTask(int taskId, byte[] description, int offset, int length,
+                           char taskType, int duration, boolean completed) {
+        if (!hasRoomForTask()) {
+            return false;
+        }
+        TaskTable.checkValues(taskType, duration);
+
+        int slot = takeSlot();
+        table.setRow(slot, taskId, description, offset, length, taskType, duration, completed);
+        Task task = new Task(table, slot);
+        tasks[slot] = task;
+        taskAdded(task);
+        return true;
+    }
+
+    /**
+     * Removes the task with the given ID.
+     * @param taskId int
+     * @return the removed Task, or null if no task uses that ID
+     */
+    public Task removeTask(int taskId) {
+        Integer slot = slotById.get(taskId);
+        if (slot == null) {
+            return null;
+        }
+
+        Task removed = tasks[slot];
+        unindexTaskId(taskId, slot);
+        tasks[slot] = null;
+        taskCount--;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, Math.max(4, freeSlots.length * 2));
+        }
+        freeSlots[freeSlotCount++] = slot;
+        taskRemoved(removed);
+        return removed;
+    }
+
+    /**
+     * Gets the running duration totals of this project's tasks. Only the totals
+     * are kept, so range counts, percentiles and histograms cannot be read from them.
+     * @return DurationStats
+     */
+    public DurationStats getDurationStats() {
+        return durationStats;
+    }
+
+    /**
+     * Gets the number of completed tasks in this project.
+     * @return count as int
+     */
+    public int getCompletedTaskCount() {
+        return table.getCompletedCount();
+    }
+
+    /**
+     * Gets this project's completed tasks, visiting only the completed slots.
+     * @return Iterable of Task
+     */
+    public Iterable<Task> getCompletedTasks() {
+        return () -> new Iterator<Task>() {
+            private int next = table.nextCompletedRow(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
 
+            @Override
+            public Task next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                Task task = tasks[next];
+                next = table.nextCompletedRow(next + 1);
+                return task;
+            }
+        };
+    }
+
+    /**
+     * Gets the task in a slot of the task storage.
+     * @param slot int
+     * @return Task, or null if the slot is empty
+     */
+    public Task getTaskInSlot(int slot) {
+        return (slot < 0 || slot >= slotsUsed) ? null : tasks[slot];
+    }
 
+    /**
+     * Finds the first slot at or after the given one that holds a task.
+     * Used with getTaskInSlot to read the tasks a batch at a time.
+     * @param fromSlot int
+     * @return slot as int, or -1 if no later slot holds a task
+     */
+    public int nextTaskSlot(int fromSlot) {
+        for (int slot = Math.max(fromSlot, 0); slot < slotsUsed; slot++) {
+            if (tasks[slot] != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first slot at or after the given one that holds a completed task,
+     * visiting only the completed slots.
+     * @param fromSlot int
+     * @return slot as int, or -1 if no later slot holds a completed task
+     */
+    public int nextCompletedTaskSlot(int fromSlot) {
+        return table.nextCompletedRow(fromSlot);
+    }
+
+    /**
+     * Gets the table holding the tasks' values, one row per task slot, for scans
+     * that read the value columns directly. Rows of empty slots hold no task.
+     * @return TaskTable
+     */
+    public TaskTable getTaskTable() {
+        return table;
+    }
 
+    /**
+     * Sets the store this project belongs to. Called by ProjectStore when the project is added or removed.
+     * @param store ProjectStore, or null
+     */
+    void setStore(ProjectStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Updates the totals after one of this project's tasks changed type or duration.
+     * Called by Task.
+     */
+    void taskChanged(Task task, char oldType, int oldDuration) {
+        durationStats.remove(oldType, oldDuration);
+        durationStats.add(task.getTaskType(), task.getTaskDuration());
+        if (store != null) {
+            store.taskChanged(task, oldType, oldDuration);
+        }
+        markChanged();
+    }
+
+    /**
+     * Updates the store's completion index after one of this project's tasks was
+     * marked completed or not completed. Called by Task.
+     */
+    void taskCompletionChanged(Task task) {
+        if (store != null) {
+            store.taskCompletionChanged(task);
+        }
+        markChanged();
+    }
+
+    /**
+     * Updates the store's text index after one of this project's tasks changed description.
+     * Called by Task.
+     */
+    void taskDescriptionChanged(Task task, String oldDescription) {
+        if (store != null) {
+            store.taskDescriptionChanged(task, oldDescription);
+        }
+        markChanged();
+    }
+
+    /**
+     * Updates the task ID index after one of this project's tasks changed ID.
+     * Called by Task.
+     */
+    void taskIdChanged(Task task, int oldId) {
+        unindexTaskId(oldId, task.getSlot());
+        indexTaskId(task);
+        markChanged();
+    }
+
+    /**
+     * Gives the project a new version after it or one of its tasks changed.
+     */
+    private void markChanged() {
+        version++;
+        if (store != null) {
+            store.projectChanged(this);
+        }
+    }
+
+    /**
+     * Hands out an empty slot, growing the task storage and table if none is left.
+     */
+    private int takeSlot() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (slotsUsed == tasks.length) {
+            int capacity = grownCapacity(tasks.length);
+            tasks = Arrays.copyOf(tasks, capacity);
+            table.grow(capacity);
+        }
+        return slotsUsed++;
+    }
+
+    /**
+     * Updates the ID index and totals after a task was put in its slot.
+     */
+    private void taskAdded(Task task) {
+        taskCount++;
+        indexTaskId(task);
+        durationStats.add(task.getTaskType(), task.getTaskDuration());
+        if (store != null) {
+            store.taskAdded(this, task);
+        }
+        markChanged();
+    }
+
+    /**
+     * Updates the totals after a task left this project. The task keeps its values,
+     * moved out of the task table.
+     */
+    private void taskRemoved(Task task) {
+        task.detach();
+        durationStats.remove(task.getTaskType(), task.getTaskDuration());
+        if (store != null) {
+            store.taskRemoved(this, task);
+        }
+        markChanged();
+    }
+
+    /**
+     * Adds a task to the ID index, unless another task already has its ID.
+     */
+    private void indexTaskId(Task task) {
+        if (slotById.putIfAbsent(task.getTaskId(), task.getSlot()) != null) {
+            duplicateIdCount++;
+        } else {
+            taskIds.markUsed(task.getTaskId());
+        }
+    }
+
+    /**
+     * Takes a task out of the ID index. If another task shares the ID,
+     * it takes the index entry over, otherwise the ID is freed.
+     */
+    private void unindexTaskId(int taskId, int slot) {
+        Integer indexed = slotById.get(taskId);
+        if (indexed == null || indexed != slot) {
+            // The task was a duplicate and never indexed
+            duplicateIdCount--;
+            return;
+        }
+
+        slotById.remove(taskId);
+        if (duplicateIdCount > 0) {
+            for (int i = 0; i < slotsUsed; i++) {
+                if (i != slot && tasks[i] != null && table.getTaskId(i) == taskId) {
+                    slotById.put(taskId, i);
+                    duplicateIdCount--;
+                    return;
+                }
+            }
+        }
+        taskIds.release(taskId);
+    }
+
+    /**
+     * Sizes the task ID range for the task limit, keeping the IDs already in use.
+     */
+    private void resizeTaskIds() {
+        if (taskIds.getMaxId() == getMaxTaskId()) {
+            return;
+        }
+        IdAllocator resized = new IdAllocator(1, getMaxTaskId());
+        for (int taskId : slotById.keySet()) {
+            resized.markUsed(taskId);
+        }
+        taskIds = resized;
+    }
+
+    /**
+     * Works out the next task storage size, doubling up to the task limit.
+     */
+    private int grownCapacity(int capacity) {
+        long doubled = Math.max(1L, capacity * 2L);
+        return (int) Math.max(capacity + 1L, Math.min(doubled, getTaskLimit()));
+    }
 }
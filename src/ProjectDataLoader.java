@@ -0,0 +1,935 @@
+/**
+ * ProjectDataLoader class reads projects and tasks from the text data format
+ * (e.g. ProjectData.txt) into a ProjectStore.
+ *
+ * The file is read in large byte blocks and each line is split into tokens in place,
+ * so no String is created for a line unless it is kept (names, descriptions)
+ * or shown as a skipped line. Large files are split at project lines and parsed
+ * in parallel on the fork-join pool.
+ *
+ * Skipped lines are collected in LoadDiagnostics, and one summary is printed
+ * at the end of each load.
+ *
+ * Expected project line format: ID,Name,Type
+ * Expected task line format: ID,Description,Type,Duration,Completed
+ */
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class ProjectDataLoader {
+
+    // Size of the read buffer, grown if a single line does not fit
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Only lines with 3 (project) or 5 (task) tokens are valid
+    private static final int MAX_TOKENS = 5;
+
+    // Files at least this big are loaded in parallel
+    public static final long PARALLEL_THRESHOLD = 8L * 1024 * 1024;
+
+    // Smallest chunk handed to one parallel task
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Kinds of problem reported for a skipped line. Only PARSE_ERROR is an [ERROR],
+     * the rest are warnings.
+     */
+    public enum Issue {
+        MALFORMED_LINE("Malformed line or out-of-place task"),
+        PARSE_ERROR("Failed to parse line"),
+        INVALID_PROJECT_ID("Invalid project ID"),
+        INVALID_PROJECT_TYPE("Invalid project type"),
+        DUPLICATE_PROJECT_ID("Duplicate project ID"),
+        PROJECT_FULL("Project full"),
+        EMPTY_DESCRIPTION("Task description is empty"),
+        INVALID_TASK_TYPE("Invalid task type"),
+        INVALID_DURATION("Invalid task duration");
+
+        private final String label;
+
+        Issue(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Gets the name shown in reports.
+         * @return label as String
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Gets the prefix shown in reports.
+         * @return "[ERROR]" or "[WARNING]"
+         */
+        public String getLevel() {
+            return (this == PARSE_ERROR) ? "[ERROR]" : "[WARNING]";
+        }
+    }
+
+    // Every skipped line is written here by loads with no report file of their own, null for none
+    private static volatile Path defaultReportFile;
+
+    // Projects parsed so far, null when this loader parses one chunk of a parallel load
+    private final ProjectStore loadedProjects;
+
+    // IDs of the projects parsed from the chunk, only set when this loader parses one chunk
+    private final BitSet chunkProjectIds;
+
+    // Most recent valid project, task lines are added to this project
+    private Project currentProject;
+
+    // Trimmed start/end offsets of the tokens on the current line
+    private final int[] tokenStart = new int[MAX_TOKENS];
+    private final int[] tokenEnd = new int[MAX_TOKENS];
+
+    // File offset of the first byte in the read buffer
+    private long bufferOffset;
+
+    // Lines in the file or stream, counted once even when part of a parallel load is replayed
+    private long lineCount;
+
+    // Number of the line being parsed, from 1 (from the start of the chunk when loading a chunk)
+    private long lineNumber;
+
+    // Skipped lines of the whole load, created when the load starts
+    private LoadDiagnostics diagnostics;
+    private Path reportFile = defaultReportFile;
+
+    // Only set when this loader parses one chunk of a parallel load
+    private final List<Segment> segments;
+    private Segment currentSegment;
+
+    // Skipped lines of the chunk, null if the load has no report file
+    private final LoadDiagnostics.Spill spill;
+
+    /**
+     * Creates a loader that reads projects into a new ProjectStore.
+     */
+    public ProjectDataLoader() {
+        this.loadedProjects = new ProjectStore();
+        this.chunkProjectIds = null;
+        this.segments = null;
+        this.spill = null;
+    }
+
+    /**
+     * Creates a loader for one chunk of a parallel load. The chunk's projects are
+     * only collected in its segments, they are indexed once they are merged.
+     * @param spill Spill file for the chunk's skipped lines, or null
+     */
+    private ProjectDataLoader(LoadDiagnostics.Spill spill) {
+        this.loadedProjects = null;
+        this.chunkProjectIds = new BitSet();
+        this.segments = new ArrayList<>();
+        this.spill = spill;
+    }
+
+    // -------------------------------------------------------------------------
+    // Reading Lines
+    // -------------------------------------------------------------------------
+
+    /**
+     * Sets the file every skipped line is written to by loaders created from now on.
+     * @param file Path, or null for no report
+     */
+    public static void setDefaultReportFile(Path file) {
+        defaultReportFile = file;
+    }
+
+    /**
+     * Sets the file every skipped line is written to, replaced on each load.
+     * @param file Path, or null for no report
+     */
+    public void setReportFile(Path file) {
+        this.reportFile = file;
+    }
+
+    /**
+     * Gets the lines skipped by the last load.
+     * @return LoadDiagnostics, or null before the first load
+     */
+    public LoadDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Loads a data file, switching to the parallel loader for large files.
+     *
+     * @param file The file to read.
+     * @return A ProjectStore holding the loaded projects.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if the file cannot be read.
+     */
+    public ProjectStore load(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        long start = System.nanoTime();
+        long size = file.length();
+        startDiagnostics();
+        try {
+            if (size >= PARALLEL_THRESHOLD) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    loadParallel(channel, chunkSize(channel));
+                }
+            } else {
+                try (InputStream in = new FileInputStream(file)) {
+                    lineCount = readLines(in, 0);
+                }
+            }
+        } finally {
+            diagnostics.finish();
+        }
+        diagnostics.printSummary(System.out, file.getPath());
+        Metrics.record(Metrics.Operation.LOAD, start, lineCount, size);
+        return loadedProjects;
+    }
+
+    /**
+     * Reads every line from the given stream and returns the projects it describes.
+     * Bad lines are skipped, and a summary of them is printed at the end.
+     *
+     * @param in The stream to read, it is not closed by this method.
+     * @return A ProjectStore holding the loaded projects.
+     * @throws IOException if the stream cannot be read.
+     */
+    public ProjectStore load(InputStream in) throws IOException {
+        startDiagnostics();
+        try {
+            lineCount = readLines(in, 0);
+        } finally {
+            diagnostics.finish();
+        }
+        diagnostics.printSummary(System.out, "input");
+        return loadedProjects;
+    }
+
+    private void startDiagnostics() throws IOException {
+        diagnostics = new LoadDiagnostics(reportFile);
+        lineNumber = 0;
+    }
+
+    /**
+     * Splits the stream into lines and parses each one.
+     *
+     * @param in The stream to read.
+     * @param offset File offset of the first byte in the stream.
+     * @return The number of lines read.
+     */
+    private long readLines(InputStream in, long offset) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        long lines = 0;
+        int filled = 0;
+        int lineStart = 0;
+        int pos = 0;
+        boolean skipLineFeed = false;
+        bufferOffset = offset;
+
+        while (true) {
+            if (pos == filled) {
+                // Move the unfinished line to the front before reading more
+                if (lineStart > 0) {
+                    System.arraycopy(buf, lineStart, buf, 0, filled - lineStart);
+                    filled -= lineStart;
+                    pos -= lineStart;
+                    bufferOffset += lineStart;
+                    lineStart = 0;
+                }
+                if (filled == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                int read = in.read(buf, filled, buf.length - filled);
+                if (read == -1) break;
+                filled += read;
+            }
+
+            byte b = buf[pos];
+
+            // "\r\n" counts as a single line break
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    lineStart = ++pos;
+                    continue;
+                }
+            }
+
+            if (b == '\n' || b == '\r') {
+                lineNumber++;
+                handleLine(buf, lineStart, pos);
+                lines++;
+                skipLineFeed = (b == '\r');
+                lineStart = ++pos;
+            } else {
+                pos++;
+            }
+        }
+
+        // Last line may not end with a line break
+        if (lineStart < filled) {
+            lineNumber++;
+            handleLine(buf, lineStart, filled);
+            lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * Parses one line and, when loading a chunk, starts a new segment
+     * each time the line turns out to be a valid project header.
+     */
+    private void handleLine(byte[] buf, int start, int end) {
+        if (segments == null) {
+            processLine(buf, start, end);
+            return;
+        }
+
+        Project previous = currentProject;
+        processLine(buf, start, end);
+        if (currentProject != previous) {
+            long lineOffset = bufferOffset + start;
+            if (currentSegment != null) {
+                currentSegment.end = lineOffset;
+            }
+            currentSegment = new Segment(currentProject, lineOffset, lineNumber);
+            segments.add(currentSegment);
+        }
+    }
+
+    /**
+     * Records a skipped line. While loading a chunk it is counted in the current segment
+     * (and written to the chunk's spill file when there is a report file) and added to
+     * the load's diagnostics, in file order, once the chunks are merged.
+     * The line's text is only copied out of the buffer if the diagnostics keep it.
+     *
+     * @param error The exception that made the line fail to parse, or null.
+     */
+    private void report(Issue issue, byte[] buf, int start, int end, RuntimeException error) {
+        LoadDiagnostics target;
+        if (segments == null) {
+            target = diagnostics;
+        } else if (currentSegment != null) {
+            target = currentSegment.diagnostics();
+        } else {
+            // Lines before the first project of a chunk are replayed during the merge
+            return;
+        }
+
+        if (!target.keepsNext()) {
+            target.count(issue);
+            return;
+        }
+        String detail = null;
+        if (error != null) {
+            detail = error.getMessage();
+        } else if (issue == Issue.PROJECT_FULL) {
+            detail = "project " + currentProject.getProjectId();
+        }
+        try {
+            target.add(issue, lineNumber, text(buf, start, end), detail);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Parallel Loading
+    // -------------------------------------------------------------------------
+
+    /**
+     * Loads a data file by splitting it into chunks that start at project lines
+     * and parsing the chunks at the same time on the fork-join pool.
+     * The result is the same as a sequential load, including the order of messages.
+     *
+     * @param file The file to read.
+     * @return A ProjectStore holding the loaded projects.
+     * @throws IOException if the file cannot be read.
+     */
+    public ProjectStore loadParallel(Path file) throws IOException {
+        startDiagnostics();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            loadParallel(channel, chunkSize(channel));
+        } finally {
+            diagnostics.finish();
+        }
+        diagnostics.printSummary(System.out, file.toString());
+        return loadedProjects;
+    }
+
+    private static long chunkSize(FileChannel channel) throws IOException {
+        int chunks = ForkJoinPool.getCommonPoolParallelism() * 4;
+        return Math.max(MIN_CHUNK_SIZE, channel.size() / chunks);
+    }
+
+    /**
+     * Loads the channel in chunks of roughly chunkSize bytes.
+     */
+    ProjectStore loadParallel(FileChannel channel, long chunkSize) throws IOException {
+        if (diagnostics == null) {
+            startDiagnostics();
+        }
+        long[] bounds = chunkBoundaries(channel, chunkSize);
+
+        // Parse every chunk in parallel
+        List<ChunkTask> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            ChunkTask task = new ChunkTask(channel, bounds[i], bounds[i + 1], reportFile);
+            ForkJoinPool.commonPool().execute(task);
+            tasks.add(task);
+        }
+
+        // Merge in file order while later chunks are still parsing
+        lineCount = 0;
+        int merged = 0;
+        try {
+            for (ChunkTask task : tasks) {
+                ChunkResult result;
+                try {
+                    result = task.join();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                merged++;
+                try {
+                    mergeChunk(channel, result, lineCount);
+                } finally {
+                    result.closeSpill();
+                }
+                lineCount += result.lines;
+            }
+        } finally {
+            // After a failure, wait for the remaining chunks so their spill files are deleted
+            for (ChunkTask task : tasks.subList(merged, tasks.size())) {
+                try {
+                    task.join().closeSpill();
+                } catch (RuntimeException | IOException e) {
+                    // The load has already failed
+                }
+            }
+        }
+        return loadedProjects;
+    }
+
+    /**
+     * Adds a parsed chunk to this loader's projects, indexing each project and its tasks once.
+     * Lines before the chunk's first project are replayed, since they belong to the
+     * project before them. A project whose ID was already loaded by an earlier chunk
+     * is replayed too, so it is skipped exactly as a sequential load would skip it.
+     *
+     * @param linesBefore Lines in the file before the chunk.
+     */
+    private void mergeChunk(FileChannel channel, ChunkResult result, long linesBefore) throws IOException {
+        long leadingEnd = result.segments.isEmpty() ? result.end : result.segments.get(0).start;
+        replay(channel, result.start, leadingEnd, linesBefore);
+
+        for (Segment segment : result.segments) {
+            if (loadedProjects.contains(segment.project.getProjectId())) {
+                if (segment.diagnostics != null) {
+                    segment.diagnostics.discard();
+                }
+                replay(channel, segment.start, segment.end, linesBefore + segment.firstLine - 1);
+                continue;
+            }
+            loadedProjects.add(segment.project);
+            currentProject = segment.project;
+            if (segment.diagnostics != null) {
+                diagnostics.addAll(segment.diagnostics, linesBefore);
+            }
+        }
+    }
+
+    /**
+     * Parses part of the file sequentially against the merged projects.
+     *
+     * @param linesBefore Lines in the file before start.
+     */
+    private void replay(FileChannel channel, long start, long end, long linesBefore) throws IOException {
+        if (start < end) {
+            lineNumber = linesBefore;
+            readLines(rangeStream(channel, start, end), start);
+        }
+    }
+
+    /**
+     * Picks chunk start offsets about chunkSize bytes apart, each moved forward
+     * to the start of the next project line.
+     * A boundary on a line that is not really a valid project is still safe,
+     * since the lines before a chunk's first project are replayed during the merge.
+     *
+     * @return Chunk offsets, starting with 0 and ending with the file size.
+     */
+    private static long[] chunkBoundaries(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+
+        long pos = chunkSize;
+        while (pos < size) {
+            long start = nextProjectLine(channel, pos, size);
+            if (start >= size) break;
+            bounds.add(start);
+            pos = start + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the first line starting after pos that looks like a project line (two commas).
+     *
+     * @return The offset of that line, or size if there is none.
+     */
+    private static long nextProjectLine(FileChannel channel, long pos, long size) throws IOException {
+        InputStream in = new BufferedInputStream(rangeStream(channel, pos - 1, size), BUFFER_SIZE);
+        long offset = pos - 1;
+        boolean atLineStart = false;
+        long lineStart = -1;
+        int commas = 0;
+
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n' || b == '\r') {
+                if (lineStart >= 0 && commas == 2) {
+                    return lineStart;
+                }
+                atLineStart = true;
+                lineStart = -1;
+            } else {
+                if (atLineStart) {
+                    lineStart = offset;
+                    commas = 0;
+                    atLineStart = false;
+                }
+                if (b == ',') commas++;
+            }
+            offset++;
+        }
+        return (lineStart >= 0 && commas == 2) ? lineStart : size;
+    }
+
+    /**
+     * Reads part of a file channel as a stream, using positional reads so
+     * several chunks can read the same channel at once.
+     */
+    private static InputStream rangeStream(FileChannel channel, long start, long end) {
+        return new InputStream() {
+            private long pos = start;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (pos >= end) return -1;
+                int wanted = (int) Math.min(len, end - pos);
+                int read = channel.read(ByteBuffer.wrap(b, off, wanted), pos);
+                if (read <= 0) return -1;
+                pos += read;
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Fork-join task that parses one chunk of the file with its own loader.
+     */
+    private static class ChunkTask extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+        private final transient Path reportFile;
+
+        ChunkTask(FileChannel channel, long start, long end, Path reportFile) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.reportFile = reportFile;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            LoadDiagnostics.Spill spill = null;
+            ProjectDataLoader chunkLoader;
+            long lines;
+            try {
+                if (reportFile != null) {
+                    spill = LoadDiagnostics.Spill.create(reportFile);
+                }
+                chunkLoader = new ProjectDataLoader(spill);
+                lines = chunkLoader.readLines(rangeStream(channel, start, end), start);
+            } catch (IOException | RuntimeException e) {
+                if (spill != null) {
+                    try {
+                        spill.close();
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            }
+            if (chunkLoader.currentSegment != null) {
+                chunkLoader.currentSegment.end = end;
+            }
+            return new ChunkResult(start, end, lines, chunkLoader.segments, chunkLoader.spill);
+        }
+    }
+
+    /**
+     * Projects parsed from one chunk, in file order, not yet in any ProjectStore.
+     */
+    private static class ChunkResult {
+        final long start;
+        final long end;
+        final long lines;
+        final List<Segment> segments;
+
+        // Skipped lines of the segments, in order, null if the load has no report file
+        final LoadDiagnostics.Spill spill;
+
+        ChunkResult(long start, long end, long lines, List<Segment> segments, LoadDiagnostics.Spill spill) {
+            this.start = start;
+            this.end = end;
+            this.lines = lines;
+            this.segments = segments;
+            this.spill = spill;
+        }
+
+        void closeSpill() throws IOException {
+            if (spill != null) {
+                spill.close();
+            }
+        }
+    }
+
+    /**
+     * A project line plus the lines after it, up to the next project line.
+     * Holds the project with its tasks and the lines skipped among them.
+     */
+    private class Segment {
+        final Project project;
+        final long start;
+        long end;
+
+        // Line number of the project line, from the start of the chunk
+        final long firstLine;
+
+        // Created when the first line is skipped
+        LoadDiagnostics diagnostics;
+
+        Segment(Project project, long start, long firstLine) {
+            this.project = project;
+            this.start = start;
+            this.firstLine = firstLine;
+        }
+
+        LoadDiagnostics diagnostics() {
+            if (diagnostics == null) {
+                diagnostics = new LoadDiagnostics(spill);
+            }
+            return diagnostics;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Parsing Lines
+    // -------------------------------------------------------------------------
+
+    /**
+     * Parses one line of the file, held in buf between start and end.
+     * Lines with 3 tokens are projects, lines with 5 tokens are tasks for the
+     * most recent project. Anything else is reported as malformed.
+     */
+    private void processLine(byte[] buf, int start, int end) {
+        // Trim whitespace
+        while (start < end && isWhitespace(buf[start])) start++;
+        while (end > start && isWhitespace(buf[end - 1])) end--;
+
+        // Skip blank lines, and lines made only of commas
+        if (start == end) return;
+        int tokenCount = splitTokens(buf, start, end);
+        if (tokenCount == 0) return;
+
+        try {
+            if (tokenCount == 3) {
+                parseProjectLine(buf, start, end);
+            } else if (tokenCount == 5 && currentProject != null) {
+                parseTaskLine(buf, start, end);
+            } else {
+                report(Issue.MALFORMED_LINE, buf, start, end, null);
+            }
+        } catch (RuntimeException e) {
+            report(Issue.PARSE_ERROR, buf, start, end, e);
+        }
+    }
+
+    /**
+     * Parses a project line: ID,Name,Type
+     * A valid project becomes the current project for the task lines that follow.
+     */
+    private void parseProjectLine(byte[] buf, int start, int end) {
+        // Checks the projectID is valid
+        int projectId = parseInt(buf, tokenStart[0], tokenEnd[0]);
+        if (projectId < 1 || projectId > ProjectStore.MAX_PROJECT_ID) {
+            report(Issue.INVALID_PROJECT_ID, buf, start, end, null);
+            return;
+        }
+
+        // Validate project type
+        String type = projectType(buf, tokenStart[2], tokenEnd[2]);
+        if (type == null) {
+            report(Issue.INVALID_PROJECT_TYPE, buf, start, end, null);
+            return;
+        }
+
+        // Project IDs must be unique, checked last since it depends on earlier lines
+        boolean duplicate = loadedProjects != null
+                ? loadedProjects.contains(projectId)
+                : chunkProjectIds.get(projectId);
+        if (duplicate) {
+            report(Issue.DUPLICATE_PROJECT_ID, buf, start, end, null);
+            return;
+        }
+
+        currentProject = new Project();
+        currentProject.setProjectId(projectId);
+        currentProject.setProjectName(text(buf, tokenStart[1], tokenEnd[1]));
+        currentProject.setProjectType(type);
+        if (loadedProjects != null) {
+            loadedProjects.add(currentProject);
+        } else {
+            chunkProjectIds.set(projectId);
+        }
+    }
+
+    /**
+     * Parses a task line: ID,Description,Type,Duration,Completed
+     * The task is added to the current project if it is valid and there is room.
+     */
+    private void parseTaskLine(byte[] buf, int start, int end) {
+        if (!currentProject.hasRoomForTask()) {
+            report(Issue.PROJECT_FULL, buf, start, end, null);
+            return;
+        }
+
+        int taskId = parseInt(buf, tokenStart[0], tokenEnd[0]);
+        boolean emptyDescription = tokenStart[1] == tokenEnd[1];
+        char taskType = taskType(buf, tokenStart[2], tokenEnd[2]);
+        int duration = parseInt(buf, tokenStart[3], tokenEnd[3]);
+        boolean completed = isTrue(buf, tokenStart[4], tokenEnd[4]);
+
+        // Checks for empty description
+        if (emptyDescription) {
+            report(Issue.EMPTY_DESCRIPTION, buf, start, end, null);
+            return;
+        }
+
+        // Checks for valid task type
+        if (taskType != 'A' && taskType != 'S' && taskType != 'L') {
+            report(Issue.INVALID_TASK_TYPE, buf, start, end, null);
+            return;
+        }
+
+        // Checks for valid duration
+        if (duration <= 0 || duration > 100) {
+            report(Issue.INVALID_DURATION, buf, start, end, null);
+            return;
+        }
+
+        // The description goes from the line straight into the project's task table
+        currentProject.addTask(taskId, buf, tokenStart[1], tokenEnd[1] - tokenStart[1],
+                taskType, duration, completed);
+    }
+
+    // -------------------------------------------------------------------------
+    // Token Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Splits the line at commas, recording the trimmed offsets of the first tokens.
+     * Trailing empty tokens are not counted, matching String.split(",").
+     *
+     * @return The number of tokens on the line.
+     */
+    private int splitTokens(byte[] buf, int start, int end) {
+        int count = 0;
+        int lastNonEmpty = 0;
+        int segmentStart = start;
+
+        for (int i = start; i <= end; i++) {
+            if (i == end || buf[i] == ',') {
+                if (count < MAX_TOKENS) {
+                    int s = segmentStart;
+                    int e = i;
+                    while (s < e && isWhitespace(buf[s])) s++;
+                    while (e > s && isWhitespace(buf[e - 1])) e--;
+                    tokenStart[count] = s;
+                    tokenEnd[count] = e;
+                }
+                count++;
+                if (i > segmentStart) {
+                    lastNonEmpty = count;
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return lastNonEmpty;
+    }
+
+    /**
+     * Parses a base 10 int straight from the buffer, with an optional sign.
+     *
+     * @throws NumberFormatException if the token is not a valid int.
+     */
+    static int parseInt(byte[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = (buf[i] == '-');
+            i++;
+        }
+        if (i == end) {
+            throw numberFormatError(buf, start, end);
+        }
+
+        // Accumulate as a negative number so Integer.MIN_VALUE fits
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                throw numberFormatError(buf, start, end);
+            }
+            result = result * 10;
+            if (result < limit + digit) {
+                throw numberFormatError(buf, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Builds the same error Integer.parseInt gives for a bad token.
+     */
+    private static NumberFormatException numberFormatError(byte[] buf, int start, int end) {
+        return new BadNumberException(buf, start, end);
+    }
+
+    /**
+     * NumberFormatException without a stack trace, that only copies the token out of
+     * the buffer if its message is used, so bad numbers cost little to skip.
+     * The message must be read before the buffer moves on to the next line.
+     */
+    private static final class BadNumberException extends NumberFormatException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient byte[] buf;
+        private final int start;
+        private final int end;
+
+        BadNumberException(byte[] buf, int start, int end) {
+            this.buf = buf;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+
+        @Override
+        public String getMessage() {
+            return "For input string: \"" + text(buf, start, end) + "\"";
+        }
+    }
+
+    /**
+     * Matches the project type token against Small, Medium or Large.
+     *
+     * @return The matching project type, or null if the token is not valid.
+     */
+    private static String projectType(byte[] buf, int start, int end) {
+        if (matches(buf, start, end, "Small")) return "Small";
+        if (matches(buf, start, end, "Medium")) return "Medium";
+        if (matches(buf, start, end, "Large")) return "Large";
+        return null;
+    }
+
+    /**
+     * Gets the upper case first character of the task type token.
+     *
+     * @throws StringIndexOutOfBoundsException if the token is empty.
+     */
+    private static char taskType(byte[] buf, int start, int end) {
+        if (start < end && buf[start] >= 0) {
+            return Character.toUpperCase((char) buf[start]);
+        }
+        // Empty or non-ASCII token, fall back to the String rules
+        return text(buf, start, end).toUpperCase().charAt(0);
+    }
+
+    /**
+     * Checks if the token is "true", ignoring case (same as Boolean.parseBoolean).
+     */
+    private static boolean isTrue(byte[] buf, int start, int end) {
+        return end - start == 4
+                && (buf[start] | 0x20) == 't'
+                && (buf[start + 1] | 0x20) == 'r'
+                && (buf[start + 2] | 0x20) == 'u'
+                && (buf[start + 3] | 0x20) == 'e';
+    }
+
+    /**
+     * Checks if the token is exactly the given ASCII word.
+     */
+    private static boolean matches(byte[] buf, int start, int end, String word) {
+        if (end - start != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (buf[start + i] != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks for the same whitespace String.trim() removes.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    /**
+     * Decodes part of the buffer as a UTF-8 String.
+     */
+    private static String text(byte[] buf, int start, int end) {
+        return new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+}
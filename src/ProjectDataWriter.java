@@ -0,0 +1,473 @@
+/**
+ * ProjectDataWriter class saves projects and tasks in the text data format
+ * (e.g. ProjectData.txt) read by ProjectDataLoader.
+ *
+ * Numbers, booleans and text are written straight into one large byte buffer,
+ * so no String is built per line. Full saves go to a temporary file that is synced
+ * and then renamed over the target, so a crash never leaves a half-written file.
+ *
+ * A saved file is a run of segments, one per project: the project line and its
+ * task lines. The store remembers where each segment is and the project version
+ * it holds. saveChanges() still writes a complete new file to a temporary file and
+ * renames it over the target, so every save costs a full copy of the file. What it
+ * saves is the formatting: only the projects that changed are formatted, and the
+ * bytes of the others are copied from the old file. The store also counts its
+ * changes, so a save with nothing to write returns without looking at any project.
+ *
+ * Project line format: projectId,projectName,projectType
+ * Task line format: taskId,description,taskType,duration,completed
+ */
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ProjectDataWriter {
+
+    // Size of the write buffer
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // Longest text an int can take ("-2147483648")
+    private static final int MAX_INT_LENGTH = 11;
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+    // Same line ending PrintWriter.println used
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int count;
+    private OutputStream out;
+
+    // Bytes passed to out so far
+    private long written;
+
+    // Project and task lines written so far
+    private long lines;
+
+    // -------------------------------------------------------------------------
+    // Saving
+    // -------------------------------------------------------------------------
+
+    /**
+     * Saves every project to the given file.
+     * The data is written to a temporary file next to it, synced to disk,
+     * and then moved over the target in one step.
+     *
+     * @param projects The projects to save.
+     * @param file The file to replace.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(ProjectStore projects, Path file) throws IOException {
+        long start = System.nanoTime();
+        Path target = file.toAbsolutePath().normalize();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        Layout layout = new Layout(target, projects.getChangeCount());
+        projects.setSavedLayout(null);
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(temp.toFile())) {
+                writeSegments(projects, fileOut, layout);
+                fileOut.getFD().sync();
+            }
+            replace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        layout.fileSize = written;
+        layout.modified = Files.getLastModifiedTime(target);
+        projects.setSavedLayout(layout);
+        Metrics.record(Metrics.Operation.SAVE, start, lines, written);
+    }
+
+    /**
+     * Saves the projects to the file they were last saved to. The whole file is
+     * written again: projects that changed since then are formatted, and the others'
+     * segments are copied from the old file. Like a full save, the result goes to a
+     * temporary file that is synced and moved over the target. Nothing is written,
+     * and no project is visited, if the store has not changed since the last save.
+     *
+     * Falls back to a full save if the projects were not last saved to this file
+     * or the file was changed by something else.
+     *
+     * @param projects The projects to save.
+     * @param file The file to update.
+     * @return The number of projects changed, added or removed.
+     * @throws IOException if the file cannot be written.
+     */
+    public int saveChanges(ProjectStore projects, Path file) throws IOException {
+        long start = System.nanoTime();
+        Path target = file.toAbsolutePath().normalize();
+        Layout layout = projects.getSavedLayout();
+        if (layout == null || !layout.isCurrent(target)) {
+            save(projects, file);
+            return projects.size();
+        }
+        if (layout.storeChanges == projects.getChangeCount()) {
+            Metrics.record(Metrics.Operation.SAVE_CHANGES, start, 0, 0);
+            return 0;
+        }
+
+        int changed = 0;
+        for (Project p : projects) {
+            if (!layout.isSaved(p)) {
+                changed++;
+            }
+        }
+        int removed = 0;
+        for (Integer projectId : layout.segments.keySet()) {
+            if (!projects.contains(projectId)) {
+                removed++;
+            }
+        }
+        if (changed == 0 && removed == 0) {
+            Metrics.record(Metrics.Operation.SAVE_CHANGES, start, 0, 0);
+            return 0;
+        }
+
+        // If anything goes wrong the layout no longer matches the file, so the next save is a full one
+        projects.setSavedLayout(null);
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        Layout updated = new Layout(target, projects.getChangeCount());
+        try {
+            try (FileChannel source = FileChannel.open(target, StandardOpenOption.READ);
+                 FileOutputStream fileOut = new FileOutputStream(temp.toFile())) {
+                copySegments(projects, layout, source, fileOut, updated);
+                fileOut.getFD().sync();
+            }
+            replace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        updated.fileSize = written;
+        updated.modified = Files.getLastModifiedTime(target);
+        projects.setSavedLayout(updated);
+        Metrics.record(Metrics.Operation.SAVE_CHANGES, start, lines, written);
+        return changed + removed;
+    }
+
+    /**
+     * Writes every project and its tasks to the given stream.
+     *
+     * @param projects The projects to write.
+     * @param out The stream to write to, it is flushed but not closed.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void write(ProjectStore projects, OutputStream out) throws IOException {
+        this.out = out;
+        count = 0;
+        for (Project p : projects) {
+            writeProject(p);
+        }
+        flush();
+        out.flush();
+    }
+
+    /**
+     * Writes every project as a segment, recording where each one starts.
+     */
+    private void writeSegments(ProjectStore projects, OutputStream out, Layout layout) throws IOException {
+        this.out = out;
+        count = 0;
+        written = 0;
+        lines = 0;
+        for (Project p : projects) {
+            long start = written + count;
+            writeProject(p);
+            layout.segments.put(p.getProjectId(), new Segment(p, start, written + count - start));
+        }
+        flush();
+        out.flush();
+    }
+
+    /**
+     * Writes every project as a segment like writeSegments, but copies the segments
+     * of unchanged projects from the old file instead of formatting them.
+     * Neighbouring unchanged segments are copied in one go.
+     */
+    private void copySegments(ProjectStore projects, Layout old, FileChannel source, FileOutputStream fileOut,
+            Layout layout) throws IOException {
+        this.out = fileOut;
+        count = 0;
+        written = 0;
+        lines = 0;
+        FileChannel target = fileOut.getChannel();
+
+        // Bytes of the old file still to be copied
+        long copyStart = 0;
+        long copyLength = 0;
+        for (Project p : projects) {
+            long start = written + count + copyLength;
+            Segment segment = old.segments.get(p.getProjectId());
+            if (old.isSaved(p)) {
+                if (copyLength > 0 && copyStart + copyLength != segment.offset) {
+                    copy(source, target, copyStart, copyLength);
+                    copyLength = 0;
+                }
+                if (copyLength == 0) {
+                    copyStart = segment.offset;
+                }
+                copyLength += segment.length;
+                layout.segments.put(p.getProjectId(), new Segment(p, start, segment.length));
+            } else {
+                copy(source, target, copyStart, copyLength);
+                copyLength = 0;
+                writeProject(p);
+                layout.segments.put(p.getProjectId(), new Segment(p, start, written + count - start));
+            }
+        }
+        copy(source, target, copyStart, copyLength);
+        flush();
+        fileOut.flush();
+    }
+
+    /**
+     * Copies bytes of the old file to the end of the new one, after whatever is in the buffer.
+     */
+    private void copy(FileChannel source, FileChannel target, long position, long length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        flush();
+        long end = position + length;
+        while (position < end) {
+            long copied = source.transferTo(position, end - position, target);
+            if (copied <= 0) {
+                throw new IOException("Data file ended early while copying unchanged projects");
+            }
+            position += copied;
+        }
+        written += length;
+    }
+
+    /**
+     * Moves the temporary file over the target, atomically where the file system allows it.
+     * Temporary files are created readable by the owner only, so an existing target's
+     * POSIX permissions are copied onto the temporary file first and the save keeps them.
+     */
+    static void replace(Path temp, Path target) throws IOException {
+        if (Files.exists(target) && Files.getFileAttributeView(target, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Formatting
+    // -------------------------------------------------------------------------
+
+    /**
+     * Writes the project line followed by one line per task.
+     */
+    private void writeProject(Project p) throws IOException {
+        writeInt(p.getProjectId());
+        writeByte(',');
+        writeText(p.getProjectName());
+        writeByte(',');
+        writeText(p.getProjectType());
+        writeBytes(LINE_SEPARATOR);
+        lines++;
+
+        // Values come straight from the task table's columns
+        TaskTable table = p.getTaskTable();
+        for (Task t : p.getTasks()) {
+            if (t != null) {
+                int row = t.getSlot();
+                writeInt(table.getTaskId(row));
+                writeByte(',');
+                writeDescription(table, row);
+                writeByte(',');
+                writeChar(table.getTaskType(row));
+                writeByte(',');
+                writeInt(table.getTaskDuration(row));
+                writeByte(',');
+                writeBytes(table.isCompleted(row) ? TRUE : FALSE);
+                writeBytes(LINE_SEPARATOR);
+                lines++;
+            }
+        }
+    }
+
+    /**
+     * Writes an int as decimal digits straight into the buffer.
+     */
+    private void writeInt(int value) throws IOException {
+        if (count + MAX_INT_LENGTH > buf.length) flush();
+
+        if (value == Integer.MIN_VALUE) {
+            writeText(Integer.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buf[count++] = '-';
+            value = -value;
+        }
+
+        // Digits are written backwards from the end of the number
+        int end = count + digitCount(value);
+        int pos = end;
+        do {
+            buf[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count = end;
+    }
+
+    /**
+     * Counts the decimal digits in a non-negative int.
+     */
+    private static int digitCount(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Writes text as UTF-8. Plain ASCII is copied a byte at a time without creating anything.
+     */
+    private void writeText(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Encode the rest of the text in one go
+                writeBytes(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            writeByte(c);
+        }
+    }
+
+    /**
+     * Writes a task's description, copying its UTF-8 bytes from the task table
+     * without creating a String.
+     */
+    private void writeDescription(TaskTable table, int row) throws IOException {
+        int length = table.getDescriptionLength(row);
+        if (length > buf.length - count) {
+            flush();
+            if (length > buf.length) {
+                byte[] bytes = new byte[length];
+                table.copyDescription(row, bytes, 0);
+                out.write(bytes);
+                written += length;
+                return;
+            }
+        }
+        table.copyDescription(row, buf, count);
+        count += length;
+    }
+
+    /**
+     * Writes a single character as UTF-8.
+     */
+    private void writeChar(char c) throws IOException {
+        if (c < 0x80) {
+            writeByte(c);
+        } else {
+            writeText(String.valueOf(c));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buf.length) flush();
+        buf[count++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buf.length - count) {
+            flush();
+            if (bytes.length > buf.length) {
+                out.write(bytes);
+                written += bytes.length;
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * Writes out whatever is in the buffer.
+     */
+    private void flush() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            written += count;
+            count = 0;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Segment Layout
+    // -------------------------------------------------------------------------
+
+    /**
+     * Where each project's segment is in a saved data file. Kept by the ProjectStore.
+     */
+    static final class Layout {
+        private final Path file;
+        private final Map<Integer, Segment> segments = new HashMap<>();
+        private long fileSize;
+        private FileTime modified;
+
+        // The store's change count when the file was written
+        private final long storeChanges;
+
+        private Layout(Path file, long storeChanges) {
+            this.file = file;
+            this.storeChanges = storeChanges;
+        }
+
+        /**
+         * Checks if the file holds this project object at its current version.
+         */
+        private boolean isSaved(Project p) {
+            Segment segment = segments.get(p.getProjectId());
+            return segment != null && segment.project == p && segment.version == p.getVersion();
+        }
+
+        /**
+         * Checks that this is the layout of the given file and nothing else has changed the file.
+         */
+        private boolean isCurrent(Path target) throws IOException {
+            return file.equals(target) && Files.isRegularFile(target)
+                    && Files.size(target) == fileSize
+                    && Files.getLastModifiedTime(target).equals(modified);
+        }
+    }
+
+    /**
+     * One project's segment, and which project object and version were written to it.
+     */
+    private static final class Segment {
+        private final long offset;
+        private final long length;
+        private final Project project;
+        private final long version;
+
+        private Segment(Project project, long offset, long length) {
+            this.project = project;
+            this.version = project.getVersion();
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,610 @@
+/**
+ * ProjectHttpServer class exposes the menu operations as a local JSON API,
+ * so the console is just one client of the projects among many.
+ *
+ * Endpoints:
+ *   GET    /projects                            list projects
+ *   POST   /projects                            {"id"?, "name", "type"} create a project
+ *   GET    /projects/{id}                       project with its tasks
+ *   DELETE /projects/{id}                       remove a project
+ *   POST   /projects/{id}/tasks                 {"id"?, "description", "type", "duration", "completed"?} add a task
+ *   DELETE /projects/{id}/tasks/{taskId}        remove a task
+ *   POST   /projects/{id}/tasks/{taskId}/complete  mark a task completed
+ *   GET    /tasks?type=A                        tasks of a type across all projects
+ *   GET    /query?type=A&sort=-duration&limit=10  task query across all projects (terms as in TaskQuery)
+ *   GET    /search?q=text&limit=20              projects and tasks whose name or description holds the text
+ *   GET    /summary                             task counts, average, median, p90 and p99 durations
+ *   POST   /load                                {"file"} load a data file or snapshot
+ *   POST   /save                                {"file", "format"?: "text" | "snapshot"} save all projects
+ *
+ * All changes go through ProjectService, so requests are handled in parallel.
+ * Each request runs on its own virtual thread when the JDK has them (21+),
+ * otherwise on a cached thread pool. The server only listens on the loopback address.
+ *
+ * Since any web page the user visits can send requests to the loopback address,
+ * requests whose Host header is not a loopback name are refused (so a page on a
+ * rebound DNS name cannot read the answers), requests carrying a browser Origin
+ * header are refused, request bodies must be
+ * sent as application/json (which a page cannot send without the server's leave),
+ * and /load and /save only accept files inside the data directory.
+ */
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+public class ProjectHttpServer {
+
+    // Task types in report order
+    private static final char[] TASK_TYPES = {'A', 'S', 'L'};
+
+    // Largest request body accepted
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    // Most projects and tasks returned by /search when no limit is given
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+
+    // Host header values accepted, the loopback names with an optional port
+    private static final Pattern LOCAL_HOST =
+            Pattern.compile("(?i)(localhost|127\\.0\\.0\\.1|\\[::1\\])(:\\d{1,5})?");
+
+    private final ProjectService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Directory /load and /save may read and write files in
+    private final Path dataDirectory;
+
+    /**
+     * Creates a server for the given projects, listening on localhost, that loads
+     * and saves files in the working directory.
+     *
+     * @param service The projects to serve.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be opened.
+     */
+    public ProjectHttpServer(ProjectService service, int port) throws IOException {
+        this(service, port, Paths.get(""));
+    }
+
+    /**
+     * Creates a server for the given projects, listening on localhost.
+     *
+     * @param service The projects to serve.
+     * @param port The port to listen on, or 0 for any free port.
+     * @param dataDirectory The directory /load and /save may use files in.
+     * @throws IOException if the port cannot be opened or the directory does not exist.
+     */
+    public ProjectHttpServer(ProjectService service, int port, Path dataDirectory) throws IOException {
+        this.service = service;
+        this.dataDirectory = dataDirectory.toRealPath();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to a second for running ones to finish.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     * @return port as int
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per request if the JDK
+     * supports it (looked up by reflection so this still builds on JDK 17),
+     * otherwise a cached pool of daemon threads.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "http-request");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Routing
+    // -------------------------------------------------------------------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            if (host == null || !LOCAL_HOST.matcher(host.trim()).matches()) {
+                // A page served from a DNS name rebound to the loopback address sends its own name
+                throw new RejectedException(403, "Requests must be addressed to localhost");
+            }
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                // Sent by browsers, so the request may come from any web page
+                throw new RejectedException(403, "Requests from web pages are not accepted");
+            }
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+
+            if (path[0].equals("projects")) {
+                routeProjects(exchange, method, path);
+            } else if (path.length == 1 && path[0].equals("tasks") && method.equals("GET")) {
+                send(exchange, 200, tasksByType(queryParam(exchange, "type")));
+            } else if (path.length == 1 && path[0].equals("query") && method.equals("GET")) {
+                send(exchange, 200, query(exchange.getRequestURI().getRawQuery()));
+            } else if (path.length == 1 && path[0].equals("search") && method.equals("GET")) {
+                send(exchange, 200, search(queryParam(exchange, "q"), queryParam(exchange, "limit")));
+            } else if (path.length == 1 && path[0].equals("summary") && method.equals("GET")) {
+                send(exchange, 200, summary());
+            } else if (path.length == 1 && path[0].equals("load") && method.equals("POST")) {
+                load(readBody(exchange));
+                send(exchange, 200, "{\"loaded\":true}");
+            } else if (path.length == 1 && path[0].equals("save") && method.equals("POST")) {
+                save(readBody(exchange));
+                send(exchange, 200, "{\"saved\":true}");
+            } else {
+                sendError(exchange, 404, "Not found: " + method + " " + exchange.getRequestURI().getPath());
+            }
+        } catch (NotFoundException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (RejectedException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            sendError(exchange, 404, "File not found: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            sendError(exchange, 500, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void routeProjects(HttpExchange exchange, String method, String[] path) throws IOException {
+        if (path.length == 1) {
+            if (method.equals("GET")) {
+                send(exchange, 200, projectList());
+            } else if (method.equals("POST")) {
+                send(exchange, 201, "{\"id\":" + createProject(readBody(exchange)) + "}");
+            } else {
+                sendError(exchange, 405, "Method not allowed");
+            }
+            return;
+        }
+
+        int projectId = pathId(path[1], "project ID");
+        requireProject(projectId);
+
+        if (path.length == 2) {
+            if (method.equals("GET")) {
+                send(exchange, 200, projectDetails(projectId));
+            } else if (method.equals("DELETE")) {
+                if (!service.removeProject(projectId)) {
+                    throw new NotFoundException("No project with ID " + projectId);
+                }
+                send(exchange, 200, "{\"removed\":true}");
+            } else {
+                sendError(exchange, 405, "Method not allowed");
+            }
+        } else if (path.length == 3 && path[2].equals("tasks") && method.equals("POST")) {
+            send(exchange, 201, "{\"id\":" + addTask(projectId, readBody(exchange)) + "}");
+        } else if (path.length == 4 && path[2].equals("tasks") && method.equals("DELETE")) {
+            int taskId = pathId(path[3], "task ID");
+            if (!service.removeTask(projectId, taskId)) {
+                throw new NotFoundException("No task with ID " + taskId + " in project " + projectId);
+            }
+            send(exchange, 200, "{\"removed\":true}");
+        } else if (path.length == 5 && path[2].equals("tasks") && path[4].equals("complete") && method.equals("POST")) {
+            int taskId = pathId(path[3], "task ID");
+            if (service.getTask(projectId, taskId) == null) {
+                throw new NotFoundException("No task with ID " + taskId + " in project " + projectId);
+            }
+            boolean changed = service.completeTask(projectId, taskId);
+            send(exchange, 200, "{\"completed\":true,\"changed\":" + changed + "}");
+        } else {
+            sendError(exchange, 404, "Not found: " + method + " " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Operations
+    // -------------------------------------------------------------------------
+
+    private int createProject(Map<String, Object> body) {
+        String name = stringField(body, "name", true);
+        String type = stringField(body, "type", true);
+        if (body.get("id") == null) {
+            return service.createProject(name, type);
+        }
+        int id = intField(body, "id");
+        service.createProject(id, name, type);
+        return id;
+    }
+
+    private int addTask(int projectId, Map<String, Object> body) {
+        String description = stringField(body, "description", true);
+        String type = stringField(body, "type", true);
+        if (type.length() != 1) {
+            throw new IllegalArgumentException("Invalid task type: " + type);
+        }
+        int duration = intField(body, "duration");
+        boolean completed = Boolean.TRUE.equals(body.get("completed"));
+
+        if (body.get("id") == null) {
+            return service.addTask(projectId, description, type.charAt(0), duration, completed);
+        }
+        int taskId = intField(body, "id");
+        service.addTask(projectId, taskId, description, type.charAt(0), duration, completed);
+        return taskId;
+    }
+
+    private String projectList() {
+        return service.readAll(projects -> {
+            StringBuilder json = new StringBuilder("[");
+            for (int projectId : projects.getProjectIds()) {
+                ProjectStore.ProjectInfo p = projects.getProjectInfo(projectId);
+                if (json.length() > 1) json.append(',');
+                json.append("{\"id\":").append(p.getProjectId())
+                    .append(",\"name\":").append(Json.quote(p.getProjectName()))
+                    .append(",\"type\":").append(Json.quote(p.getProjectType()))
+                    .append(",\"taskCount\":").append(p.getTaskCount())
+                    .append(",\"completedCount\":").append(p.getCompletedTaskCount())
+                    .append('}');
+            }
+            return json.append(']').toString();
+        });
+    }
+
+    private String projectDetails(int projectId) {
+        return service.readProject(projectId, p -> {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"id\":").append(p.getProjectId())
+                .append(",\"name\":").append(Json.quote(p.getProjectName()))
+                .append(",\"type\":").append(Json.quote(p.getProjectType()))
+                .append(",\"taskLimit\":").append(p.getTaskLimit())
+                .append(",\"tasks\":[");
+            boolean first = true;
+            for (Task t : p.getTasks()) {
+                if (t == null) continue;
+                if (!first) json.append(',');
+                appendTask(json, t);
+                first = false;
+            }
+            return json.append("]}").toString();
+        });
+    }
+
+    private String tasksByType(String type) {
+        if (type == null || type.length() != 1 || "ASL".indexOf(type.charAt(0)) < 0) {
+            throw new IllegalArgumentException("Query parameter type must be A, S or L");
+        }
+        return service.readAllIndexed(projects -> {
+            StringBuilder json = new StringBuilder("[");
+            for (Task t : projects.getTasksByType(type.charAt(0))) {
+                if (json.length() > 1) json.append(',');
+                json.append("{\"projectId\":").append(t.getProject().getProjectId())
+                    .append(",\"projectName\":").append(Json.quote(t.getProject().getProjectName()))
+                    .append(",\"task\":");
+                appendTask(json, t);
+                json.append('}');
+            }
+            return json.append(']').toString();
+        });
+    }
+
+    private String query(String rawQuery) {
+        TaskQuery query = new TaskQuery();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                if (pair.isEmpty()) continue;
+                int eq = pair.indexOf('=');
+                String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                query.set(key, eq < 0 ? null : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        TaskQuery.Result result = service.query(query);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"plan\":").append(Json.quote(result.getPlan()))
+            .append(",\"matches\":").append(result.getMatchCount())
+            .append(",\"complete\":").append(result.isComplete());
+        if (!query.isCountOnly()) {
+            json.append(",\"tasks\":[");
+            boolean first = true;
+            for (TaskQuery.Match match : result.getMatches()) {
+                if (!first) json.append(',');
+                json.append('{');
+                for (int i = 0; i < query.getFields().size(); i++) {
+                    TaskQuery.Field field = query.getFields().get(i);
+                    if (i > 0) json.append(',');
+                    json.append(Json.quote(field.getName())).append(':');
+                    Object value = field.valueOf(match);
+                    if (value instanceof String || value instanceof Character) {
+                        json.append(Json.quote(value.toString()));
+                    } else {
+                        json.append(value);
+                    }
+                }
+                json.append('}');
+                first = false;
+            }
+            json.append(']');
+        }
+        return json.append('}').toString();
+    }
+
+    private String search(String text, String limitParam) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Missing search text q");
+        }
+        int limit = (limitParam == null) ? DEFAULT_SEARCH_LIMIT : pathId(limitParam, "limit");
+        if (limit < 1) {
+            throw new IllegalArgumentException("Invalid limit: " + limitParam);
+        }
+
+        StringBuilder json = new StringBuilder("{\"projects\":[");
+        boolean first = true;
+        for (Project p : service.findProjects(text, limit)) {
+            if (!first) json.append(',');
+            json.append("{\"id\":").append(p.getProjectId())
+                .append(",\"name\":").append(Json.quote(p.getProjectName()))
+                .append(",\"type\":").append(Json.quote(p.getProjectType()))
+                .append('}');
+            first = false;
+        }
+        json.append("],\"tasks\":[");
+        first = true;
+        for (TaskQuery.Match match : service.findTasks(text, 0, limit)) {
+            if (!first) json.append(',');
+            json.append("{\"projectId\":").append(match.getProjectId())
+                .append(",\"projectName\":").append(Json.quote(match.getProjectName()))
+                .append(",\"task\":");
+            appendTask(json, match.getTask());
+            json.append('}');
+            first = false;
+        }
+        return json.append("]}").toString();
+    }
+
+    private String summary() {
+        return service.readAllIndexed(projects -> {
+            CompletionIndex completion = projects.getCompletionIndex();
+            StringBuilder json = new StringBuilder();
+            json.append("{\"projects\":").append(projects.size())
+                .append(",\"tasks\":").append(completion.getTaskCount())
+                .append(",\"completed\":").append(completion.getCompletedCount())
+                .append(",\"averages\":");
+            appendAverages(json, projects.getDurationStats());
+            json.append(",\"byProject\":[");
+            boolean first = true;
+            // Projects only keep duration totals, so their percentiles are counted here
+            DurationStats projectStats = new DurationStats();
+            for (Project p : projects) {
+                if (!first) json.append(',');
+                projectStats.clear();
+                for (Task t : p.getTasks()) {
+                    if (t != null) projectStats.add(t.getTaskType(), t.getTaskDuration());
+                }
+                json.append("{\"id\":").append(p.getProjectId()).append(",\"averages\":");
+                appendAverages(json, projectStats);
+                json.append('}');
+                first = false;
+            }
+            return json.append("]}").toString();
+        });
+    }
+
+    private void load(Map<String, Object> body) throws IOException {
+        Path file = dataFile(stringField(body, "file", true));
+        if (ProjectSnapshot.isSnapshot(file)) {
+            service.replaceAll(new ProjectSnapshot().load(file));
+        } else {
+            service.replaceAll(new ProjectDataLoader().load(file.toFile()));
+        }
+    }
+
+    private void save(Map<String, Object> body) throws IOException {
+        Path file = dataFile(stringField(body, "file", true));
+        String format = stringField(body, "format", false);
+        if (format == null || format.equals("text")) {
+            if (service.isJournaled(file)) {
+                // Every change was saved to the journal when it was made
+                return;
+            }
+            service.writeAll(projects -> new ProjectDataWriter().saveChanges(projects, file));
+        } else if (format.equals("snapshot")) {
+            service.writeAll(projects -> new ProjectSnapshot().save(projects, file));
+        } else {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // JSON Helpers
+    // -------------------------------------------------------------------------
+
+    private static void appendTask(StringBuilder json, Task t) {
+        json.append("{\"id\":").append(t.getTaskId())
+            .append(",\"description\":").append(Json.quote(t.getDescription()))
+            .append(",\"type\":").append(Json.quote(String.valueOf(t.getTaskType())))
+            .append(",\"duration\":").append(t.getTaskDuration())
+            .append(",\"completed\":").append(t.isCompleted())
+            .append('}');
+    }
+
+    private static void appendAverages(StringBuilder json, DurationStats stats) {
+        json.append('{');
+        for (int i = 0; i < TASK_TYPES.length; i++) {
+            if (i > 0) json.append(',');
+            json.append('"').append(TASK_TYPES[i]).append("\":{\"count\":").append(stats.getCount(TASK_TYPES[i]))
+                .append(",\"average\":").append(stats.formatAverage(TASK_TYPES[i]))
+                .append(",\"median\":").append(stats.getMedian(TASK_TYPES[i]))
+                .append(",\"p90\":").append(stats.getPercentile(TASK_TYPES[i], 90))
+                .append(",\"p99\":").append(stats.getPercentile(TASK_TYPES[i], 99)).append('}');
+        }
+        json.append('}');
+    }
+
+    private static String stringField(Map<String, Object> body, String name, boolean required) {
+        Object value = body.get(name);
+        if (value == null) {
+            if (required) throw new IllegalArgumentException("Missing field: " + name);
+            return null;
+        }
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Field " + name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Resolves a file name from a request against the data directory, refusing
+     * anything outside it, including through a symbolic link.
+     */
+    private Path dataFile(String name) throws IOException {
+        Path file;
+        try {
+            file = dataDirectory.resolve(name).normalize();
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Invalid file: " + name);
+        }
+        Path parent = file.getParent();
+        Path resolved = Files.exists(file) ? file.toRealPath()
+                : (parent != null && Files.isDirectory(parent)) ? parent.toRealPath().resolve(file.getFileName()) : file;
+        // A link to a file that does not exist yet could be followed out of the directory
+        if (parent == null || !resolved.startsWith(dataDirectory) || resolved.equals(dataDirectory)
+                || (Files.isSymbolicLink(file) && !Files.exists(file))) {
+            throw new RejectedException(403, "File must be inside the data directory: " + name);
+        }
+        return file;
+    }
+
+    private static int intField(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (!(value instanceof Long) || (Long) value < Integer.MIN_VALUE || (Long) value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Field " + name + " must be a whole number");
+        }
+        return ((Long) value).intValue();
+    }
+
+    // -------------------------------------------------------------------------
+    // Exchange Helpers
+    // -------------------------------------------------------------------------
+
+    private void requireProject(int projectId) {
+        if (!service.containsProject(projectId)) {
+            throw new NotFoundException("No project with ID " + projectId);
+        }
+    }
+
+    private static int pathId(String segment, String name) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + segment);
+        }
+    }
+
+    private static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            if (key.equals(name)) {
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String mediaType = (contentType == null) ? "" : contentType.split(";", 2)[0].trim();
+        if (!mediaType.equalsIgnoreCase("application/json")) {
+            throw new RejectedException(415, "Request body must be sent as application/json");
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "{\"error\":" + Json.quote(message) + "}");
+    }
+
+    /**
+     * Thrown when the project or task in the request path does not exist.
+     */
+    private static class NotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when a request is refused before it is handled, with the status to answer with.
+     */
+    private static class RejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        RejectedException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,568 @@
+/**
+ * ProjectJournal class is an append-only log of changes made since a data file
+ * (e.g. ProjectData.txt) was last written in full. It lives next to the data file
+ * (ProjectData.txt.journal), so saving a change costs one small record instead of
+ * rewriting every project.
+ *
+ * Layout (big-endian):
+ * - Header: magic "PMSJ" (int), version (short), size (long) and CRC32 (int) of
+ *   the data file the changes apply to
+ * - Record: body length (int), CRC32 of the body (int), body
+ * - Body: operation (byte), projectId (int), then by operation:
+ *   CREATE_PROJECT  type (byte), name (string)
+ *   REMOVE_PROJECT  nothing
+ *   ADD_TASK        taskId (int), type (byte), flags (byte, bit 0 = completed),
+ *                   duration (short), description (string)
+ *   REMOVE_TASK     taskId (int)
+ *   COMPLETE_TASK   taskId (int)
+ *
+ * Strings are an int byte length followed by UTF-8 bytes.
+ *
+ * Records are written as changes happen, but only synced to disk by sync().
+ * Threads that call sync() while another thread's sync is running wait for it
+ * and share the next one, so many changes cost one disk sync (group commit).
+ *
+ * On startup the data file is loaded and the journal replayed on top of it.
+ * A torn record at the end (from a crash part way through a write) is dropped.
+ * Compacting writes the data file in full and starts an empty journal.
+ */
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class ProjectJournal {
+
+    // "PMSJ" in ASCII, marks a journal file
+    public static final int MAGIC = 0x504D534A;
+
+    // Format version, bumped when the layout changes
+    public static final short VERSION = 1;
+
+    // Header size: magic + version + data file size + data file CRC
+    static final int HEADER_SIZE = 4 + 2 + 8 + 4;
+
+    // Record prefix size: body length + body CRC
+    private static final int RECORD_PREFIX_SIZE = 4 + 4;
+
+    // Journal size at which needsCompaction() says to write the data file in full
+    public static final long COMPACT_THRESHOLD = 4L * 1024 * 1024;
+
+    // Operations
+    static final byte CREATE_PROJECT = 1;
+    static final byte REMOVE_PROJECT = 2;
+    static final byte ADD_TASK = 3;
+    static final byte REMOVE_TASK = 4;
+    static final byte COMPLETE_TASK = 5;
+
+    // Bit in the task flags byte that marks a completed task
+    private static final int COMPLETED_FLAG = 0x01;
+
+    // Project types by type byte, same as ProjectSnapshot
+    private static final String[] PROJECT_TYPES = {"Small", "Medium", "Large"};
+
+    private final Path dataFile;
+    private final Path journalFile;
+    private FileChannel channel;
+
+    // Buffer records are built in before being written, guarded by this
+    private ByteBuffer record = ByteBuffer.allocate(256);
+
+    // Records written since the journal was opened, and records in the current journal, guarded by this
+    private long writtenCount;
+    private long changeCount;
+
+    // Number of records known to be on disk, and whether a sync is running, guarded by syncLock
+    private final Object syncLock = new Object();
+    private long syncedCount;
+    private boolean syncing;
+
+    private ProjectJournal(Path dataFile) {
+        this.dataFile = dataFile.toAbsolutePath().normalize();
+        this.journalFile = this.dataFile.resolveSibling(this.dataFile.getFileName() + ".journal");
+    }
+
+    // -------------------------------------------------------------------------
+    // Opening and Recovery
+    // -------------------------------------------------------------------------
+
+    /**
+     * Opens the journal for a data file, creating an empty one if there is none yet.
+     * Call recover() next to read the projects.
+     *
+     * @param dataFile The data file, which does not have to exist yet.
+     * @return The open journal.
+     * @throws IOException if the journal is not valid or cannot be opened.
+     */
+    public static ProjectJournal open(Path dataFile) throws IOException {
+        ProjectJournal journal = new ProjectJournal(dataFile);
+        if (!Files.exists(journal.journalFile) || Files.size(journal.journalFile) == 0) {
+            journal.startNewJournal();
+        } else {
+            journal.channel = FileChannel.open(journal.journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return journal;
+    }
+
+    /**
+     * Loads the data file and replays the journal on top of it.
+     *
+     * If the data file is not the one the journal was started from (e.g. a compaction
+     * replaced the data file but stopped before starting the new journal), the journal
+     * is out of date and is discarded. Changes that no longer apply are skipped with a warning.
+     *
+     * @return A ProjectStore holding the recovered projects.
+     * @throws IOException if the data file or journal cannot be read.
+     */
+    public ProjectStore recover() throws IOException {
+        ProjectStore projects = Files.exists(dataFile)
+                ? new ProjectDataLoader().load(dataFile.toFile())
+                : new ProjectStore();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a journal file: " + journalFile);
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version " + version + ": " + journalFile);
+        }
+        long baseSize = header.getLong();
+        int baseCrc = header.getInt();
+
+        if (baseSize != dataFileSize() || baseCrc != dataFileCrc()) {
+            System.out.println("[WARNING] Journal " + journalFile.getFileName() + " does not match "
+                    + dataFile.getFileName() + " and was discarded.");
+            startNewJournal();
+            return projects;
+        }
+
+        replay(projects);
+        return projects;
+    }
+
+    /**
+     * Applies every complete record after the header, then drops anything after the
+     * last complete record and leaves the channel at the end for new records.
+     */
+    private void replay(ProjectStore projects) throws IOException {
+        long size = channel.size();
+        long pos = HEADER_SIZE;
+        ByteBuffer prefix = ByteBuffer.allocate(RECORD_PREFIX_SIZE);
+        CRC32 crc = new CRC32();
+
+        while (pos + RECORD_PREFIX_SIZE <= size) {
+            prefix.clear();
+            readFully(prefix, pos);
+            prefix.flip();
+            int length = prefix.getInt();
+            int expectedCrc = prefix.getInt();
+            if (length < 5 || length > size - pos - RECORD_PREFIX_SIZE) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(body, pos + RECORD_PREFIX_SIZE);
+            body.flip();
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                break;
+            }
+
+            apply(projects, body);
+            pos += RECORD_PREFIX_SIZE + length;
+            changeCount++;
+        }
+
+        if (pos < size) {
+            System.out.println("[WARNING] Journal " + journalFile.getFileName() + ": dropped "
+                    + (size - pos) + " bytes of an incomplete change at the end.");
+            channel.truncate(pos);
+            channel.force(false);
+        }
+        channel.position(pos);
+    }
+
+    /**
+     * Applies one record to the projects, reporting changes that no longer apply.
+     */
+    private void apply(ProjectStore projects, ByteBuffer body) {
+        byte operation = body.get();
+        int projectId = body.getInt();
+        Project p = projects.get(projectId);
+        String problem = null;
+
+        switch (operation) {
+            case CREATE_PROJECT:
+                Project created = new Project();
+                created.setProjectId(projectId);
+                created.setProjectType(projectType(body.get()));
+                created.setProjectName(getString(body));
+                if (!projects.add(created)) problem = "project already exists";
+                break;
+            case REMOVE_PROJECT:
+                if (!projects.remove(projectId)) problem = "no such project";
+                break;
+            case ADD_TASK:
+                int taskId = body.getInt();
+                char type = (char) body.get();
+                boolean completed = (body.get() & COMPLETED_FLAG) != 0;
+                short duration = body.getShort();
+                Task task = new Task(taskId, getString(body), type, duration, completed);
+                if (p == null) problem = "no such project";
+                else if (p.containsTask(taskId)) problem = "task " + taskId + " already exists";
+                else if (!p.addTask(task)) problem = "project is full";
+                break;
+            case REMOVE_TASK:
+                taskId = body.getInt();
+                if (p == null) problem = "no such project";
+                else if (p.removeTask(taskId) == null) problem = "no task " + taskId;
+                break;
+            case COMPLETE_TASK:
+                taskId = body.getInt();
+                Task t = (p == null) ? null : p.getTask(taskId);
+                if (t == null) problem = "no task " + taskId;
+                else t.setCompleted(true);
+                break;
+            default:
+                problem = "unknown operation " + operation;
+        }
+
+        if (problem != null) {
+            System.out.println("[WARNING] Journal: skipped change " + (changeCount + 1)
+                    + " to project " + projectId + ": " + problem + ".");
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Recording Changes
+    // -------------------------------------------------------------------------
+
+    /**
+     * Records a new project.
+     * @param p Project
+     * @throws IOException if the record cannot be written.
+     */
+    public synchronized void createProject(Project p) throws IOException {
+        byte[] name = p.getProjectName().getBytes(StandardCharsets.UTF_8);
+        begin(CREATE_PROJECT, p.getProjectId(), 1 + 4 + name.length);
+        record.put(projectTypeByte(p.getProjectType()));
+        putString(name);
+        end();
+    }
+
+    /**
+     * Records a removed project.
+     * @param projectId int
+     * @throws IOException if the record cannot be written.
+     */
+    public synchronized void removeProject(int projectId) throws IOException {
+        begin(REMOVE_PROJECT, projectId, 0);
+        end();
+    }
+
+    /**
+     * Records a task added to a project.
+     * @param projectId int
+     * @param t Task
+     * @throws IOException if the record cannot be written.
+     */
+    public synchronized void addTask(int projectId, Task t) throws IOException {
+        byte[] description = t.getDescription().getBytes(StandardCharsets.UTF_8);
+        begin(ADD_TASK, projectId, 4 + 1 + 1 + 2 + 4 + description.length);
+        record.putInt(t.getTaskId());
+        record.put((byte) t.getTaskType());
+        record.put((byte) (t.isCompleted() ? COMPLETED_FLAG : 0));
+        record.putShort((short) t.getTaskDuration());
+        putString(description);
+        end();
+    }
+
+    /**
+     * Records a task removed from a project.
+     * @param projectId int
+     * @param taskId int
+     * @throws IOException if the record cannot be written.
+     */
+    public synchronized void removeTask(int projectId, int taskId) throws IOException {
+        begin(REMOVE_TASK, projectId, 4);
+        record.putInt(taskId);
+        end();
+    }
+
+    /**
+     * Records a task marked as completed.
+     * @param projectId int
+     * @param taskId int
+     * @throws IOException if the record cannot be written.
+     */
+    public synchronized void completeTask(int projectId, int taskId) throws IOException {
+        begin(COMPLETE_TASK, projectId, 4);
+        record.putInt(taskId);
+        end();
+    }
+
+    /**
+     * Starts a record, leaving room for the prefix.
+     */
+    private void begin(byte operation, int projectId, int fieldBytes) {
+        int size = RECORD_PREFIX_SIZE + 1 + 4 + fieldBytes;
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2));
+        }
+        record.clear();
+        record.position(RECORD_PREFIX_SIZE);
+        record.put(operation);
+        record.putInt(projectId);
+    }
+
+    /**
+     * Fills in the prefix and appends the record to the journal.
+     */
+    private void end() throws IOException {
+        int length = record.position() - RECORD_PREFIX_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_PREFIX_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        writtenCount++;
+        changeCount++;
+    }
+
+    // -------------------------------------------------------------------------
+    // Syncing and Compaction
+    // -------------------------------------------------------------------------
+
+    /**
+     * Makes sure every record written so far is on disk.
+     * If another thread is already syncing, waits for it and then syncs whatever
+     * it did not cover in one go with any other waiting threads.
+     *
+     * @throws IOException if the journal cannot be synced.
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            target = writtenCount;
+        }
+        if (!startSync(target)) {
+            return;
+        }
+
+        IOException failure = null;
+        long covered;
+        synchronized (this) {
+            // Everything written before force() starts is covered by it
+            covered = writtenCount;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            failure = e;
+        }
+        finishSync(failure == null ? covered : -1);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Checks if the journal has grown big enough to be worth compacting.
+     * @return true if compact() should be called, false otherwise
+     */
+    public synchronized boolean needsCompaction() throws IOException {
+        return channel.size() >= COMPACT_THRESHOLD;
+    }
+
+    /**
+     * Writes every project to the data file and starts an empty journal.
+     * Nothing may be recorded while this runs.
+     *
+     * @param projects The projects to save, with every journaled change applied.
+     * @throws IOException if the data file or the new journal cannot be written.
+     */
+    public void compact(ProjectStore projects) throws IOException {
+        startSync(Long.MAX_VALUE);
+        long covered = -1;
+        try {
+            synchronized (this) {
+                new ProjectDataWriter().save(projects, dataFile);
+                startNewJournal();
+                covered = writtenCount;
+            }
+        } finally {
+            finishSync(covered);
+        }
+    }
+
+    /**
+     * Closes the journal. Records not yet synced may be lost.
+     * @throws IOException if the journal cannot be closed.
+     */
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Gets the data file this journal belongs to.
+     * @return data file as Path
+     */
+    public Path getDataFile() {
+        return dataFile;
+    }
+
+    /**
+     * Gets the number of changes recorded since the data file was last written in full.
+     * @return count as long
+     */
+    public synchronized long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Waits until no sync is running, then claims the sync.
+     * @return true if this thread must sync, false if the records up to target are already on disk
+     */
+    private boolean startSync(long target) throws IOException {
+        synchronized (syncLock) {
+            while (syncing) {
+                if (syncedCount >= target) {
+                    return false;
+                }
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal to sync");
+                }
+            }
+            if (syncedCount >= target) {
+                return false;
+            }
+            syncing = true;
+            return true;
+        }
+    }
+
+    /**
+     * Releases the sync and wakes the threads waiting on it.
+     * @param covered Records now on disk, or -1 if the sync failed.
+     */
+    private void finishSync(long covered) {
+        synchronized (syncLock) {
+            if (covered >= 0) {
+                syncedCount = covered;
+            }
+            syncing = false;
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Replaces the journal with an empty one for the data file as it is now.
+     * The new journal is written to a temporary file, synced and moved over the old one,
+     * so a crash leaves either the old journal or the new one.
+     */
+    private void startNewJournal() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putLong(dataFileSize());
+        header.putInt(dataFileCrc());
+        header.flip();
+
+        Path temp = Files.createTempFile(journalFile.getParent(), journalFile.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                out.force(true);
+            }
+            ProjectDataWriter.replace(temp, journalFile);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (channel != null) {
+            channel.close();
+        }
+        channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(HEADER_SIZE);
+        changeCount = 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private long dataFileSize() throws IOException {
+        return Files.exists(dataFile) ? Files.size(dataFile) : 0;
+    }
+
+    /**
+     * Gets the CRC32 of the data file's contents, or 0 if there is no data file.
+     */
+    private int dataFileCrc() throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(dataFile)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                crc.update(buf, 0, n);
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return (int) crc.getValue();
+    }
+
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, pos);
+            if (n < 0) {
+                return;
+            }
+            pos += n;
+        }
+    }
+
+    private void putString(byte[] bytes) {
+        record.putInt(bytes.length);
+        record.put(bytes);
+    }
+
+    private static String getString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte projectTypeByte(String type) {
+        for (int i = 0; i < PROJECT_TYPES.length; i++) {
+            if (PROJECT_TYPES[i].equals(type)) {
+                return (byte) i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid project type: " + type);
+    }
+
+    private static String projectType(byte type) {
+        return (type >= 0 && type < PROJECT_TYPES.length) ? PROJECT_TYPES[type] : "";
+    }
+}
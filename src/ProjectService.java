@@ -0,0 +1,904 @@
+/**
+ * ProjectService class is a thread-safe front end to a ProjectStore, holding the
+ * rules for creating and removing projects and adding, removing and completing tasks.
+ *
+ * Locking:
+ * - A store-wide read/write lock. Creating, removing or replacing projects and
+ *   saving take it exclusively; everything else shares it.
+ * - Striped read/write locks, chosen by project ID, so changes to tasks in different
+ *   projects run in parallel while changes within one project are done one at a time.
+ *   Reads of one project share its stripe, and reads across every project share all
+ *   stripes, so readers run alongside each other and only wait for changes.
+ * Readers that need every project or the task indexes first read any projects still
+ * in a snapshot into memory under the exclusive lock, since reading them changes the
+ * store; the rest work from the snapshot's index.
+ *
+ * Per-project queries return copies of the tasks made under the project's lock,
+ * so callers never see a task or a project's task storage half way through a change.
+ * Projects and tasks in the store must only be changed through this service
+ * while other threads are using it.
+ *
+ * With a ProjectJournal attached, each change is recorded in the journal before it
+ * is made, and the journal is synced after the locks are released, so threads making
+ * changes at the same time share disk syncs. The journal is compacted into its data
+ * file once it grows past ProjectJournal.COMPACT_THRESHOLD.
+ *
+ * Every change that returns normally is timed in Metrics, journal sync included.
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class ProjectService {
+
+    // Number of project locks, projects share a lock when their IDs match modulo this
+    private static final int LOCK_STRIPES = 64;
+
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock[] projectLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+
+    private ProjectStore projects;
+
+    // Changes are recorded here before they are made, null if changes are not journaled
+    private volatile ProjectJournal journal;
+
+    /**
+     * Creates a service for the given projects.
+     * @param projects ProjectStore
+     */
+    public ProjectService(ProjectStore projects) {
+        this.projects = projects;
+        for (int i = 0; i < projectLocks.length; i++) {
+            projectLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Projects
+    // -------------------------------------------------------------------------
+
+    /**
+     * Creates a project with the given ID.
+     *
+     * @throws IllegalArgumentException if a value is invalid or the ID is already taken.
+     * @throws UncheckedIOException if the change cannot be written to the journal.
+     */
+    public void createProject(int projectId, String name, String type) {
+        long start = System.nanoTime();
+        checkProjectId(projectId);
+        Project p = newProject(projectId, name, type);
+
+        storeLock.writeLock().lock();
+        try {
+            if (projects.contains(projectId)) {
+                throw new IllegalArgumentException("Project ID " + projectId + " already exists");
+            }
+            record(j -> j.createProject(p));
+            projects.add(p);
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+        commit();
+        Metrics.record(Metrics.Operation.CREATE_PROJECT, start);
+    }
+
+    /**
+     * Creates a project with the lowest free ID.
+     *
+     * @return The new project's ID.
+     * @throws IllegalArgumentException if the name or type is invalid.
+     * @throws IllegalStateException if every project ID is in use.
+     * @throws UncheckedIOException if the change cannot be written to the journal.
+     */
+    public int createProject(String name, String type) {
+        long start = System.nanoTime();
+        Project p = newProject(0, name, type);
+
+        storeLock.writeLock().lock();
+        try {
+            p.setProjectId(projects.nextFreeId());
+            record(j -> j.createProject(p));
+            projects.add(p);
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+        commit();
+        Metrics.record(Metrics.Operation.CREATE_PROJECT, start);
+        return p.getProjectId();
+    }
+
+    /**
+     * Removes a project and all of its tasks.
+     * @param projectId int
+     * @return true if the project was removed, false if no project uses that ID
+     * @throws UncheckedIOException if the change cannot be written to the journal.
+     */
+    public boolean removeProject(int projectId) {
+        long start = System.nanoTime();
+        storeLock.writeLock().lock();
+        try {
+            if (!projects.contains(projectId)) {
+                Metrics.record(Metrics.Operation.REMOVE_PROJECT, start);
+                return false;
+            }
+            record(j -> j.removeProject(projectId));
+            projects.remove(projectId);
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+        commit();
+        Metrics.record(Metrics.Operation.REMOVE_PROJECT, start);
+        return true;
+    }
+
+    /**
+     * Replaces every project, e.g. after loading a file.
+     * With a journal attached, the new projects are written to its data file in full.
+     *
+     * @param replacement ProjectStore
+     * @throws IOException if the journal's data file cannot be written.
+     */
+    public void replaceAll(ProjectStore replacement) throws IOException {
+        storeLock.writeLock().lock();
+        try {
+            projects = replacement;
+            if (journal != null) {
+                journal.compact(projects);
+            }
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Journal
+    // -------------------------------------------------------------------------
+
+    /**
+     * Attaches a journal that every change from now on is recorded in.
+     * The store must already hold the projects the journal recovered.
+     * @param journal ProjectJournal, or null to stop journaling
+     */
+    public void setJournal(ProjectJournal journal) {
+        storeLock.writeLock().lock();
+        try {
+            this.journal = journal;
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the journal changes are recorded in.
+     * @return ProjectJournal, or null if changes are not journaled
+     */
+    public ProjectJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Checks if a file is the data file of the attached journal, so saving to it
+     * would only repeat changes the journal already holds.
+     * @param file Path
+     * @return true if changes to the projects are already being saved to the file, false otherwise
+     */
+    public boolean isJournaled(Path file) {
+        ProjectJournal j = journal;
+        return j != null && j.getDataFile().equals(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Writes every project to the journal's data file and starts an empty journal,
+     * so the next startup has nothing to replay. Does nothing without a journal.
+     *
+     * @throws IOException if the data file or journal cannot be written.
+     */
+    public void compact() throws IOException {
+        storeLock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.compact(projects);
+            }
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Tasks
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds a task to a project.
+     *
+     * @throws IllegalArgumentException if a value is invalid, the project does not
+     *         exist or the task ID is already used in the project.
+     * @throws IllegalStateException if the project is full.
+     * @throws UncheckedIOException if the change cannot be written to the journal.
+     */
+    public void addTask(int projectId, int taskId, String description, char type, int duration, boolean completed) {
+        long start = System.nanoTime();
+        Task task = newTask(taskId, description, type, duration, completed);
+
+        changeProject(projectId, p -> {
+            if (taskId < 1 || taskId > p.getMaxTaskId()) {
+                throw new IllegalArgumentException("Invalid task ID: " + taskId);
+            }
+            if (p.containsTask(taskId)) {
+                throw new IllegalArgumentException("Task ID " + taskId + " already exists in project " + projectId);
+            }
+            addToProject(p, task);
+            return null;
+        });
+        commit();
+        Metrics.record(Metrics.Operation.ADD_TASK, start);
+    }
+
+    /**
+     * Adds a task to a project with the lowest free task ID in that project.
+     *
+     * @return The new task's ID.
+     * @throws IllegalArgumentException if a value is invalid or the project does not exist.
+     * @throws IllegalStateException if the project is full or every task ID is in use.
+     * @throws UncheckedIOException if the change cannot be written to the journal.
+     */
+    public int addTask(int projectId, String description, char type, int duration, boolean completed) {
+        long start = System.nanoTime();
+        Task task = newTask(0, description, type, duration, completed);
+
+        int taskId = changeProject(projectId, p -> {
+            task.setTaskId(p.nextFreeTaskId());
+            addToProject(p, task);
+            return task.getTaskId();
+        });
+        commit();
+        Metrics.record(Metrics.Operation.ADD_TASK, start);
+        return taskId;
+    }
+
+    /**
+     * Removes a task from a project.
+     *
+     * @return true if the task was removed, false if the project has no task with that ID.
+     * @throws IllegalArgumentException if the project does not exist.
+     * @throws UncheckedIOException if the change cannot be written to the journal.
+     */
+    public boolean removeTask(int projectId, int taskId) {
+        long start = System.nanoTime();
+        boolean removed = changeProject(projectId, p -> {
+            if (!p.containsTask(taskId)) {
+                return false;
+            }
+            record(j -> j.removeTask(projectId, taskId));
+            p.removeTask(taskId);
+            return true;
+        });
+        if (removed) {
+            commit();
+        }
+        Metrics.record(Metrics.Operation.REMOVE_TASK, start);
+        return removed;
+    }
+
+    /**
+     * Marks a task as completed.
+     *
+     * @return true if the task was marked, false if it was already completed.
+     * @throws IllegalArgumentException if the project or task does not exist.
+     * @throws UncheckedIOException if the change cannot be written to the journal.
+     */
+    public boolean completeTask(int projectId, int taskId) {
+        long start = System.nanoTime();
+        boolean changed = changeProject(projectId, p -> {
+            Task t = p.getTask(taskId);
+            if (t == null) {
+                throw new IllegalArgumentException("No task with ID " + taskId + " in project " + projectId);
+            }
+            if (t.isCompleted()) {
+                return false;
+            }
+            record(j -> j.completeTask(projectId, taskId));
+            t.setCompleted(true);
+            return true;
+        });
+        if (changed) {
+            commit();
+        }
+        Metrics.record(Metrics.Operation.COMPLETE_TASK, start);
+        return changed;
+    }
+
+    // -------------------------------------------------------------------------
+    // Queries
+    // -------------------------------------------------------------------------
+
+    /**
+     * Checks if a project with the given ID exists.
+     * @param projectId int
+     * @return true if the project exists, false otherwise
+     */
+    public boolean containsProject(int projectId) {
+        storeLock.readLock().lock();
+        try {
+            return projects.contains(projectId);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets copies of a project's tasks.
+     *
+     * @return List of Task copies, in task storage order.
+     * @throws IllegalArgumentException if the project does not exist.
+     */
+    public List<Task> getTasks(int projectId) {
+        return withProject(projectId, false, p -> {
+            List<Task> copies = new ArrayList<>(p.getTaskCount());
+            for (Task t : p.getTasks()) {
+                if (t != null) copies.add(copy(t));
+            }
+            return copies;
+        });
+    }
+
+    /**
+     * Gets copies of a batch of a project's tasks, so a listing can show them a page
+     * at a time without holding the project's lock while it waits for the reader.
+     * Pass the batch's next slot back in to get the following batch. Tasks added to
+     * or removed from the project between batches may be missed or still shown.
+     *
+     * @param projectId int
+     * @param slots Which of the project's task slots to read, e.g. Project::nextTaskSlot.
+     * @param fromSlot The slot to start at, 0 for the first batch.
+     * @param limit Most tasks to copy.
+     * @return TaskBatch
+     * @throws IllegalArgumentException if the project does not exist.
+     */
+    public TaskBatch getTaskBatch(int projectId, TaskSlots slots, int fromSlot, int limit) {
+        return withProject(projectId, false, p -> {
+            List<Task> copies = new ArrayList<>(Math.min(limit, p.getTaskCount()));
+            int slot = slots.next(p, fromSlot);
+            while (slot >= 0 && copies.size() < limit) {
+                copies.add(copy(p.getTaskInSlot(slot)));
+                slot = slots.next(p, slot + 1);
+            }
+            return new TaskBatch(p.getProjectName(), p.getProjectType(), copies, slot);
+        });
+    }
+
+    /**
+     * Finds the next task slot to read in a project, see getTaskBatch.
+     */
+    public interface TaskSlots {
+        /**
+         * @return the first slot to read at or after fromSlot, or -1 if there are none
+         */
+        int next(Project project, int fromSlot);
+    }
+
+    /**
+     * Copies of a batch of a project's tasks, with the project's details.
+     */
+    public static final class TaskBatch {
+        private final String projectName;
+        private final String projectType;
+        private final List<Task> tasks;
+        private final int nextSlot;
+
+        TaskBatch(String projectName, String projectType, List<Task> tasks, int nextSlot) {
+            this.projectName = projectName;
+            this.projectType = projectType;
+            this.tasks = tasks;
+            this.nextSlot = nextSlot;
+        }
+
+        public String getProjectName() {
+            return projectName;
+        }
+
+        public String getProjectType() {
+            return projectType;
+        }
+
+        /**
+         * Gets the copied tasks, in slot order.
+         * @return List of Task
+         */
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        /**
+         * Gets the slot to start the next batch at.
+         * @return slot as int, or -1 if this was the last batch
+         */
+        public int getNextSlot() {
+            return nextSlot;
+        }
+    }
+
+    /**
+     * Gets copies of a batch of the tasks of a type across all projects, using the
+     * store's type index, so a listing can show them a page at a time without holding
+     * any lock while it waits for the reader. Pass the batch's next ordinal back in to
+     * get the following batch. Tasks added, removed or changed between batches may be
+     * missed or still shown.
+     *
+     * @param taskType char: A, S, or L
+     * @param fromOrdinal The task ordinal to start at, 0 for the first batch.
+     * @param limit Most tasks to copy.
+     * @return TypeBatch
+     */
+    public TypeBatch getTaskBatchByType(char taskType, int fromOrdinal, int limit) {
+        return readAllIndexed(store -> {
+            List<String> projectNames = new ArrayList<>();
+            List<Task> copies = new ArrayList<>();
+            int ordinal = store.nextTaskOrdinalOfType(taskType, fromOrdinal);
+            while (ordinal >= 0 && copies.size() < limit) {
+                Task t = store.getTaskByOrdinal(ordinal);
+                projectNames.add(t.getProject().getProjectName());
+                copies.add(copy(t));
+                ordinal = store.nextTaskOrdinalOfType(taskType, ordinal + 1);
+            }
+            return new TypeBatch(projectNames, copies, ordinal);
+        });
+    }
+
+    /**
+     * Copies of a batch of the tasks of a type, with the name of each task's project.
+     */
+    public static final class TypeBatch {
+        private final List<String> projectNames;
+        private final List<Task> tasks;
+        private final int nextOrdinal;
+
+        TypeBatch(List<String> projectNames, List<Task> tasks, int nextOrdinal) {
+            this.projectNames = projectNames;
+            this.tasks = tasks;
+            this.nextOrdinal = nextOrdinal;
+        }
+
+        /**
+         * Gets the name of the project a copied task belongs to.
+         * @param index Position of the task in getTasks()
+         * @return project name as String
+         */
+        public String getProjectName(int index) {
+            return projectNames.get(index);
+        }
+
+        /**
+         * Gets the copied tasks, in the type index's order.
+         * @return List of Task
+         */
+        public List<Task> getTasks() {
+            return tasks;
+        }
+
+        /**
+         * Gets the ordinal to start the next batch at.
+         * @return ordinal as int, or -1 if this was the last batch
+         */
+        public int getNextOrdinal() {
+            return nextOrdinal;
+        }
+    }
+
+    /**
+     * Gets a copy of one task.
+     *
+     * @return The Task copy, or null if the project has no task with that ID.
+     * @throws IllegalArgumentException if the project does not exist.
+     */
+    public Task getTask(int projectId, int taskId) {
+        return withProject(projectId, false, p -> {
+            Task t = p.getTask(taskId);
+            return (t == null) ? null : copy(t);
+        });
+    }
+
+    /**
+     * Gets copies of every task of a type, across all projects.
+     * @param taskType char: A, S, or L
+     * @return List of Task copies
+     */
+    public List<Task> getTasksByType(char taskType) {
+        return readAllIndexed(store -> {
+            List<Task> copies = new ArrayList<>();
+            for (Task t : store.getTasksByType(taskType)) {
+                copies.add(copy(t));
+            }
+            return copies;
+        });
+    }
+
+    /**
+     * Gets a copy of the duration totals across all projects.
+     * @return DurationStats
+     */
+    public DurationStats getDurationStats() {
+        return readAll(store -> {
+            DurationStats stats = new DurationStats();
+            stats.addAll(store.getDurationStats());
+            return stats;
+        });
+    }
+
+    /**
+     * Gets a copy of one project's duration totals (totals only, see Project.getDurationStats).
+     *
+     * @param projectId int
+     * @return DurationStats
+     * @throws IllegalArgumentException if the project does not exist.
+     */
+    public DurationStats getDurationStats(int projectId) {
+        return withProject(projectId, false, p -> {
+            DurationStats stats = new DurationStats(false);
+            stats.addAll(p.getDurationStats());
+            return stats;
+        });
+    }
+
+    /**
+     * Runs a task query across all projects.
+     *
+     * @param query TaskQuery
+     * @return Result holding copies of the matching tasks
+     */
+    public TaskQuery.Result query(TaskQuery query) {
+        long start = System.nanoTime();
+        TaskQuery.Result result = readAllIndexed(query::run);
+        Metrics.record(Metrics.Operation.QUERY, start);
+        return result;
+    }
+
+    /**
+     * Finds projects by name, ignoring case: names with a word starting with the
+     * text or, if there are none, names holding the text anywhere.
+     * The projects may be read for their ID, name and type only.
+     *
+     * @param text Text to look for.
+     * @param limit Most projects to return.
+     * @return List of Project
+     */
+    public List<Project> findProjects(String text, int limit) {
+        long start = System.nanoTime();
+        List<Project> found = readAllIndexed(store -> {
+            List<Project> matches = store.searchProjectNames(text, false, limit);
+            return matches.isEmpty() ? store.searchProjectNames(text, true, limit) : matches;
+        });
+        Metrics.record(Metrics.Operation.TEXT_SEARCH, start);
+        return found;
+    }
+
+    /**
+     * Finds tasks by description, ignoring case: descriptions with a word starting
+     * with the text or, if there are none, descriptions holding the text anywhere.
+     *
+     * @param text Text to look for.
+     * @param projectId Only tasks of this project, or 0 for every project.
+     * @param limit Most tasks to return.
+     * @return List of copied tasks with their project's details.
+     */
+    public List<TaskQuery.Match> findTasks(String text, int projectId, int limit) {
+        long start = System.nanoTime();
+        Predicate<Task> filter = (projectId == 0) ? null : t -> t.getProject().getProjectId() == projectId;
+        List<TaskQuery.Match> found = readAllIndexed(store -> {
+            List<Task> tasks = store.searchTaskDescriptions(text, false, limit, filter);
+            if (tasks.isEmpty()) {
+                tasks = store.searchTaskDescriptions(text, true, limit, filter);
+            }
+            List<TaskQuery.Match> matches = new ArrayList<>(tasks.size());
+            for (Task t : tasks) {
+                matches.add(TaskQuery.Match.of(t));
+            }
+            return matches;
+        });
+        Metrics.record(Metrics.Operation.TEXT_SEARCH, start);
+        return found;
+    }
+
+    /**
+     * Runs a reader on one project while sharing the project's lock, so it sees
+     * the project's tasks in a consistent state. The reader must not change the project.
+     *
+     * @param projectId int
+     * @param reader Function given the project.
+     * @return What the reader returns.
+     * @throws IllegalArgumentException if the project does not exist.
+     */
+    public <T> T readProject(int projectId, Function<Project, T> reader) {
+        return withProject(projectId, false, reader);
+    }
+
+    /**
+     * Runs a reader while no project is being changed, so it sees all projects in a
+     * consistent state. Used for listings and checks that only need the projects'
+     * IDs, names, types and counts, which come from a snapshot's index and records
+     * without reading its projects into memory. Readers run alongside each other,
+     * so the reader must not change the store, and must not look projects up,
+     * iterate over them or use the task indexes, since that would read projects
+     * from a snapshot (use readAllIndexed). It may use size, contains, isEmpty,
+     * hasAvailableId, nextFreeId, getProjectIds, getProjectInfo and getDurationStats.
+     *
+     * @param reader Function given the store.
+     * @return What the reader returns.
+     */
+    public <T> T readAll(Function<ProjectStore, T> reader) {
+        storeLock.readLock().lock();
+        try {
+            return readAllProjects(reader);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a reader like readAll, after reading every project still in a snapshot
+     * into memory, so the reader may also look projects up, iterate over them and
+     * use the type, completion and text indexes. Used for reports, queries and
+     * searches. It may return a Project for its ID, name or type, which the service
+     * never changes, but the project's tasks must be read through the service.
+     *
+     * @param reader Function given the store.
+     * @return What the reader returns.
+     */
+    public <T> T readAllIndexed(Function<ProjectStore, T> reader) {
+        readAllIntoMemory();
+
+        storeLock.readLock().lock();
+        try {
+            // The store may have been replaced by a snapshot since it was read in
+            while (!projects.isAllInMemory()) {
+                storeLock.readLock().unlock();
+                readAllIntoMemory();
+                storeLock.readLock().lock();
+            }
+            return readAllProjects(reader);
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a writer, such as saving to a file, with every project locked.
+     *
+     * @param writer StoreWriter given the store.
+     * @throws IOException if the writer fails.
+     */
+    public void writeAll(StoreWriter writer) throws IOException {
+        storeLock.writeLock().lock();
+        try {
+            writer.write(projects);
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the projects somewhere, e.g. ProjectDataWriter or ProjectSnapshot.
+     */
+    public interface StoreWriter {
+        void write(ProjectStore projects) throws IOException;
+    }
+
+    // -------------------------------------------------------------------------
+    // Locking Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Runs a change on a project while holding the shared store lock and the project's lock.
+     *
+     * @throws IllegalArgumentException if the project does not exist.
+     */
+    private <T> T changeProject(int projectId, Function<Project, T> action) {
+        return withProject(projectId, true, action);
+    }
+
+    /**
+     * Runs an action on a project while holding the shared store lock and the
+     * project's lock, exclusively for a change and shared for a read.
+     *
+     * @throws IllegalArgumentException if the project does not exist.
+     */
+    private <T> T withProject(int projectId, boolean change, Function<Project, T> action) {
+        readIntoMemory(projectId);
+
+        storeLock.readLock().lock();
+        try {
+            // The store may have been replaced by a snapshot since the project was read in
+            while (projects.contains(projectId) && !projects.isInMemory(projectId)) {
+                storeLock.readLock().unlock();
+                readIntoMemory(projectId);
+                storeLock.readLock().lock();
+            }
+            Project p = projects.get(projectId);
+            if (p == null) {
+                throw new IllegalArgumentException("No project with ID " + projectId);
+            }
+
+            ReentrantReadWriteLock stripe = projectLocks[Math.floorMod(projectId, LOCK_STRIPES)];
+            Lock lock = change ? stripe.writeLock() : stripe.readLock();
+            lock.lock();
+            try {
+                return action.apply(p);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            storeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a reader with the shared lock of every project, called with the shared store lock held.
+     */
+    private <T> T readAllProjects(Function<ProjectStore, T> reader) {
+        int locked = 0;
+        try {
+            for (; locked < projectLocks.length; locked++) {
+                projectLocks[locked].readLock().lock();
+            }
+            return reader.apply(projects);
+        } finally {
+            while (locked > 0) {
+                projectLocks[--locked].readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Reads every project still in a snapshot, under the exclusive lock.
+     */
+    private void readAllIntoMemory() {
+        storeLock.readLock().lock();
+        try {
+            if (projects.isAllInMemory()) {
+                return;
+            }
+        } finally {
+            storeLock.readLock().unlock();
+        }
+
+        storeLock.writeLock().lock();
+        try {
+            projects.readAllIntoMemory();
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a project from its snapshot, if it is still there, under the exclusive lock.
+     * Once read, looking a project up no longer changes the store, so it is safe under the shared lock.
+     */
+    private void readIntoMemory(int projectId) {
+        storeLock.readLock().lock();
+        try {
+            if (projects.isInMemory(projectId) || !projects.contains(projectId)) {
+                return;
+            }
+        } finally {
+            storeLock.readLock().unlock();
+        }
+
+        storeLock.writeLock().lock();
+        try {
+            projects.get(projectId);
+        } finally {
+            storeLock.writeLock().unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Journal Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Records a change in the journal, if there is one. Called under the lock that
+     * guards the change, just before it is made, so records are in the order changes are made.
+     */
+    private void record(JournalWrite write) {
+        ProjectJournal j = journal;
+        if (j == null) {
+            return;
+        }
+        try {
+            write.write(j);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write journal: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Syncs the journal after a change, with no lock held so other threads can add
+     * their changes to the same sync, and compacts it if it has grown too big.
+     */
+    private void commit() {
+        ProjectJournal j = journal;
+        if (j == null) {
+            return;
+        }
+        try {
+            j.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync journal: " + e.getMessage(), e);
+        }
+        try {
+            if (j.needsCompaction()) {
+                storeLock.writeLock().lock();
+                try {
+                    // Another thread may have compacted it while this one waited for the lock
+                    if (journal == j && j.needsCompaction()) {
+                        j.compact(projects);
+                    }
+                } finally {
+                    storeLock.writeLock().unlock();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Change saved, but compacting the journal failed: " + e.getMessage(), e);
+        }
+    }
+
+    private interface JournalWrite {
+        void write(ProjectJournal journal) throws IOException;
+    }
+
+    // -------------------------------------------------------------------------
+    // Validation Helpers
+    // -------------------------------------------------------------------------
+
+    private static Project newProject(int projectId, String name, String type) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Project name cannot be empty");
+        }
+        if (!"Small".equals(type) && !"Medium".equals(type) && !"Large".equals(type)) {
+            throw new IllegalArgumentException("Invalid project type: " + type);
+        }
+
+        Project p = new Project();
+        p.setProjectId(projectId);
+        p.setProjectName(name.trim());
+        p.setProjectType(type);
+        return p;
+    }
+
+    private static Task newTask(int taskId, String description, char type, int duration, boolean completed) {
+        if (description == null || description.trim().isEmpty()) {
+            throw new IllegalArgumentException("Task description cannot be empty");
+        }
+        if (type != 'A' && type != 'S' && type != 'L') {
+            throw new IllegalArgumentException("Invalid task type: " + type);
+        }
+        if (duration < 1 || duration > 100) {
+            throw new IllegalArgumentException("Invalid task duration: " + duration);
+        }
+        return new Task(taskId, description.trim(), type, duration, completed);
+    }
+
+    private void addToProject(Project p, Task task) {
+        if (!p.hasRoomForTask()) {
+            throw new IllegalStateException("Project ID " + p.getProjectId() + " is full");
+        }
+        record(j -> j.addTask(p.getProjectId(), task));
+        p.addTask(task);
+    }
+
+    private static void checkProjectId(int projectId) {
+        if (projectId < 1 || projectId > ProjectStore.MAX_PROJECT_ID) {
+            throw new IllegalArgumentException("Invalid project ID: " + projectId);
+        }
+    }
+
+    private static Task copy(Task t) {
+        return new Task(t.getTaskId(), t.getDescription(), t.getTaskType(), t.getTaskDuration(), t.isCompleted());
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * ProjectSnapshot class saves and loads projects in a compact binary format,
+ * which is much faster to load than re-parsing the text data format.
+ *
+ * Layout (big-endian):
+ * - Header: magic "PMSB" (int), version (short), project count (int), and since
+ *   version 2 the task limits of Small, Medium and Large projects (int each)
+ * - Project record: projectId (int), type (byte), task count (int), name (string)
+ * - Task record: taskId (int), type (byte), flags (byte, bit 0 = completed),
+ *   duration (short), description (string)
+ * - Index: projectId (int) and record offset (long) for every project
+ * - Trailer: index offset (long)
+ *
+ * Strings are an unsigned short byte length followed by UTF-8 bytes.
+ *
+ * The task limits are the largest any saved project of each type had, so the
+ * projects can be opened again with all their tasks whatever --task-limits is set to.
+ */
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ProjectSnapshot {
+
+    // "PMSB" in ASCII, marks a snapshot file
+    public static final int MAGIC = 0x504D5342;
+
+    // Format version, bumped when the layout changes
+    public static final short VERSION = 2;
+
+    // Header size: magic + version + project count + three task limits
+    static final int HEADER_SIZE = 4 + 2 + 4 + 3 * 4;
+
+    // Header size of version 1, which had no task limits
+    static final int HEADER_SIZE_V1 = 4 + 2 + 4;
+
+    // Trailer size: index offset
+    static final int TRAILER_SIZE = 8;
+
+    // Bit in the task flags byte that marks a completed task
+    static final int COMPLETED_FLAG = 0x01;
+
+    // Longest string a record can hold
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // Project types by type byte
+    private static final String[] PROJECT_TYPES = {"Small", "Medium", "Large"};
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private FileChannel channel;
+
+    // -------------------------------------------------------------------------
+    // Saving
+    // -------------------------------------------------------------------------
+
+    /**
+     * Saves every project to a snapshot file.
+     * The snapshot is written to a temporary file and then moved over the target.
+     *
+     * @param projects The projects to save.
+     * @param file The snapshot file to replace.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(ProjectStore projects, Path file) throws IOException {
+        long start = System.nanoTime();
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                write(projects, out);
+                out.force(true);
+            }
+            ProjectDataWriter.replace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Metrics.record(Metrics.Operation.SNAPSHOT_SAVE, start, 0, Files.size(target));
+    }
+
+    /**
+     * Writes the header, one record per project and the project index.
+     */
+    private void write(ProjectStore projects, FileChannel out) throws IOException {
+        channel = out;
+        buffer.clear();
+
+        int[] ids = new int[projects.size()];
+        long[] offsets = new long[projects.size()];
+
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putInt(projects.size());
+        for (int limit : taskLimits(projects)) {
+            buffer.putInt(limit);
+        }
+
+        int index = 0;
+        for (Project p : projects) {
+            ids[index] = p.getProjectId();
+            offsets[index] = position();
+            writeProject(p);
+            index++;
+        }
+
+        long indexOffset = position();
+        for (int i = 0; i < ids.length; i++) {
+            ensureRoom(12);
+            buffer.putInt(ids[i]);
+            buffer.putLong(offsets[i]);
+        }
+        ensureRoom(TRAILER_SIZE);
+        buffer.putLong(indexOffset);
+        flush();
+    }
+
+    /**
+     * Gets the task limit of each project type, in PROJECT_TYPES order, that lets
+     * every project keep all its tasks. This is the largest limit of any project of
+     * the type, and never less than the limit new projects get.
+     */
+    private static int[] taskLimits(ProjectStore projects) {
+        int[] limits = new int[PROJECT_TYPES.length];
+        for (int i = 0; i < limits.length; i++) {
+            limits[i] = Project.getDefaultTaskLimitPolicy().getTaskLimit(PROJECT_TYPES[i]);
+        }
+        for (Project p : projects) {
+            int type = projectTypeByte(p.getProjectType());
+            limits[type] = Math.max(limits[type], Math.max(p.getTaskLimit(), p.getTaskCount()));
+        }
+        return limits;
+    }
+
+    /**
+     * Writes one project record followed by its task records.
+     */
+    private void writeProject(Project p) throws IOException {
+        ensureRoom(9);
+        buffer.putInt(p.getProjectId());
+        buffer.put(projectTypeByte(p.getProjectType()));
+        buffer.putInt(p.getTaskCount());
+        writeString(p.getProjectName());
+
+        // Values come straight from the task table's columns
+        TaskTable table = p.getTaskTable();
+        for (Task t : p.getTasks()) {
+            if (t != null) {
+                int row = t.getSlot();
+                ensureRoom(8);
+                buffer.putInt(table.getTaskId(row));
+                buffer.put((byte) table.getTaskType(row));
+                buffer.put((byte) (table.isCompleted(row) ? COMPLETED_FLAG : 0));
+                buffer.putShort((short) table.getTaskDuration(row));
+                writeDescription(table, row);
+            }
+        }
+    }
+
+    /**
+     * Writes a task's description as a length-prefixed UTF-8 string, copied from
+     * the task table without creating a String.
+     */
+    private void writeDescription(TaskTable table, int row) throws IOException {
+        int length = table.getDescriptionLength(row);
+        if (length > MAX_STRING_BYTES) {
+            throw new IOException("Text too long for snapshot: " + table.getDescription(row).substring(0, 20) + "...");
+        }
+        ensureRoom(2 + length);
+        buffer.putShort((short) length);
+        table.putDescription(row, buffer);
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     */
+    private void writeString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("Text too long for snapshot: " + text.substring(0, 20) + "...");
+        }
+        ensureRoom(2 + bytes.length);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Gets the file offset the next byte will be written at.
+     */
+    private long position() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // -------------------------------------------------------------------------
+    // Loading
+    // -------------------------------------------------------------------------
+
+    /**
+     * Loads every project from a snapshot file.
+     * Use ProjectStore.openSnapshot to create projects only when they are used.
+     *
+     * @param file The snapshot file to read.
+     * @return A ProjectStore holding the loaded projects.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if the file is not a valid snapshot or cannot be read.
+     */
+    public ProjectStore load(Path file) throws IOException {
+        long start = System.nanoTime();
+        ProjectStore projects = MappedSnapshot.open(file).readAll();
+        Metrics.record(Metrics.Operation.SNAPSHOT_OPEN, start, 0, Files.size(file));
+        return projects;
+    }
+
+    /**
+     * Checks if a file starts with the snapshot magic number.
+     *
+     * @param file The file to check.
+     * @return true if the file looks like a snapshot, false otherwise.
+     * @throws IOException if the file cannot be read.
+     */
+    public static boolean isSnapshot(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Conversion
+    // -------------------------------------------------------------------------
+
+    /**
+     * Converts a data file between the text and snapshot formats.
+     * A snapshot source is written out as text, and a text source as a snapshot.
+     *
+     * @param source The file to convert.
+     * @param target The file to write.
+     * @return true if the target is a snapshot, false if it is text.
+     * @throws IOException if either file cannot be read or written.
+     */
+    public boolean convert(Path source, Path target) throws IOException {
+        if (!Files.isRegularFile(source)) {
+            throw new FileNotFoundException(source.toString());
+        }
+        long start = System.nanoTime();
+        boolean toSnapshot = !isSnapshot(source);
+        if (toSnapshot) {
+            save(new ProjectDataLoader().load(source.toFile()), target);
+        } else {
+            new ProjectDataWriter().save(load(source), target);
+        }
+        Metrics.record(Metrics.Operation.CONVERT, start);
+        return toSnapshot;
+    }
+
+    // -------------------------------------------------------------------------
+    // Type Bytes
+    // -------------------------------------------------------------------------
+
+    static byte projectTypeByte(String type) {
+        for (int i = 0; i < PROJECT_TYPES.length; i++) {
+            if (PROJECT_TYPES[i].equals(type)) return (byte) i;
+        }
+        throw new IllegalArgumentException("Unknown project type: " + type);
+    }
+
+    static String projectType(byte type) throws IOException {
+        if (type < 0 || type >= PROJECT_TYPES.length) {
+            throw new IOException("Corrupt snapshot: unknown project type " + type);
+        }
+        return PROJECT_TYPES[type];
+    }
+}
@@ -0,0 +1,543 @@
+/**
+ * ProjectStore class holds every project in the system, indexed by project ID.
+ * Replaces the old fixed Project[10] array so lookups, inserts and removals
+ * no longer have to scan every slot.
+ *
+ * A store opened from a snapshot starts with only the project IDs; each Project
+ * is read from the memory-mapped snapshot the first time it is used.
+ *
+ * Projects report their task changes back to the store, which keeps running
+ * duration totals, a task type index and completion bitmaps for all tasks,
+ * so summaries and filters do not have to scan every task, and text indexes
+ * over project names and task descriptions for finding them by text.
+ *
+ * A store on its own is meant for one thread at a time; ProjectService
+ * wraps it for use from many threads.
+ */
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+public class ProjectStore implements Iterable<Project> {
+
+    // Highest project ID allowed by the system (IDs run from 1 to 999)
+    public static final int MAX_PROJECT_ID = 999;
+
+    // Project ID -> Project, kept in insertion order so listings stay stable.
+    // A null value is a project that has not been read from the snapshot yet.
+    private final Map<Integer, Project> projectsById = new LinkedHashMap<>();
+
+    // Project IDs in use, for handing out free ones
+    private final IdAllocator projectIds = new IdAllocator(1, MAX_PROJECT_ID);
+
+    // Snapshot that unread projects come from, or null if every project is in memory
+    private MappedSnapshot snapshot;
+
+    // Running duration totals across every task in every project
+    private final DurationStats durationStats = new DurationStats();
+
+    // Completion state of every task in every project
+    private final CompletionIndex completionIndex = new CompletionIndex();
+
+    // Every task in every project, grouped by task type (by ordinal, from completionIndex)
+    private final TaskTypeIndex typeIndex = new TaskTypeIndex(completionIndex::getTask);
+
+    // Project names by project ID, and task descriptions by task ordinal (from completionIndex)
+    private final TextIndex<Project> projectNames = new TextIndex<>(Project::getProjectName);
+    private final TextIndex<Task> taskDescriptions = new TextIndex<>(Task::getDescription);
+
+    // Guards the totals and indexes above when tasks in different projects are
+    // changed from different threads at once (see ProjectService)
+    private final Object indexLock = new Object();
+
+    // Where each project sits in the text data file it was last saved to, or null if not saved yet
+    private ProjectDataWriter.Layout savedLayout;
+
+    // Goes up whenever a project is added, removed or changed, so a save can tell
+    // nothing changed without visiting every project
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * Opens a snapshot file without reading its projects.
+     * Projects are created from the mapped file when they are first looked up or iterated.
+     *
+     * @param file The snapshot file.
+     * @return A ProjectStore backed by the snapshot.
+     * @throws IOException if the file is not a valid snapshot or cannot be mapped.
+     */
+    public static ProjectStore openSnapshot(Path file) throws IOException {
+        long start = System.nanoTime();
+        ProjectStore store = new ProjectStore();
+        store.snapshot = MappedSnapshot.open(file);
+        for (int i = 0; i < store.snapshot.projectCount(); i++) {
+            store.projectsById.put(store.snapshot.projectIdAt(i), null);
+            store.projectIds.markUsed(store.snapshot.projectIdAt(i));
+        }
+        store.snapshot.addDurations(store.durationStats);
+        Metrics.record(Metrics.Operation.SNAPSHOT_OPEN, start, 0, Files.size(file));
+        return store;
+    }
+
+    /**
+     * Gets the project with the given ID.
+     * @param projectId int
+     * @return the matching Project, or null if no project uses that ID
+     */
+    public Project get(int projectId) {
+        Project project = projectsById.get(projectId);
+        if (project == null && snapshot != null && projectsById.containsKey(projectId)) {
+            project = readFromSnapshot(projectId);
+            projectsById.put(projectId, project);
+        }
+        return project;
+    }
+
+    /**
+     * Checks if a project with the given ID is already stored.
+     * @param projectId int
+     * @return true if the ID is taken, false otherwise
+     */
+    public boolean contains(int projectId) {
+        return projectsById.containsKey(projectId);
+    }
+
+    /**
+     * Checks if a project is stored and already read into memory, so looking it up
+     * will not read it from the snapshot.
+     * @param projectId int
+     * @return true if the project is in memory, false if it is not stored or still in the snapshot
+     */
+    public boolean isInMemory(int projectId) {
+        return projectsById.get(projectId) != null;
+    }
+
+    /**
+     * Checks if every stored project is in memory, so reading the store (looking
+     * projects up, iterating or searching) no longer changes it.
+     * @return true if no project is left in a snapshot, false otherwise
+     */
+    public boolean isAllInMemory() {
+        return snapshot == null;
+    }
+
+    /**
+     * Reads every project still in a snapshot into memory.
+     */
+    public void readAllIntoMemory() {
+        readAllFromSnapshot();
+    }
+
+    /**
+     * Gets the IDs of the stored projects, in the order they were added.
+     * Projects still in a snapshot are not read.
+     * @return int array of project IDs
+     */
+    public int[] getProjectIds() {
+        int[] ids = new int[projectsById.size()];
+        int i = 0;
+        for (int id : projectsById.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Gets a project's name, type and task counts. A project still in a snapshot is
+     * read from its mapped record without creating it, so the store does not change.
+     * @param projectId int
+     * @return ProjectInfo, or null if no project uses that ID
+     */
+    public ProjectInfo getProjectInfo(int projectId) {
+        Project project = projectsById.get(projectId);
+        if (project != null) {
+            return new ProjectInfo(projectId, project.getProjectName(), project.getProjectType(),
+                    project.getTaskCount(), project.getCompletedTaskCount());
+        }
+        if (snapshot != null && projectsById.containsKey(projectId)) {
+            return snapshot.readProjectInfo(projectId);
+        }
+        return null;
+    }
+
+    /**
+     * Adds a project to the store.
+     * @param project the Project to add
+     * @return true if the project was added, false if its ID is already taken
+     */
+    public boolean add(Project project) {
+        if (projectsById.containsKey(project.getProjectId())) {
+            return false;
+        }
+        projectsById.put(project.getProjectId(), project);
+        projectIds.markUsed(project.getProjectId());
+        project.setStore(this);
+        projectNames.add(project.getProjectId(), project);
+        indexTasks(project, true);
+        changeCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes the project with the given ID.
+     * @param projectId int
+     * @return true if a project was removed, false if no project uses that ID
+     */
+    public boolean remove(int projectId) {
+        Project project = get(projectId);
+        if (project == null) {
+            return false;
+        }
+        projectsById.remove(projectId);
+        projectIds.release(projectId);
+        project.setStore(null);
+        projectNames.remove(projectId, project.getProjectName());
+        for (Task t : project.getTasks()) {
+            if (t != null) {
+                durationStats.remove(t.getTaskType(), t.getTaskDuration());
+                typeIndex.remove(t);
+                taskDescriptions.remove(t.getOrdinal(), t.getDescription());
+                completionIndex.remove(t);
+            }
+        }
+        changeCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gets the number of stored projects.
+     * @return project count as int
+     */
+    public int size() {
+        return projectsById.size();
+    }
+
+    /**
+     * Checks if the store has no projects.
+     * @return true if there are no projects, false otherwise
+     */
+    public boolean isEmpty() {
+        return projectsById.isEmpty();
+    }
+
+    /**
+     * Checks if there is still an unused project ID available.
+     * @return true if another project can be created, false otherwise
+     */
+    public boolean hasAvailableId() {
+        return projectIds.hasFreeId();
+    }
+
+    /**
+     * Gets the lowest project ID (1-999) not used by any stored project.
+     *
+     * @return A free project ID.
+     * @throws IllegalStateException if every project ID is in use.
+     */
+    public int nextFreeId() {
+        return projectIds.nextFreeId();
+    }
+
+    /**
+     * Removes every project from the store.
+     */
+    public void clear() {
+        for (Project p : projectsById.values()) {
+            if (p != null) p.setStore(null);
+        }
+        projectsById.clear();
+        projectIds.clear();
+        snapshot = null;
+        durationStats.clear();
+        typeIndex.clear();
+        completionIndex.clear();
+        projectNames.clear();
+        taskDescriptions.clear();
+        changeCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the running duration totals across every stored task.
+     * @return DurationStats
+     */
+    public DurationStats getDurationStats() {
+        return durationStats;
+    }
+
+    /**
+     * Gets every stored task of a type, across all projects.
+     * Projects still in a snapshot are read first, since their tasks are not indexed yet.
+     * @param taskType char: A, S, or L
+     * @return read-only collection of Task (use Task.getProject() for the owning project)
+     */
+    public Collection<Task> getTasksByType(char taskType) {
+        readAllFromSnapshot();
+        return typeIndex.get(taskType);
+    }
+
+    /**
+     * Finds the first task of a type at or after an ordinal, so the tasks of a type
+     * can be read a batch at a time with getTaskByOrdinal.
+     * Projects still in a snapshot are read first, since their tasks are not indexed yet.
+     * @param taskType char: A, S, or L
+     * @param fromOrdinal int, 0 for the first task
+     * @return ordinal as int, or -1 if no later task has that type
+     */
+    public int nextTaskOrdinalOfType(char taskType, int fromOrdinal) {
+        readAllFromSnapshot();
+        return typeIndex.nextOrdinal(taskType, fromOrdinal);
+    }
+
+    /**
+     * Gets the task at an ordinal (see nextTaskOrdinalOfType).
+     * @param ordinal int
+     * @return Task, or null if no task has that ordinal
+     */
+    public Task getTaskByOrdinal(int ordinal) {
+        return completionIndex.getTask(ordinal);
+    }
+
+    /**
+     * Gets the completion bitmaps for every stored task, for listing completed or
+     * incomplete tasks and reading completion counts.
+     * Projects still in a snapshot are read first, since their tasks are not indexed yet.
+     * @return CompletionIndex
+     */
+    public CompletionIndex getCompletionIndex() {
+        readAllFromSnapshot();
+        return completionIndex;
+    }
+
+    /**
+     * Finds projects by name, ignoring case.
+     * Projects still in a snapshot are read first, since their names are not indexed yet.
+     *
+     * @param query Text to look for.
+     * @param substring true to match it anywhere in the name, false to match the start of a word.
+     * @param limit Most projects to return.
+     * @return List of Project.
+     */
+    public List<Project> searchProjectNames(String query, boolean substring, int limit) {
+        readAllFromSnapshot();
+        return substring ? projectNames.searchSubstring(query, limit, null)
+                : projectNames.searchPrefix(query, limit, null);
+    }
+
+    /**
+     * Finds tasks by description, ignoring case, across all projects.
+     * Projects still in a snapshot are read first, since their tasks are not indexed yet.
+     *
+     * @param query Text to look for.
+     * @param substring true to match it anywhere in the description, false to match the start of a word.
+     * @param limit Most tasks to return.
+     * @param filter Only tasks it accepts are returned, or null for all.
+     * @return List of Task (use Task.getProject() for the owning project).
+     */
+    public List<Task> searchTaskDescriptions(String query, boolean substring, int limit, Predicate<Task> filter) {
+        readAllFromSnapshot();
+        return substring ? taskDescriptions.searchSubstring(query, limit, filter)
+                : taskDescriptions.searchPrefix(query, limit, filter);
+    }
+
+    /**
+     * Gets the number of task index entries a description word-prefix search would check.
+     * Used by QueryPlanner to cost the search against other ways of finding tasks.
+     * @param query String
+     * @return count as long
+     */
+    long countDescriptionCandidates(String query) {
+        readAllFromSnapshot();
+        return taskDescriptions.countPrefixCandidates(query);
+    }
+
+    /**
+     * Gets the layout of the data file these projects were last saved to. Used by ProjectDataWriter.
+     * @return Layout, or null if the projects have not been saved to a text data file
+     */
+    ProjectDataWriter.Layout getSavedLayout() {
+        return savedLayout;
+    }
+
+    /**
+     * Gets the number of times a project was added, removed or changed. Used by
+     * ProjectDataWriter to skip a save when nothing changed since the last one.
+     * @return count as long
+     */
+    long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Sets the layout of the data file these projects were saved to. Called by ProjectDataWriter.
+     * @param layout Layout, or null
+     */
+    void setSavedLayout(ProjectDataWriter.Layout layout) {
+        this.savedLayout = layout;
+    }
+
+    /**
+     * Iterates over the stored projects in the order they were added.
+     * Projects still in the snapshot are read as the iterator reaches them.
+     * @return Iterator of Project
+     */
+    @Override
+    public Iterator<Project> iterator() {
+        Iterator<Map.Entry<Integer, Project>> entries = projectsById.entrySet().iterator();
+        return new Iterator<Project>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Project next() {
+                Map.Entry<Integer, Project> entry = entries.next();
+                if (entry.getValue() == null) {
+                    entry.setValue(readFromSnapshot(entry.getKey()));
+                }
+                return entry.getValue();
+            }
+        };
+    }
+
+    /**
+     * Reads a project from the snapshot and attaches it to this store.
+     * Its tasks were already counted in the totals when the snapshot was opened.
+     */
+    private Project readFromSnapshot(int projectId) {
+        Project project = snapshot.readProject(projectId);
+        project.setStore(this);
+        projectNames.add(projectId, project);
+        indexTasks(project, false);
+        return project;
+    }
+
+    /**
+     * Reads every project still in the snapshot, then lets the snapshot go.
+     */
+    private void readAllFromSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
+        for (Map.Entry<Integer, Project> entry : projectsById.entrySet()) {
+            if (entry.getValue() == null) {
+                entry.setValue(readFromSnapshot(entry.getKey()));
+            }
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Adds a project's tasks to the task indexes, and to the duration totals unless
+     * they already count them (projects read from the snapshot were counted when it was opened).
+     */
+    private void indexTasks(Project project, boolean addDurations) {
+        for (Task t : project.getTasks()) {
+            if (t != null) {
+                if (addDurations) {
+                    durationStats.add(t.getTaskType(), t.getTaskDuration());
+                }
+                completionIndex.add(t);
+                typeIndex.add(t);
+                taskDescriptions.add(t.getOrdinal(), t);
+            }
+        }
+    }
+
+    /**
+     * A project's name, type and task counts, without its tasks.
+     */
+    public static final class ProjectInfo {
+        private final int projectId;
+        private final String projectName;
+        private final String projectType;
+        private final int taskCount;
+        private final int completedTaskCount;
+
+        ProjectInfo(int projectId, String projectName, String projectType, int taskCount, int completedTaskCount) {
+            this.projectId = projectId;
+            this.projectName = projectName;
+            this.projectType = projectType;
+            this.taskCount = taskCount;
+            this.completedTaskCount = completedTaskCount;
+        }
+
+        public int getProjectId() {
+            return projectId;
+        }
+
+        public String getProjectName() {
+            return projectName;
+        }
+
+        public String getProjectType() {
+            return projectType;
+        }
+
+        public int getTaskCount() {
+            return taskCount;
+        }
+
+        public int getCompletedTaskCount() {
+            return completedTaskCount;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Task Change Notifications (called by Project)
+    // -------------------------------------------------------------------------
+
+    void taskAdded(Project project, Task task) {
+        synchronized (indexLock) {
+            durationStats.add(task.getTaskType(), task.getTaskDuration());
+            completionIndex.add(task);
+            typeIndex.add(task);
+            taskDescriptions.add(task.getOrdinal(), task);
+        }
+    }
+
+    void taskRemoved(Project project, Task task) {
+        synchronized (indexLock) {
+            durationStats.remove(task.getTaskType(), task.getTaskDuration());
+            typeIndex.remove(task);
+            taskDescriptions.remove(task.getOrdinal(), task.getDescription());
+            completionIndex.remove(task);
+        }
+    }
+
+    void taskChanged(Task task, char oldType, int oldDuration) {
+        synchronized (indexLock) {
+            durationStats.remove(oldType, oldDuration);
+            durationStats.add(task.getTaskType(), task.getTaskDuration());
+            typeIndex.typeChanged(task, oldType);
+        }
+    }
+
+    void taskCompletionChanged(Task task) {
+        synchronized (indexLock) {
+            completionIndex.completionChanged(task);
+        }
+    }
+
+    void taskDescriptionChanged(Task task, String oldDescription) {
+        synchronized (indexLock) {
+            taskDescriptions.textChanged(task.getOrdinal(), oldDescription);
+        }
+    }
+
+    void projectChanged(Project project) {
+        changeCount.incrementAndGet();
+    }
+
+    void projectRenamed(Project project, String oldName) {
+        synchronized (indexLock) {
+            projectNames.textChanged(project.getProjectId(), oldName);
+        }
+    }
+}
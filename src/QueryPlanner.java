@@ -0,0 +1,285 @@
+/**
+ * QueryPlanner class decides how a TaskQuery finds its candidate tasks.
+ *
+ * Each way the store can hand out tasks is costed by the number of tasks it
+ * would visit, using counts the store already keeps, and the cheapest one wins:
+ * - the type index, when the query names task types (counts from DurationStats)
+ * - the completion bitmaps, when the query asks for completed or incomplete tasks
+ * - the duration counts, when the query only gives task types and a duration range
+ *   (the counts give the number of matches, but the tasks are read through the type
+ *   index or a scan, so the plan costs as many tasks as those)
+ * - the description index, when the query gives a description prefix (the index
+ *   finds descriptions with any word starting with it, a superset of the matches)
+ * - a lookup of each project in a project ID range
+ * - a scan of every project, skipping projects that fail the project criteria
+ *
+ * A plan whose tasks are exactly the matches (e.g. type=A and nothing else), or
+ * that knows the match count from the duration counts, can answer a count without
+ * visiting any task. Of two plans visiting as many tasks, such a plan wins.
+ */
+import java.util.Set;
+import java.util.function.Predicate;
+
+public class QueryPlanner {
+
+    private static final char[] TASK_TYPES = {'A', 'S', 'L'};
+
+    private enum Access { TYPE_INDEX, COMPLETION_INDEX, DESCRIPTION_INDEX, DURATION_COUNTS, PROJECT_ID_RANGE, SCAN }
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * Picks the cheapest way to find a query's candidate tasks.
+     *
+     * @param query TaskQuery
+     * @param store ProjectStore the query will run on
+     * @return Plan
+     */
+    public static Plan plan(TaskQuery query, ProjectStore store) {
+        DurationStats stats = store.getDurationStats();
+        long totalTasks = stats.getCount('A') + stats.getCount('S') + stats.getCount('L');
+
+        // A scan is always possible
+        Plan best = new Plan(Access.SCAN, query, totalTasks, !query.hasCriteriaBesideTaskTypes()
+                && query.getTaskTypes() == null);
+
+        if (query.getTaskTypes() != null) {
+            long tasks = 0;
+            for (char type : query.getTaskTypes()) {
+                tasks += stats.getCount(type);
+            }
+            best = cheaper(best, new Plan(Access.TYPE_INDEX, query, tasks, !query.hasCriteriaBesideTaskTypes()));
+        }
+
+        if (query.hasDurationRange() && !query.hasCriteriaBesideTaskTypesAndDuration()) {
+            // Reads the same tasks as the type index or scan, but knows how many match
+            best = cheaper(best, durationPlan(query, stats, totalTasks));
+        }
+
+        int minId = Math.max(1, query.getMinProjectId());
+        int maxId = Math.min(ProjectStore.MAX_PROJECT_ID, query.getMaxProjectId());
+        if (minId > 1 || maxId < ProjectStore.MAX_PROJECT_ID) {
+            int projects = 0;
+            for (int id = minId; id <= maxId; id++) {
+                if (store.contains(id)) projects++;
+            }
+            long tasks = store.isEmpty() ? 0 : (long) Math.ceil((double) totalTasks * projects / store.size());
+            Plan range = new Plan(Access.PROJECT_ID_RANGE, query, tasks, false);
+            range.projects = projects;
+            best = cheaper(best, range);
+        }
+
+        // Last, since these read every project still in a snapshot
+        // A blank prefix has no word to look up
+        if (query.getDescriptionPrefix() != null && !query.getDescriptionPrefix().isBlank()
+                && best.estimatedTasks > 0) {
+            long tasks = store.countDescriptionCandidates(query.getDescriptionPrefix());
+            best = cheaper(best, new Plan(Access.DESCRIPTION_INDEX, query, tasks, false));
+        }
+        if (query.getCompleted() != null && best.estimatedTasks > 0) {
+            CompletionIndex completion = store.getCompletionIndex();
+            long tasks = query.getCompleted() ? completion.getCompletedCount() : completion.getIncompleteCount();
+            best = cheaper(best, new Plan(Access.COMPLETION_INDEX, query, tasks, !query.hasCriteriaBesideCompletion()));
+        }
+        return best;
+    }
+
+    /**
+     * Costs the duration counts by the tasks read: those of the query's types,
+     * or every task if it names none. The counts only give the number of matches.
+     */
+    private static Plan durationPlan(TaskQuery query, DurationStats stats, long totalTasks) {
+        int min = query.getMinDuration();
+        int max = query.getMaxDuration();
+        // Durations outside 1-100 share a count, so only ranges inside 1-100 are always exact
+        boolean insideCounts = min >= 1 && max <= DurationStats.MAX_DURATION;
+        long tasks = (query.getTaskTypes() != null) ? 0 : totalTasks;
+        long matches = 0;
+        long outOfRange = 0;
+        for (char type : (query.getTaskTypes() != null) ? typeArray(query.getTaskTypes()) : TASK_TYPES) {
+            if (query.getTaskTypes() != null) {
+                tasks += stats.getCount(type);
+            }
+            matches += stats.getCountInRange(type, min, max);
+            outOfRange += stats.getOutOfRangeCount(type);
+        }
+        return new Plan(Access.DURATION_COUNTS, query, tasks, matches, insideCounts || outOfRange == 0);
+    }
+
+    private static char[] typeArray(Set<Character> types) {
+        char[] array = new char[types.size()];
+        int i = 0;
+        for (char type : types) {
+            array[i++] = type;
+        }
+        return array;
+    }
+
+    private static Plan cheaper(Plan current, Plan candidate) {
+        if (candidate.estimatedTasks != current.estimatedTasks) {
+            return (candidate.estimatedTasks < current.estimatedTasks) ? candidate : current;
+        }
+        // Same tasks to visit: prefer the plan that can answer a count without visiting them
+        return (candidate.exact && !current.exact) ? candidate : current;
+    }
+
+    /**
+     * A chosen way of finding candidate tasks.
+     */
+    public static final class Plan {
+        private final Access access;
+        private final TaskQuery query;
+        private final long estimatedTasks;
+        private final long matches;
+        private final boolean exact;
+        private int projects;
+
+        private Plan(Access access, TaskQuery query, long estimatedTasks, boolean exact) {
+            this(access, query, estimatedTasks, estimatedTasks, exact);
+        }
+
+        private Plan(Access access, TaskQuery query, long estimatedTasks, long matches, boolean exact) {
+            this.access = access;
+            this.query = query;
+            this.estimatedTasks = estimatedTasks;
+            this.matches = matches;
+            this.exact = exact;
+        }
+
+        /**
+         * Gets the number of tasks the plan expects to visit.
+         * @return count as long
+         */
+        public long getEstimatedTasks() {
+            return estimatedTasks;
+        }
+
+        /**
+         * Gets the number of matching tasks the plan knows of without visiting any.
+         * Only the match count if the plan is exact; otherwise at least the match count.
+         * @return count as long
+         */
+        public long getMatchCount() {
+            return matches;
+        }
+
+        /**
+         * Checks if the plan knows the match count without visiting any task: it visits
+         * exactly the matching tasks, or it counted them from the duration counts.
+         * @return true if getMatchCount() is the match count, false otherwise
+         */
+        public boolean isExact() {
+            return exact;
+        }
+
+        /**
+         * Describes the plan for the user, e.g. "type index (A, S: 1200 tasks)".
+         * @return description as String
+         */
+        public String describe() {
+            String filtered = exact ? "" : ", then filtered";
+            switch (access) {
+                case TYPE_INDEX:
+                    return "type index (" + typeList(query.getTaskTypes()) + ": " + estimatedTasks + " tasks" + filtered + ")";
+                case COMPLETION_INDEX:
+                    return "completion index (" + (query.getCompleted() ? "completed" : "not completed")
+                            + ": " + estimatedTasks + " tasks" + filtered + ")";
+                case DURATION_COUNTS:
+                    String types = (query.getTaskTypes() != null) ? typeList(query.getTaskTypes()) + ", " : "";
+                    return "duration counts (" + types + durationRange() + ": " + matches + " matches"
+                            + (exact ? "" : " or fewer") + "), read through the "
+                            + ((query.getTaskTypes() != null) ? "type index" : "project list")
+                            + " (" + estimatedTasks + " tasks)";
+                case DESCRIPTION_INDEX:
+                    return "description index (words starting with \"" + query.getDescriptionPrefix().trim()
+                            + "\": at most " + estimatedTasks + " tasks" + filtered + ")";
+                case PROJECT_ID_RANGE:
+                    return "project ID range " + Math.max(1, query.getMinProjectId()) + "-"
+                            + Math.min(ProjectStore.MAX_PROJECT_ID, query.getMaxProjectId())
+                            + " (" + projects + " projects, about " + estimatedTasks + " tasks" + filtered + ")";
+                default:
+                    return "scan of all projects (" + estimatedTasks + " tasks" + filtered + ")";
+            }
+        }
+
+        /**
+         * Visits the candidate tasks. The query's criteria still have to be checked
+         * on each one, unless the plan is exact.
+         *
+         * @param store ProjectStore
+         * @param visitor Given each candidate, returns false to stop.
+         */
+        void forEachCandidate(ProjectStore store, Predicate<Task> visitor) {
+            switch (access) {
+                case DURATION_COUNTS:
+                    if (query.getTaskTypes() != null) {
+                        visitTypes(store, visitor);
+                    } else {
+                        for (Project p : store) {
+                            if (!visitProject(p, visitor)) return;
+                        }
+                    }
+                    return;
+                case TYPE_INDEX:
+                    visitTypes(store, visitor);
+                    return;
+                case COMPLETION_INDEX:
+                    CompletionIndex completion = store.getCompletionIndex();
+                    for (Task t : query.getCompleted() ? completion.completedTasks() : completion.incompleteTasks()) {
+                        if (!visitor.test(t)) return;
+                    }
+                    return;
+                case DESCRIPTION_INDEX:
+                    for (Task t : store.searchTaskDescriptions(query.getDescriptionPrefix(), false,
+                            Integer.MAX_VALUE, null)) {
+                        if (!visitor.test(t)) return;
+                    }
+                    return;
+                case PROJECT_ID_RANGE:
+                    int maxId = Math.min(ProjectStore.MAX_PROJECT_ID, query.getMaxProjectId());
+                    for (int id = Math.max(1, query.getMinProjectId()); id <= maxId; id++) {
+                        Project p = store.contains(id) ? store.get(id) : null;
+                        if (p != null && query.matchesProject(p) && !visitProject(p, visitor)) return;
+                    }
+                    return;
+                default:
+                    for (Project p : store) {
+                        if (query.matchesProject(p) && !visitProject(p, visitor)) return;
+                    }
+            }
+        }
+
+        private void visitTypes(ProjectStore store, Predicate<Task> visitor) {
+            for (char type : query.getTaskTypes()) {
+                for (Task t : store.getTasksByType(type)) {
+                    if (!visitor.test(t)) return;
+                }
+            }
+        }
+
+        private static boolean visitProject(Project p, Predicate<Task> visitor) {
+            for (Task t : p.getTasks()) {
+                if (t != null && !visitor.test(t)) return false;
+            }
+            return true;
+        }
+
+        private String durationRange() {
+            int min = query.getMinDuration();
+            int max = query.getMaxDuration();
+            if (max == Integer.MAX_VALUE) return "over " + (min - 1) + " hours";
+            if (min == Integer.MIN_VALUE) return "up to " + max + " hours";
+            return min + "-" + max + " hours";
+        }
+
+        private static String typeList(Set<Character> types) {
+            StringBuilder sb = new StringBuilder();
+            for (char type : types) {
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(type);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ * ReportWriter class streams console listings (project details, task lists,
+ * summaries) into one large byte buffer, instead of building a String and
+ * calling System.out.println for every line.
+ *
+ * Text and numbers are encoded straight into the buffer, which is only written
+ * out when it fills up, at a page break, or at the end. A report can go to the
+ * console, paged every so many lines, or to a file.
+ *
+ * Writing methods throw UncheckedIOException. A paged report asks about the next
+ * page while it writes, so it should not be written while a ProjectService lock is
+ * held: copy a batch of rows under the lock (e.g. ProjectService.getTaskBatch),
+ * write them once the lock is let go, and only then read the next batch.
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ReportWriter {
+
+    // Size of the output buffer
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Longest text a long can take ("-9223372036854775808")
+    private static final int MAX_LONG_LENGTH = 20;
+
+    // Same line ending System.out.println uses
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Asked at the end of each page whether to carry on.
+     */
+    public interface PageBreak {
+        /**
+         * @return true to show the next page, false to stop the report
+         */
+        boolean more();
+    }
+
+    private final OutputStream out;
+    private final boolean closeOut;
+    private final Charset charset;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int count;
+
+    // Lines per page, 0 for no paging
+    private final int pageSize;
+    private final PageBreak pageBreak;
+    private int pageLines;
+
+    private long lines;
+    private boolean stopped;
+
+    private ReportWriter(OutputStream out, boolean closeOut, Charset charset, int pageSize, PageBreak pageBreak) {
+        this.out = out;
+        this.closeOut = closeOut;
+        this.charset = charset;
+        this.pageSize = pageSize;
+        this.pageBreak = pageBreak;
+    }
+
+    /**
+     * Creates a report on System.out.
+     *
+     * @param pageSize Lines per page, or 0 to show every line without stopping.
+     * @param pageBreak Asked after each page whether to show the next one.
+     * @return ReportWriter
+     */
+    public static ReportWriter console(int pageSize, PageBreak pageBreak) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("Page size cannot be negative: " + pageSize);
+        }
+        // System.out encodes with the default charset unless told otherwise
+        Charset charset = Charset.defaultCharset();
+        String encoding = System.getProperty("sun.stdout.encoding");
+        if (encoding != null && Charset.isSupported(encoding)) {
+            charset = Charset.forName(encoding);
+        }
+        return new ReportWriter(System.out, false, charset, pageSize, pageBreak);
+    }
+
+    /**
+     * Creates a report written to a file, replacing anything already in it.
+     *
+     * @param file The file to write.
+     * @return ReportWriter
+     * @throws IOException if the file cannot be created.
+     */
+    public static ReportWriter toFile(Path file) throws IOException {
+        return new ReportWriter(Files.newOutputStream(file), true, StandardCharsets.UTF_8, 0, null);
+    }
+
+    // -------------------------------------------------------------------------
+    // Writing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds text to the current line.
+     * @param text String, "null" if null
+     * @return this ReportWriter
+     */
+    public ReportWriter text(String text) {
+        if (stopped) return this;
+        if (text == null) text = "null";
+
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Rare, so the rest of the text is encoded the slow way
+                writeBytes(text.substring(i).getBytes(charset));
+                return this;
+            }
+            if (count == buf.length) flush();
+            buf[count++] = (byte) c;
+        }
+        return this;
+    }
+
+    /**
+     * Adds one character to the current line.
+     * @param c char
+     * @return this ReportWriter
+     */
+    public ReportWriter text(char c) {
+        if (stopped) return this;
+        if (c >= 0x80) {
+            writeBytes(String.valueOf(c).getBytes(charset));
+            return this;
+        }
+        if (count == buf.length) flush();
+        buf[count++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Adds a whole number to the current line, as decimal digits.
+     * @param value long
+     * @return this ReportWriter
+     */
+    public ReportWriter number(long value) {
+        if (stopped) return this;
+        if (value == Long.MIN_VALUE) {
+            return text(Long.toString(value));
+        }
+        if (count + MAX_LONG_LENGTH > buf.length) flush();
+
+        boolean negative = value < 0;
+        if (negative) value = -value;
+
+        // Digits are written backwards from the end of the number
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        int end = count + digits + (negative ? 1 : 0);
+        int pos = end;
+        do {
+            buf[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        if (negative) {
+            buf[--pos] = '-';
+        }
+        count = end;
+        return this;
+    }
+
+    /**
+     * Adds a character to the current line a number of times, e.g. for padding or bars.
+     * @param c char
+     * @param times int, nothing is added if 0 or less
+     * @return this ReportWriter
+     */
+    public ReportWriter repeat(char c, int times) {
+        for (int i = 0; i < times && !stopped; i++) {
+            text(c);
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current line. At the end of a page the buffer is written out and
+     * the page break is asked whether to carry on.
+     * @return this ReportWriter
+     */
+    public ReportWriter endLine() {
+        if (stopped) return this;
+        text(LINE_SEPARATOR);
+        lines++;
+        pageLines++;
+
+        if (pageSize > 0 && pageLines >= pageSize) {
+            flush();
+            pageLines = 0;
+            if (!pageBreak.more()) {
+                stopped = true;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds a whole line of text.
+     * @param text String
+     * @return this ReportWriter
+     */
+    public ReportWriter line(String text) {
+        return text(text).endLine();
+    }
+
+    /**
+     * Checks if the reader stopped the report at a page break, so callers can stop early.
+     * Anything written after that is ignored.
+     * @return true if the report was stopped, false otherwise
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Gets the number of lines per page.
+     * @return page size as int, 0 if the report is not paged
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Gets the number of lines written.
+     * @return lines as long
+     */
+    public long getLineCount() {
+        return lines;
+    }
+
+    /**
+     * Writes out whatever is left in the buffer, and closes the file if the report has one.
+     */
+    public void finish() {
+        flush();
+        try {
+            if (closeOut) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Buffer Helpers
+    // -------------------------------------------------------------------------
+
+    private void writeBytes(byte[] bytes) {
+        if (bytes.length > buf.length - count) {
+            flush();
+            if (bytes.length > buf.length) {
+                write(bytes, 0, bytes.length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     * Writes out whatever is in the buffer.
+     */
+    private void flush() {
+        if (count > 0) {
+            write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        try {
+            out.write(bytes, offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,13 +1,24 @@
 /**
  * Task class represents a single task within a project
  * Contains attributes for task identification, description, completion status, type, and duration
+ *
+ * While a task is in a project, its values are kept in the project's TaskTable and
+ * this object is only a view of its row there. A task that is not in a project,
+ * such as a new task or a copy, keeps its own values.
  */
 public class Task {
-    private int taskId;
-    private String description;
-    private boolean completed;
-    private char taskType;
-    private int taskDuration;
+
+    // Table holding this task's values while it is in a project, null otherwise
+    private TaskTable table;
+
+    // Position of this task in its project's task storage (its table row), or -1 if not in a project
+    private int slot = -1;
+
+    // This task's values while it is not in a project, null while it is
+    private Values values;
+
+    // Position of this task in the store's completion bitmaps and description index, or -1 if not indexed
+    private int ordinal = -1;
 
     /**
      * Full constructor to initialize all task attributes.
@@ -19,15 +30,25 @@ public class Task {
      * @param completed Completion status (true if completed)
      */
     public Task(int taskId, String description, char taskType, int taskDuration, boolean completed) {
-        this.taskId = taskId;
-        this.description = description;
-        this.taskType = taskType;
-        this.taskDuration = taskDuration;
-        this.completed = completed;
+        this.values = new Values();
+        values.taskId = taskId;
+        values.description = description;
+        values.taskType = taskType;
+        values.taskDuration = taskDuration;
+        values.completed = completed;
     }
 
     public Task() {
         // Default constructor for flexibility
+        this.values = new Values();
+    }
+
+    /**
+     * Creates the view of a row already filled in a project's task table. Called by Project.
+     */
+    Task(TaskTable table, int slot) {
+        this.table = table;
+        this.slot = slot;
     }
 
 
@@ -36,15 +57,23 @@ public class Task {
      * @return taskId as int
      */
     public int getTaskId() {
-        return taskId;
+        return (table != null) ? table.getTaskId(slot) : values.taskId;
     }
 
     /**
      * Sets the task ID.
-     * @param taskId int (must be between 1-99)
+     * @param taskId int (1-99, or up to the task limit of a project allowed more tasks)
      */
     public void setTaskId(int taskId) {
-        this.taskId = taskId;
+        if (table == null) {
+            values.taskId = taskId;
+            return;
+        }
+        int oldId = table.getTaskId(slot);
+        table.setTaskId(slot, taskId);
+        if (oldId != taskId) {
+            table.getProject().taskIdChanged(this, oldId);
+        }
     }
     
  /**
@@ -52,7 +81,7 @@ public class Task {
      * @return description as String
      */
     public String getDescription() {
-        return description;
+        return (table != null) ? table.getDescription(slot) : values.description;
     }
 
     /**
@@ -60,7 +89,13 @@ public class Task {
      * @param description String describing the task
      */
     public void setDescription(String description) {
-        this.description = description;
+        if (table == null) {
+            values.description = description;
+            return;
+        }
+        String oldDescription = table.getDescription(slot);
+        table.setDescription(slot, description);
+        table.getProject().taskDescriptionChanged(this, oldDescription);
     }
 
  /**
@@ -68,7 +103,7 @@ public class Task {
      * @return true if completed, false otherwise
      */
     public boolean isCompleted() {
-        return completed;
+        return (table != null) ? table.isCompleted(slot) : values.completed;
     }
 
     /**
@@ -76,7 +111,15 @@ public class Task {
      * @param completed boolean
      */
     public void setCompleted(boolean completed) {
-        this.completed = completed;
+        if (table == null) {
+            values.completed = completed;
+            return;
+        }
+        boolean changed = table.isCompleted(slot) != completed;
+        table.setCompleted(slot, completed);
+        if (changed) {
+            table.getProject().taskCompletionChanged(this);
+        }
     }
 
     /**
@@ -84,15 +127,22 @@ public class Task {
      * @return char: A, S, or L
      */
     public char getTaskType() {
-        return taskType;
+        return (table != null) ? table.getTaskType(slot) : values.taskType;
     }
 
     /**
      * Sets the task type.
      * @param taskType char: A = Admin, S = Support, L = Logistics
+     * @throws IllegalArgumentException if the task is in a project and the type is not A, S or L.
      */
     public void setTaskType(char taskType) {
-        this.taskType = taskType;
+        if (table == null) {
+            values.taskType = taskType;
+            return;
+        }
+        char oldType = table.getTaskType(slot);
+        table.setTaskType(slot, taskType);
+        table.getProject().taskChanged(this, oldType, table.getTaskDuration(slot));
     }
 
     /**
@@ -100,14 +150,91 @@ public class Task {
      * @return taskDuration as int
      */
     public int getTaskDuration() {
-        return taskDuration;
+        return (table != null) ? table.getTaskDuration(slot) : values.taskDuration;
     }
 
     /**
      * Sets the task duration in hours.
      * @param taskDuration int
+     * @throws IllegalArgumentException if the task is in a project and the duration is not 1-100.
      */
     public void setTaskDuration(int taskDuration) {
-        this.taskDuration = taskDuration;
-    } 
-}
\ No newline at end of file
+        if (table == null) {
+            values.taskDuration = taskDuration;
+            return;
+        }
+        int oldDuration = table.getTaskDuration(slot);
+        table.setTaskDuration(slot, taskDuration);
+        table.getProject().taskChanged(this, table.getTaskType(slot), oldDuration);
+    }
+
+    /**
+     * Gets the project this task belongs to.
+     * @return Project, or null if the task has not been added to a project
+     */
+    public Project getProject() {
+        return (table != null) ? table.getProject() : null;
+    }
+
+    /**
+     * Moves this task's values into a row of a project's task table. Called by Project when the task is added.
+     * @throws IllegalArgumentException if the type is not A, S or L, or the duration is not 1-100.
+     */
+    void attach(TaskTable table, int slot) {
+        table.setRow(slot, values.taskId, values.description, values.taskType, values.taskDuration, values.completed);
+        this.table = table;
+        this.slot = slot;
+        this.values = null;
+    }
+
+    /**
+     * Moves this task's values out of its table row and empties the row. Called by Project when the task is removed.
+     */
+    void detach() {
+        Values own = new Values();
+        own.taskId = table.getTaskId(slot);
+        own.description = table.getDescription(slot);
+        own.taskType = table.getTaskType(slot);
+        own.taskDuration = table.getTaskDuration(slot);
+        own.completed = table.isCompleted(slot);
+        table.clearRow(slot);
+        this.values = own;
+        this.table = null;
+        this.slot = -1;
+    }
+
+    /**
+     * Gets this task's position in the store's completion bitmaps.
+     * @return ordinal as int, or -1 if the task is not indexed
+     */
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Sets this task's position in the store's completion bitmaps. Called by CompletionIndex.
+     * @param ordinal int, or -1
+     */
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Gets this task's position in its project's task storage.
+     * @return slot as int, or -1 if the task is not in a project
+     */
+    int getSlot() {
+        return slot;
+    }
+
+    /**
+     * A task's values while it is not in a project.
+     */
+    private static final class Values {
+        int taskId;
+        String description;
+        boolean completed;
+        char taskType;
+        int taskDuration;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * TaskLimitPolicy decides how many tasks a project may hold, based on its type.
+ * Project uses the policy to check for room, so the limits are no longer tied to
+ * the size of a tasks array and can be raised for projects with thousands of tasks.
+ */
+public interface TaskLimitPolicy {
+
+    // The original limits: Small = 1, Medium = 2, Large = 3
+    TaskLimitPolicy STANDARD = of(1, 2, 3);
+
+    // No limit for any valid project type
+    TaskLimitPolicy UNLIMITED = of(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * Gets the most tasks a project of the given type may hold.
+     * @param projectType String (Small, Medium, Large)
+     * @return task limit as int, 0 for an unknown type
+     */
+    int getTaskLimit(String projectType);
+
+    /**
+     * Creates a policy with a fixed limit for each project type.
+     *
+     * @param small Limit for Small projects.
+     * @param medium Limit for Medium projects.
+     * @param large Limit for Large projects.
+     * @return The policy.
+     * @throws IllegalArgumentException if a limit is negative.
+     */
+    static TaskLimitPolicy of(int small, int medium, int large) {
+        if (small < 0 || medium < 0 || large < 0) {
+            throw new IllegalArgumentException("Task limits cannot be negative");
+        }
+        return projectType -> {
+            if (projectType.equalsIgnoreCase("Small")) return small;
+            if (projectType.equalsIgnoreCase("Medium")) return medium;
+            if (projectType.equalsIgnoreCase("Large")) return large;
+            return 0;
+        };
+    }
+}
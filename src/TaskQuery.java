@@ -0,0 +1,763 @@
+/**
+ * TaskQuery class describes an ad-hoc query over every task in every project:
+ * which tasks to match, which fields to show, how to sort them and how many to keep.
+ *
+ * Every criterion is optional and they are combined with AND:
+ * - task type (one or more of A, S, L), completion, duration range, task ID range
+ * - project type, project ID range
+ * - project name prefix and task description prefix, ignoring case
+ *
+ * QueryPlanner picks the cheapest way to find the candidate tasks (the type index,
+ * the completion bitmaps, the description index, a lookup of a project ID range,
+ * or a scan of every project)
+ * and the remaining criteria are checked on each candidate. With a sort and a limit,
+ * only the best rows are kept while the candidates are visited, instead of sorting
+ * every match. Without a sort, rows come in the order the chosen index holds them,
+ * so which rows a limit keeps depends on the plan.
+ *
+ * Queries can be written as text, e.g.
+ *   type=A,S completed=false duration=10..40 sort=-duration limit=20
+ * (see USAGE), which is how the menu, batch and HTTP clients take them.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class TaskQuery {
+
+    /**
+     * Query text syntax, one line per criterion or option.
+     */
+    public static final String USAGE = String.join(System.lineSeparator(),
+            "  type=A,S             task types (A = Admin, S = Support, L = Logistics)",
+            "  completed=true       true or false",
+            "  duration=10..40      duration range in hours (also 10.., ..40 or 25)",
+            "  task=1..20           task ID range",
+            "  project=100..199     project ID range",
+            "  projectType=Large    Small, Medium or Large",
+            "  name=Web             project name starts with (quote text with spaces: name=\"Web site\")",
+            "  description=Fix      task description starts with",
+            "  fields=projectId,taskId,description   fields to show (default: all)",
+            "  sort=-duration,taskId                 sort fields, - for descending",
+            "  limit=20             show at most this many tasks",
+            "  count                only count the matching tasks",
+            "Fields: projectId, projectName, projectType, taskId, description, type, duration, completed");
+
+    // Names of the terms query text may use, in lower case
+    private static final List<String> TERMS = List.of("type", "completed", "duration", "task", "project",
+            "projecttype", "name", "description", "fields", "sort", "limit", "count");
+
+    /**
+     * A field of a matching task that can be shown or sorted on.
+     */
+    public enum Field {
+        PROJECT_ID("projectId"),
+        PROJECT_NAME("projectName"),
+        PROJECT_TYPE("projectType"),
+        TASK_ID("taskId"),
+        DESCRIPTION("description"),
+        TYPE("type"),
+        DURATION("duration"),
+        COMPLETED("completed");
+
+        private final String name;
+
+        Field(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Gets the name used in query text and JSON.
+         * @return name as String
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Finds a field by its name, ignoring case.
+         *
+         * @param name String, e.g. "taskId"
+         * @return Field
+         * @throws IllegalArgumentException if no field has that name.
+         */
+        public static Field of(String name) {
+            for (Field field : values()) {
+                if (field.name.equalsIgnoreCase(name)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown field: " + name);
+        }
+
+        /**
+         * Gets this field's value in a match: Integer, String, Character or Boolean.
+         * @param match Match
+         * @return value as Object
+         */
+        public Object valueOf(Match match) {
+            Task t = match.getTask();
+            switch (this) {
+                case PROJECT_ID: return match.getProjectId();
+                case PROJECT_NAME: return match.getProjectName();
+                case PROJECT_TYPE: return match.getProjectType();
+                case TASK_ID: return t.getTaskId();
+                case DESCRIPTION: return t.getDescription();
+                case TYPE: return t.getTaskType();
+                case DURATION: return t.getTaskDuration();
+                default: return t.isCompleted();
+            }
+        }
+
+        /**
+         * Compares two tasks on this field, in ascending order.
+         */
+        int compare(Project p1, Task t1, Project p2, Task t2) {
+            switch (this) {
+                case PROJECT_ID: return Integer.compare(p1.getProjectId(), p2.getProjectId());
+                case PROJECT_NAME: return compareText(p1.getProjectName(), p2.getProjectName());
+                case PROJECT_TYPE: return compareText(p1.getProjectType(), p2.getProjectType());
+                case TASK_ID: return Integer.compare(t1.getTaskId(), t2.getTaskId());
+                case DESCRIPTION: return compareText(t1.getDescription(), t2.getDescription());
+                case TYPE: return Character.compare(t1.getTaskType(), t2.getTaskType());
+                case DURATION: return Integer.compare(t1.getTaskDuration(), t2.getTaskDuration());
+                default: return Boolean.compare(t1.isCompleted(), t2.isCompleted());
+            }
+        }
+
+        private static int compareText(String a, String b) {
+            return String.CASE_INSENSITIVE_ORDER.compare(a == null ? "" : a, b == null ? "" : b);
+        }
+    }
+
+    // Task types to match, null for any
+    private Set<Character> taskTypes;
+
+    // Completion to match, null for any
+    private Boolean completed;
+
+    // Inclusive ranges, the full int range when not set
+    private int minDuration = Integer.MIN_VALUE;
+    private int maxDuration = Integer.MAX_VALUE;
+    private int minTaskId = Integer.MIN_VALUE;
+    private int maxTaskId = Integer.MAX_VALUE;
+    private int minProjectId = Integer.MIN_VALUE;
+    private int maxProjectId = Integer.MAX_VALUE;
+
+    // Text criteria, null for any
+    private String projectType;
+    private String projectNamePrefix;
+    private String descriptionPrefix;
+
+    private List<Field> fields = List.of(Field.values());
+
+    // Sort fields, and whether each one is descending
+    private final List<Field> sortFields = new ArrayList<>();
+    private final List<Boolean> sortDescending = new ArrayList<>();
+
+    // Most rows returned, -1 for no limit
+    private int limit = -1;
+    private boolean countOnly;
+
+    // -------------------------------------------------------------------------
+    // Criteria
+    // -------------------------------------------------------------------------
+
+    /**
+     * Sets the task types to match.
+     * @param types String of task types, e.g. "AS"
+     * @throws IllegalArgumentException if a type is not A, S or L.
+     */
+    public void setTaskTypes(String types) {
+        Set<Character> set = new TreeSet<>();
+        for (char c : types.toUpperCase().toCharArray()) {
+            if (c == ',') continue;
+            if (c != 'A' && c != 'S' && c != 'L') {
+                throw new IllegalArgumentException("Invalid task type: " + c);
+            }
+            set.add(c);
+        }
+        if (set.isEmpty()) {
+            throw new IllegalArgumentException("No task type given");
+        }
+        taskTypes = set;
+    }
+
+    /**
+     * Sets the completion to match.
+     * @param completed Boolean, or null for any
+     */
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * Sets the range of task durations to match, in hours, inclusive.
+     * @throws IllegalArgumentException if min is greater than max.
+     */
+    public void setDurationRange(int min, int max) {
+        checkRange(min, max, "duration");
+        minDuration = min;
+        maxDuration = max;
+    }
+
+    /**
+     * Sets the range of task IDs to match, inclusive.
+     * @throws IllegalArgumentException if min is greater than max.
+     */
+    public void setTaskIdRange(int min, int max) {
+        checkRange(min, max, "task ID");
+        minTaskId = min;
+        maxTaskId = max;
+    }
+
+    /**
+     * Sets the range of project IDs to match, inclusive.
+     * @throws IllegalArgumentException if min is greater than max.
+     */
+    public void setProjectIdRange(int min, int max) {
+        checkRange(min, max, "project ID");
+        minProjectId = min;
+        maxProjectId = max;
+    }
+
+    /**
+     * Sets the project type to match, ignoring case.
+     * @param projectType String (Small, Medium, Large), or null for any
+     * @throws IllegalArgumentException if the type is not Small, Medium or Large.
+     */
+    public void setProjectType(String projectType) {
+        if (projectType != null && !projectType.equalsIgnoreCase("Small")
+                && !projectType.equalsIgnoreCase("Medium") && !projectType.equalsIgnoreCase("Large")) {
+            throw new IllegalArgumentException("Invalid project type: " + projectType);
+        }
+        this.projectType = projectType;
+    }
+
+    /**
+     * Sets the text project names must start with, ignoring case.
+     * @param prefix String, or null for any
+     */
+    public void setProjectNamePrefix(String prefix) {
+        this.projectNamePrefix = prefix;
+    }
+
+    /**
+     * Sets the text task descriptions must start with, ignoring case.
+     * @param prefix String, or null for any
+     */
+    public void setDescriptionPrefix(String prefix) {
+        this.descriptionPrefix = prefix;
+    }
+
+    // -------------------------------------------------------------------------
+    // Output
+    // -------------------------------------------------------------------------
+
+    /**
+     * Sets the fields to show, in order.
+     * @throws IllegalArgumentException if no field is given.
+     */
+    public void setFields(List<Field> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("No field given");
+        }
+        this.fields = List.copyOf(fields);
+    }
+
+    /**
+     * Adds a field to sort on, after any already added.
+     * @param field Field
+     * @param descending true for largest first, false for smallest first
+     */
+    public void addSort(Field field, boolean descending) {
+        sortFields.add(field);
+        sortDescending.add(descending);
+    }
+
+    /**
+     * Sets the most tasks to return.
+     * @param limit int, or -1 for no limit
+     * @throws IllegalArgumentException if the limit is below -1.
+     */
+    public void setLimit(int limit) {
+        if (limit < -1) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Sets whether only the number of matching tasks is wanted.
+     * @param countOnly boolean
+     */
+    public void setCountOnly(boolean countOnly) {
+        this.countOnly = countOnly;
+    }
+
+    /**
+     * Gets the fields to show, in order.
+     * @return read-only List of Field
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Checks if only the number of matching tasks is wanted.
+     * @return true if no tasks are returned, false otherwise
+     */
+    public boolean isCountOnly() {
+        return countOnly;
+    }
+
+    // -------------------------------------------------------------------------
+    // Parsing
+    // -------------------------------------------------------------------------
+
+    /**
+     * Creates a query from its text form (see USAGE).
+     *
+     * @param text Terms separated by spaces, e.g. "type=A completed=false limit=10".
+     * @return TaskQuery
+     * @throws IllegalArgumentException if a term is not understood.
+     */
+    public static TaskQuery parse(String text) {
+        TaskQuery query = new TaskQuery();
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            // key=value, key="value with spaces" or a bare key
+            int start = i;
+            while (i < length && text.charAt(i) != '=' && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            String key = text.substring(start, i);
+            String value = null;
+            if (i < length && text.charAt(i) == '=') {
+                i++;
+                if (i < length && text.charAt(i) == '"') {
+                    int close = text.indexOf('"', i + 1);
+                    if (close < 0) {
+                        throw new IllegalArgumentException("Missing closing quote after " + key + "=");
+                    }
+                    value = text.substring(i + 1, close);
+                    i = close + 1;
+                } else {
+                    int valueStart = i;
+                    while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                        i++;
+                    }
+                    value = text.substring(valueStart, i);
+                }
+            }
+            query.set(key, value);
+        }
+        return query;
+    }
+
+    /**
+     * Sets one criterion or option by its name in query text, e.g. set("duration", "10..40").
+     *
+     * @param key The name, ignoring case.
+     * @param value The value, or null for a bare key such as "count".
+     * @throws IllegalArgumentException if the key or value is not understood.
+     */
+    public void set(String key, String value) {
+        String name = key.toLowerCase();
+        if (!TERMS.contains(name)) {
+            throw new IllegalArgumentException("Unknown query term: " + key);
+        }
+        if (name.equals("count")) {
+            setCountOnly(value == null || value.isEmpty() || parseBoolean(key, value));
+            return;
+        }
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing value for " + key);
+        }
+
+        int[] range;
+        switch (name) {
+            case "type": setTaskTypes(value); break;
+            case "completed": setCompleted(parseBoolean(key, value)); break;
+            case "duration":
+                range = parseRange(key, value);
+                setDurationRange(range[0], range[1]);
+                break;
+            case "task":
+                range = parseRange(key, value);
+                setTaskIdRange(range[0], range[1]);
+                break;
+            case "project":
+                range = parseRange(key, value);
+                setProjectIdRange(range[0], range[1]);
+                break;
+            case "projecttype": setProjectType(value); break;
+            case "name": setProjectNamePrefix(value); break;
+            case "description": setDescriptionPrefix(value); break;
+            case "fields":
+                if (value.equalsIgnoreCase("all")) {
+                    setFields(List.of(Field.values()));
+                } else {
+                    List<Field> list = new ArrayList<>();
+                    for (String field : value.split(",")) {
+                        list.add(Field.of(field.trim()));
+                    }
+                    setFields(list);
+                }
+                break;
+            case "sort":
+                sortFields.clear();
+                sortDescending.clear();
+                for (String field : value.split(",")) {
+                    field = field.trim();
+                    boolean descending = field.startsWith("-");
+                    addSort(Field.of(descending ? field.substring(1) : field), descending);
+                }
+                break;
+            case "limit": setLimit(parseNumber(key, value)); break;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Running
+    // -------------------------------------------------------------------------
+
+    /**
+     * Runs the query. The caller must keep the store from changing while it runs
+     * (ProjectService.query does this).
+     *
+     * @param store ProjectStore
+     * @return Result holding copies of the matching tasks
+     */
+    public Result run(ProjectStore store) {
+        QueryPlanner.Plan plan = QueryPlanner.plan(this, store);
+
+        if (countOnly && plan.isExact()) {
+            // The plan already knows exactly how many tasks match
+            return new Result(plan.describe(), Collections.emptyList(), plan.getMatchCount(), true);
+        }
+
+        Comparator<Task> order = sortFields.isEmpty() ? null : taskOrder();
+        List<Task> kept = new ArrayList<>();
+        // With a sort and a limit, the worst kept task sits at the head, ready to be replaced
+        PriorityQueue<Task> best = (order != null && limit >= 0) ? new PriorityQueue<>(order.reversed()) : null;
+        long[] matchCount = new long[1];
+        boolean[] stoppedEarly = new boolean[1];
+
+        plan.forEachCandidate(store, t -> {
+            if (!matches(t)) {
+                return true;
+            }
+            matchCount[0]++;
+            if (countOnly) {
+                return true;
+            }
+            if (best != null) {
+                if (best.size() < limit) {
+                    best.add(t);
+                } else if (limit > 0 && order.compare(t, best.peek()) < 0) {
+                    best.poll();
+                    best.add(t);
+                }
+                return true;
+            }
+            if (limit >= 0 && kept.size() == limit) {
+                // Without a sort the first rows found are enough, the rest are not counted
+                stoppedEarly[0] = true;
+                matchCount[0]--;
+                return false;
+            }
+            kept.add(t);
+            return true;
+        });
+
+        if (best != null) {
+            kept.addAll(best);
+        }
+        if (order != null) {
+            kept.sort(order);
+        }
+
+        List<Match> matches = new ArrayList<>(kept.size());
+        for (Task t : kept) {
+            matches.add(Match.of(t));
+        }
+        return new Result(plan.describe(), matches, matchCount[0], !stoppedEarly[0]);
+    }
+
+    /**
+     * Checks a project against the project criteria, so a scan can skip its tasks.
+     * @param p Project
+     * @return true if the project's tasks may match, false if none can
+     */
+    boolean matchesProject(Project p) {
+        return p.getProjectId() >= minProjectId && p.getProjectId() <= maxProjectId
+                && (projectType == null || projectType.equalsIgnoreCase(p.getProjectType()))
+                && startsWith(p.getProjectName(), projectNamePrefix);
+    }
+
+    /**
+     * Checks a task, and the project it belongs to, against every criterion.
+     * @param t Task in a project
+     * @return true if the task matches, false otherwise
+     */
+    boolean matches(Task t) {
+        return (taskTypes == null || taskTypes.contains(t.getTaskType()))
+                && (completed == null || completed == t.isCompleted())
+                && t.getTaskDuration() >= minDuration && t.getTaskDuration() <= maxDuration
+                && t.getTaskId() >= minTaskId && t.getTaskId() <= maxTaskId
+                && startsWith(t.getDescription(), descriptionPrefix)
+                && matchesProject(t.getProject());
+    }
+
+    // -------------------------------------------------------------------------
+    // Criteria for QueryPlanner
+    // -------------------------------------------------------------------------
+
+    String getDescriptionPrefix() {
+        return descriptionPrefix;
+    }
+
+    Set<Character> getTaskTypes() {
+        return taskTypes;
+    }
+
+    Boolean getCompleted() {
+        return completed;
+    }
+
+    int getMinDuration() {
+        return minDuration;
+    }
+
+    int getMaxDuration() {
+        return maxDuration;
+    }
+
+    int getMinProjectId() {
+        return minProjectId;
+    }
+
+    int getMaxProjectId() {
+        return maxProjectId;
+    }
+
+    /**
+     * Checks if any criterion other than the task types is set.
+     */
+    boolean hasCriteriaBesideTaskTypes() {
+        return completed != null || hasCriteriaBesideTypeAndCompletion();
+    }
+
+    /**
+     * Checks if any criterion other than completion is set.
+     */
+    boolean hasCriteriaBesideCompletion() {
+        return taskTypes != null || hasCriteriaBesideTypeAndCompletion();
+    }
+
+    /**
+     * Checks if a duration range is set.
+     */
+    boolean hasDurationRange() {
+        return minDuration != Integer.MIN_VALUE || maxDuration != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Checks if any criterion other than the task types and the duration range is set.
+     */
+    boolean hasCriteriaBesideTaskTypesAndDuration() {
+        return completed != null || hasCriteriaBesideTypeCompletionAndDuration();
+    }
+
+    private boolean hasCriteriaBesideTypeAndCompletion() {
+        return hasDurationRange() || hasCriteriaBesideTypeCompletionAndDuration();
+    }
+
+    private boolean hasCriteriaBesideTypeCompletionAndDuration() {
+        return minTaskId != Integer.MIN_VALUE || maxTaskId != Integer.MAX_VALUE
+                || minProjectId != Integer.MIN_VALUE || maxProjectId != Integer.MAX_VALUE
+                || projectType != null || projectNamePrefix != null || descriptionPrefix != null;
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Orders tasks by the sort fields, then by project and task ID so ties come out the same every time.
+     */
+    private Comparator<Task> taskOrder() {
+        List<Field> keys = new ArrayList<>(sortFields);
+        List<Boolean> descending = new ArrayList<>(sortDescending);
+        for (Field tieBreak : List.of(Field.PROJECT_ID, Field.TASK_ID)) {
+            if (!keys.contains(tieBreak)) {
+                keys.add(tieBreak);
+                descending.add(false);
+            }
+        }
+        return (t1, t2) -> {
+            for (int i = 0; i < keys.size(); i++) {
+                int c = keys.get(i).compare(t1.getProject(), t1, t2.getProject(), t2);
+                if (c != 0) {
+                    return descending.get(i) ? -c : c;
+                }
+            }
+            // Same project and task ID: keep the order the project stores them in
+            return Integer.compare(t1.getSlot(), t2.getSlot());
+        };
+    }
+
+    private static boolean startsWith(String text, String prefix) {
+        return prefix == null || (text != null && text.regionMatches(true, 0, prefix, 0, prefix.length()));
+    }
+
+    private static void checkRange(int min, int max, String name) {
+        if (min > max) {
+            throw new IllegalArgumentException("Invalid " + name + " range: " + min + " to " + max);
+        }
+    }
+
+    /**
+     * Parses "10..40", "10..", "..40" or "25" into an inclusive {min, max}.
+     */
+    private static int[] parseRange(String key, String value) {
+        int dots = value.indexOf("..");
+        if (dots < 0) {
+            int n = parseNumber(key, value);
+            return new int[] {n, n};
+        }
+        String min = value.substring(0, dots);
+        String max = value.substring(dots + 2);
+        return new int[] {
+            min.isEmpty() ? Integer.MIN_VALUE : parseNumber(key, min),
+            max.isEmpty() ? Integer.MAX_VALUE : parseNumber(key, max)
+        };
+    }
+
+    private static int parseNumber(String key, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + key + ": " + value);
+        }
+    }
+
+    private static boolean parseBoolean(String key, String value) {
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes")) return true;
+        if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("no")) return false;
+        throw new IllegalArgumentException("Expected true or false for " + key + ": " + value);
+    }
+
+    // -------------------------------------------------------------------------
+    // Results
+    // -------------------------------------------------------------------------
+
+    /**
+     * One matching task, copied with the details of its project.
+     */
+    public static final class Match {
+        private final int projectId;
+        private final String projectName;
+        private final String projectType;
+        private final Task task;
+
+        Match(int projectId, String projectName, String projectType, Task task) {
+            this.projectId = projectId;
+            this.projectName = projectName;
+            this.projectType = projectType;
+            this.task = task;
+        }
+
+        /**
+         * Copies a task in a project, with its project's details.
+         * @param t Task in a project
+         * @return Match
+         */
+        static Match of(Task t) {
+            Project p = t.getProject();
+            return new Match(p.getProjectId(), p.getProjectName(), p.getProjectType(),
+                    new Task(t.getTaskId(), t.getDescription(), t.getTaskType(), t.getTaskDuration(), t.isCompleted()));
+        }
+
+        public int getProjectId() {
+            return projectId;
+        }
+
+        public String getProjectName() {
+            return projectName;
+        }
+
+        public String getProjectType() {
+            return projectType;
+        }
+
+        /**
+         * Gets a copy of the matching task, not part of any project.
+         * @return Task
+         */
+        public Task getTask() {
+            return task;
+        }
+    }
+
+    /**
+     * What a query found, and how.
+     */
+    public static final class Result {
+        private final String plan;
+        private final List<Match> matches;
+        private final long matchCount;
+        private final boolean complete;
+
+        Result(String plan, List<Match> matches, long matchCount, boolean complete) {
+            this.plan = plan;
+            this.matches = Collections.unmodifiableList(matches);
+            this.matchCount = matchCount;
+            this.complete = complete;
+        }
+
+        /**
+         * Gets how the tasks were found, e.g. "type index (A: 1200 tasks)".
+         * @return plan as String
+         */
+        public String getPlan() {
+            return plan;
+        }
+
+        /**
+         * Gets the matching tasks, sorted and limited. Empty for a count-only query.
+         * @return read-only List of Match
+         */
+        public List<Match> getMatches() {
+            return matches;
+        }
+
+        /**
+         * Gets the number of matching tasks, before the limit.
+         * @return count as long (see isComplete)
+         */
+        public long getMatchCount() {
+            return matchCount;
+        }
+
+        /**
+         * Checks if every matching task was counted. An unsorted query stops once it
+         * has its limit, so the count is then only the number of tasks returned.
+         * @return true if getMatchCount is the total, false if the query stopped at its limit
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+}
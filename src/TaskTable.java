@@ -0,0 +1,300 @@
+/**
+ * TaskTable class holds one project's tasks column by column in primitive arrays:
+ * int task IDs, byte types, short durations (1-100), a completion bitmap, and every
+ * description packed back to back as UTF-8, found through an offset and a length column.
+ *
+ * A row is a slot of the project's task storage. The Task objects in a project hold
+ * nothing but their row (see Task), so each value is kept once, here, without a
+ * String and byte array per description, and scans of a project's tasks run over
+ * small contiguous arrays.
+ */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class TaskTable {
+
+    // Smallest description storage allocated
+    private static final int MIN_DESCRIPTION_CAPACITY = 64;
+
+    // Project the rows belong to
+    private final Project project;
+
+    // One entry per row
+    private int[] taskIds = new int[0];
+    private byte[] types = new byte[0];
+    private short[] durations = new short[0];
+    private int[] descriptionOffsets = new int[0];
+    private int[] descriptionLengths = new int[0];
+
+    // Rows holding a completed task
+    private final BitSet completed = new BitSet();
+
+    // Every row's description as UTF-8, back to back. The bytes of replaced and
+    // cleared descriptions stay unused until the descriptions are compacted.
+    private byte[] descriptionBytes = new byte[0];
+    private int descriptionSize;
+    private int unusedDescriptionBytes;
+
+    /**
+     * Creates an empty table.
+     * @param project Project the rows belong to
+     */
+    TaskTable(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Gets the project the rows belong to.
+     * @return Project
+     */
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * Gets the number of rows the columns have room for.
+     * @return capacity as int
+     */
+    public int capacity() {
+        return taskIds.length;
+    }
+
+    /**
+     * Gives the columns room for more rows, keeping every row.
+     * @param capacity int, at least the current capacity
+     */
+    void grow(int capacity) {
+        taskIds = Arrays.copyOf(taskIds, capacity);
+        types = Arrays.copyOf(types, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        descriptionOffsets = Arrays.copyOf(descriptionOffsets, capacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, capacity);
+    }
+
+    /**
+     * Drops every row and sizes the columns for the given number of rows.
+     * @param capacity int
+     */
+    void reset(int capacity) {
+        taskIds = new int[capacity];
+        types = new byte[capacity];
+        durations = new short[capacity];
+        descriptionOffsets = new int[capacity];
+        descriptionLengths = new int[capacity];
+        completed.clear();
+        descriptionBytes = new byte[0];
+        descriptionSize = 0;
+        unusedDescriptionBytes = 0;
+    }
+
+    /**
+     * Fills a row. A null description is kept as an empty one.
+     * @throws IllegalArgumentException if the type is not A, S or L, or the duration is not 1-100.
+     */
+    void setRow(int row, int taskId, String description, char taskType, int duration, boolean isCompleted) {
+        byte[] bytes = utf8(description);
+        setRow(row, taskId, bytes, 0, bytes.length, taskType, duration, isCompleted);
+    }
+
+    /**
+     * Fills a row, copying the description straight from UTF-8 bytes.
+     * @throws IllegalArgumentException if the type is not A, S or L, or the duration is not 1-100.
+     */
+    void setRow(int row, int taskId, byte[] description, int offset, int length,
+                char taskType, int duration, boolean isCompleted) {
+        checkValues(taskType, duration);
+        taskIds[row] = taskId;
+        types[row] = (byte) taskType;
+        durations[row] = (short) duration;
+        completed.set(row, isCompleted);
+        storeDescription(row, description, offset, length);
+    }
+
+    /**
+     * Empties a row, leaving its description bytes unused.
+     * @param row int
+     */
+    void clearRow(int row) {
+        completed.clear(row);
+        unusedDescriptionBytes += descriptionLengths[row];
+        descriptionOffsets[row] = 0;
+        descriptionLengths[row] = 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // Columns
+    // -------------------------------------------------------------------------
+
+    public int getTaskId(int row) {
+        return taskIds[row];
+    }
+
+    void setTaskId(int row, int taskId) {
+        taskIds[row] = taskId;
+    }
+
+    public char getTaskType(int row) {
+        return (char) types[row];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the type is not A, S or L.
+     */
+    void setTaskType(int row, char taskType) {
+        checkValues(taskType, durations[row]);
+        types[row] = (byte) taskType;
+    }
+
+    public int getTaskDuration(int row) {
+        return durations[row];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the duration is not 1-100.
+     */
+    void setTaskDuration(int row, int duration) {
+        checkValues((char) types[row], duration);
+        durations[row] = (short) duration;
+    }
+
+    public boolean isCompleted(int row) {
+        return completed.get(row);
+    }
+
+    void setCompleted(int row, boolean isCompleted) {
+        completed.set(row, isCompleted);
+    }
+
+    public String getDescription(int row) {
+        return new String(descriptionBytes, descriptionOffsets[row], descriptionLengths[row], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replaces a row's description. The new text is added after the others and
+     * the old bytes are left unused. A null description is kept as an empty one.
+     */
+    void setDescription(int row, String description) {
+        byte[] bytes = utf8(description);
+        unusedDescriptionBytes += descriptionLengths[row];
+        descriptionLengths[row] = 0;
+        storeDescription(row, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Gets the length of a row's description in UTF-8.
+     * @param row int
+     * @return length in bytes
+     */
+    public int getDescriptionLength(int row) {
+        return descriptionLengths[row];
+    }
+
+    /**
+     * Copies a row's description as UTF-8, without creating a String.
+     *
+     * @param row int
+     * @param dest Array with room for getDescriptionLength(row) bytes at destPos.
+     * @param destPos Where to copy to.
+     */
+    public void copyDescription(int row, byte[] dest, int destPos) {
+        System.arraycopy(descriptionBytes, descriptionOffsets[row], dest, destPos, descriptionLengths[row]);
+    }
+
+    /**
+     * Puts a row's description as UTF-8 into a buffer, without creating a String.
+     *
+     * @param row int
+     * @param dest Buffer with room for getDescriptionLength(row) bytes.
+     */
+    public void putDescription(int row, ByteBuffer dest) {
+        dest.put(descriptionBytes, descriptionOffsets[row], descriptionLengths[row]);
+    }
+
+    // -------------------------------------------------------------------------
+    // Completion
+    // -------------------------------------------------------------------------
+
+    /**
+     * Finds the first completed row at or after the given one, visiting only the completed rows.
+     * @param fromRow int
+     * @return row as int, or -1 if no later row is completed
+     */
+    public int nextCompletedRow(int fromRow) {
+        return completed.nextSetBit(Math.max(fromRow, 0));
+    }
+
+    /**
+     * Gets the number of completed rows.
+     * @return count as int
+     */
+    public int getCompletedCount() {
+        return completed.cardinality();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds a row's description after the others. When there is no room left, the
+     * unused bytes are dropped first, and the storage only grows if that is not enough.
+     */
+    private void storeDescription(int row, byte[] bytes, int offset, int length) {
+        if (length > descriptionBytes.length - descriptionSize) {
+            if (unusedDescriptionBytes > 0) {
+                compactDescriptions();
+            }
+            if (length > descriptionBytes.length - descriptionSize) {
+                long needed = (long) descriptionSize + length;
+                long grown = Math.max(needed, Math.max(MIN_DESCRIPTION_CAPACITY, descriptionBytes.length * 2L));
+                if (needed > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Descriptions too long for project " + project.getProjectId());
+                }
+                descriptionBytes = Arrays.copyOf(descriptionBytes, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+            }
+        }
+        System.arraycopy(bytes, offset, descriptionBytes, descriptionSize, length);
+        descriptionOffsets[row] = descriptionSize;
+        descriptionLengths[row] = length;
+        descriptionSize += length;
+    }
+
+    /**
+     * Moves every row's description to the front of the storage, in row order,
+     * dropping the unused bytes between them.
+     */
+    private void compactDescriptions() {
+        byte[] compacted = new byte[descriptionBytes.length];
+        int size = 0;
+        for (int row = 0; row < descriptionLengths.length; row++) {
+            int length = descriptionLengths[row];
+            if (length > 0) {
+                System.arraycopy(descriptionBytes, descriptionOffsets[row], compacted, size, length);
+                descriptionOffsets[row] = size;
+                size += length;
+            }
+        }
+        descriptionBytes = compacted;
+        descriptionSize = size;
+        unusedDescriptionBytes = 0;
+    }
+
+    private static byte[] utf8(String text) {
+        return (text != null) ? text.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    /**
+     * Checks that a task's type and duration fit the columns.
+     * @throws IllegalArgumentException if the type is not A, S or L, or the duration is not 1-100.
+     */
+    static void checkValues(char taskType, int duration) {
+        if (taskType != 'A' && taskType != 'S' && taskType != 'L') {
+            throw new IllegalArgumentException("Invalid task type: " + taskType);
+        }
+        if (duration < 1 || duration > DurationStats.MAX_DURATION) {
+            throw new IllegalArgumentException("Invalid task duration: " + duration);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * TaskTypeIndex class keeps the tasks of each task type (A = Admin, S = Support,
+ * L = Logistics) together, so filtering by type only touches matching tasks.
+ * Each task knows its project, so an entry gives both the project and the task.
+ *
+ * Tasks are kept as bits at their ordinal (see CompletionIndex), so the tasks of
+ * a type can also be read a batch at a time, starting after the last ordinal read.
+ */
+import java.util.AbstractCollection;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+public class TaskTypeIndex {
+
+    // Task type -> ordinals of the tasks of that type
+    private final Map<Character, BitSet> ordinalsByType = new HashMap<>();
+
+    // Ordinal -> task
+    private final IntFunction<Task> tasksByOrdinal;
+
+    /**
+     * Creates an empty index.
+     * @param tasksByOrdinal Gets the task at an ordinal, e.g. CompletionIndex::getTask
+     */
+    public TaskTypeIndex(IntFunction<Task> tasksByOrdinal) {
+        this.tasksByOrdinal = tasksByOrdinal;
+    }
+
+    /**
+     * Adds a task under its current type.
+     * @param task Task, already given its ordinal
+     */
+    public void add(Task task) {
+        ordinalsByType.computeIfAbsent(task.getTaskType(), type -> new BitSet()).set(task.getOrdinal());
+    }
+
+    /**
+     * Removes a task from under its current type.
+     * @param task Task, still holding its ordinal
+     */
+    public void remove(Task task) {
+        remove(task, task.getTaskType());
+    }
+
+    /**
+     * Moves a task whose type has changed.
+     * @param task Task, already holding its new type
+     * @param oldType char the type the task was indexed under
+     */
+    public void typeChanged(Task task, char oldType) {
+        if (oldType != task.getTaskType()) {
+            remove(task, oldType);
+            add(task);
+        }
+    }
+
+    /**
+     * Gets every task of a type, in ordinal order.
+     * @param taskType char: A, S, or L
+     * @return read-only collection of Task, empty if there are none
+     */
+    public Collection<Task> get(char taskType) {
+        BitSet ordinals = ordinalsByType.get(taskType);
+        if (ordinals == null) {
+            ordinals = new BitSet();
+        }
+        BitSet bits = ordinals;
+        return new AbstractCollection<Task>() {
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<Task>() {
+                    private int next = bits.nextSetBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        Task task = tasksByOrdinal.apply(next);
+                        next = bits.nextSetBit(next + 1);
+                        return task;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return bits.cardinality();
+            }
+        };
+    }
+
+    /**
+     * Finds the first task of a type at or after an ordinal. Used with
+     * CompletionIndex.getTask to read the tasks of a type a batch at a time.
+     * @param taskType char: A, S, or L
+     * @param fromOrdinal int
+     * @return ordinal as int, or -1 if no later task has that type
+     */
+    public int nextOrdinal(char taskType, int fromOrdinal) {
+        BitSet ordinals = ordinalsByType.get(taskType);
+        return (ordinals == null) ? -1 : ordinals.nextSetBit(Math.max(fromOrdinal, 0));
+    }
+
+    /**
+     * Removes every task from the index.
+     */
+    public void clear() {
+        ordinalsByType.clear();
+    }
+
+    private void remove(Task task, char taskType) {
+        BitSet ordinals = ordinalsByType.get(taskType);
+        if (ordinals != null && task.getOrdinal() >= 0) {
+            ordinals.clear(task.getOrdinal());
+        }
+    }
+}
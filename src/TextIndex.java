@@ -0,0 +1,550 @@
+/**
+ * TextIndex class finds items (projects by name, tasks by description) from a
+ * piece of their text, ignoring case, without visiting every item.
+ *
+ * Each item is stored under an int key chosen by the caller (project ID, task
+ * ordinal). Its text is split into words at whitespace, and each distinct word is
+ * kept once in a dictionary with a posting list of the keys of the items that use it.
+ * - Prefix search walks a trie over the dictionary to the words starting with the query.
+ * - Substring search looks up the words holding every three-letter piece (trigram)
+ *   of the query, or checks the whole dictionary for queries under three letters.
+ * The dictionary is far smaller than the items, so both only touch the posting
+ * lists of words that can match.
+ *
+ * Removing an item, or changing its text, leaves its old postings in place; every
+ * candidate is checked against the item's current text, so stale postings are only
+ * skipped. Once they outnumber the live ones, the postings are rebuilt.
+ *
+ * Not thread-safe; ProjectStore updates it under the same lock as its other indexes.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class TextIndex<T> {
+
+    // Length of the pieces the substring index is built from
+    private static final int GRAM_LENGTH = 3;
+
+    // Gets the text an item is indexed under
+    private final Function<T, String> textOf;
+
+    // Key -> item, null for keys not in use
+    private Object[] items = new Object[16];
+    private int itemCount;
+
+    // Distinct lower case words with their postings, in an open-addressing table
+    // looked up straight from the item's text, and by position in the list
+    private Word[] wordTable = new Word[64];
+    private final List<Word> wordList = new ArrayList<>();
+
+    // Trie over the words, for prefix search
+    private TrieNode root = new TrieNode();
+
+    // Trigram, packed into a long -> positions in wordList of the words holding it
+    private final Map<Long, IntList> wordsByGram = new HashMap<>();
+
+    // Postings in the lists, and how many of them belong to removed or changed items
+    private long postingCount;
+    private long stalePostings;
+
+    /**
+     * Creates an empty index.
+     * @param textOf Gets the text an item is indexed under (may return null)
+     */
+    public TextIndex(Function<T, String> textOf) {
+        this.textOf = textOf;
+    }
+
+    // -------------------------------------------------------------------------
+    // Updating
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds an item under a key, indexing its current text.
+     * @param key int, 0 or more, not already in use
+     * @param item T
+     */
+    public void add(int key, T item) {
+        if (key >= items.length) {
+            items = Arrays.copyOf(items, Math.max(key + 1, items.length * 2));
+        }
+        items[key] = item;
+        itemCount++;
+        indexText(key, textOf.apply(item));
+    }
+
+    /**
+     * Removes the item under a key.
+     * @param key int
+     * @param text String the item was indexed under
+     */
+    public void remove(int key, String text) {
+        if (key < 0 || key >= items.length || items[key] == null) {
+            return;
+        }
+        items[key] = null;
+        itemCount--;
+        retire(text);
+    }
+
+    /**
+     * Re-indexes an item whose text has changed.
+     * @param key int the item is under
+     * @param oldText String the item was indexed under
+     */
+    public void textChanged(int key, String oldText) {
+        @SuppressWarnings("unchecked")
+        T item = (key >= 0 && key < items.length) ? (T) items[key] : null;
+        if (item == null) {
+            return;
+        }
+        retire(oldText);
+        indexText(key, textOf.apply(item));
+    }
+
+    /**
+     * Removes every item.
+     */
+    public void clear() {
+        Arrays.fill(items, null);
+        itemCount = 0;
+        clearPostings();
+    }
+
+    /**
+     * Gets the number of items in the index.
+     * @return count as int
+     */
+    public int size() {
+        return itemCount;
+    }
+
+    // -------------------------------------------------------------------------
+    // Searching
+    // -------------------------------------------------------------------------
+
+    /**
+     * Finds items with a word starting with the query, or for a query of several
+     * words, items whose text holds the query starting at the start of a word.
+     *
+     * @param query Text to look for, ignoring case.
+     * @param limit Most items to return.
+     * @param filter Only items it accepts are returned, or null for all.
+     * @return List of items, in the order they were indexed under each matching word.
+     */
+    public List<T> searchPrefix(String query, int limit, Predicate<T> filter) {
+        String[] pieces = pieces(query);
+        if (pieces.length == 0) {
+            return new ArrayList<>();
+        }
+        return collect(prefixWords(pieces[0]), query.trim(), true, limit, filter);
+    }
+
+    /**
+     * Finds items whose text holds the query anywhere.
+     *
+     * @param query Text to look for, ignoring case.
+     * @param limit Most items to return.
+     * @param filter Only items it accepts are returned, or null for all.
+     * @return List of items, in the order they were indexed under each matching word.
+     */
+    public List<T> searchSubstring(String query, int limit, Predicate<T> filter) {
+        String[] pieces = pieces(query);
+        if (pieces.length == 0) {
+            return new ArrayList<>();
+        }
+        // Every piece lies inside one word of a match, and the longest finds the fewest words
+        String longest = pieces[0];
+        for (String piece : pieces) {
+            if (piece.length() > longest.length()) longest = piece;
+        }
+        return collect(wordsContaining(longest), query.trim(), false, limit, filter);
+    }
+
+    /**
+     * Gets the number of postings a prefix search would check, as a cost estimate
+     * for QueryPlanner. Includes postings of removed items not yet rebuilt away.
+     * @param query String
+     * @return count as long
+     */
+    public long countPrefixCandidates(String query) {
+        String[] pieces = pieces(query);
+        if (pieces.length == 0) {
+            return 0;
+        }
+        long count = 0;
+        for (Word word : prefixWords(pieces[0])) {
+            count += word.postings.size;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if a text holds a query, ignoring case.
+     *
+     * @param text String, may be null
+     * @param query String
+     * @param wordStart true to only accept the query at the start of a word
+     * @return true if the text holds the query, false otherwise
+     */
+    static boolean containsIgnoreCase(String text, String query, boolean wordStart) {
+        if (text == null) {
+            return false;
+        }
+        int last = text.length() - query.length();
+        for (int i = 0; i <= last; i++) {
+            if (wordStart && i > 0 && !Character.isWhitespace(text.charAt(i - 1))) continue;
+            if (text.regionMatches(true, i, query, 0, query.length())) return true;
+        }
+        return false;
+    }
+
+    // -------------------------------------------------------------------------
+    // Index Helpers
+    // -------------------------------------------------------------------------
+
+    /**
+     * Posts a key under each word of a text. Words already in the dictionary are
+     * found without copying them out of the text.
+     */
+    private void indexText(int key, String text) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            int hash = 0;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+                i++;
+            }
+
+            Word word = findWord(text, start, i, hash);
+            if (word.lastKey == key) {
+                // Already posted for this item, the word appears twice in its text
+                continue;
+            }
+            word.postings.add(key);
+            word.lastKey = key;
+            postingCount++;
+        }
+    }
+
+    /**
+     * Counts an item's old postings as stale, rebuilding once they outnumber the live ones.
+     */
+    private void retire(String text) {
+        stalePostings += pieces(text).length;
+        if (stalePostings > postingCount - stalePostings) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the dictionary and postings from the items' current text.
+     */
+    @SuppressWarnings("unchecked")
+    private void rebuild() {
+        clearPostings();
+        for (int key = 0; key < items.length; key++) {
+            if (items[key] != null) {
+                indexText(key, textOf.apply((T) items[key]));
+            }
+        }
+    }
+
+    private void clearPostings() {
+        wordTable = new Word[64];
+        wordList.clear();
+        root = new TrieNode();
+        wordsByGram.clear();
+        postingCount = 0;
+        stalePostings = 0;
+    }
+
+    /**
+     * Finds the word text[start, end) in the dictionary, ignoring case, adding it if it is new.
+     */
+    private Word findWord(String text, int start, int end, int hash) {
+        int mask = wordTable.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            Word word = wordTable[slot];
+            if (word == null) {
+                word = newWord(lowerCase(text.substring(start, end)), hash);
+                wordTable[slot] = word;
+                if (wordList.size() * 2 > wordTable.length) {
+                    growWordTable();
+                }
+                return word;
+            }
+            if (word.hash == hash && word.matches(text, start, end)) {
+                return word;
+            }
+        }
+    }
+
+    private void growWordTable() {
+        wordTable = new Word[wordTable.length * 2];
+        int mask = wordTable.length - 1;
+        for (Word word : wordList) {
+            int slot = spread(word.hash) & mask;
+            while (wordTable[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            wordTable[slot] = word;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private Word newWord(String text, int hash) {
+        Word word = new Word(text, hash);
+        int position = wordList.size();
+        wordList.add(word);
+
+        TrieNode node = root;
+        for (int i = 0; i < text.length(); i++) {
+            node = node.childFor(text.charAt(i));
+        }
+        node.word = word;
+
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            IntList list = wordsByGram.computeIfAbsent(gram(text, i), g -> new IntList());
+            // A word repeating a trigram is listed under it once
+            if (list.size == 0 || list.values[list.size - 1] != position) {
+                list.add(position);
+            }
+        }
+        return word;
+    }
+
+    /**
+     * Gets the words starting with a piece, by walking the trie.
+     */
+    private List<Word> prefixWords(String piece) {
+        List<Word> found = new ArrayList<>();
+        TrieNode node = root;
+        for (int i = 0; i < piece.length() && node != null; i++) {
+            node = node.child(piece.charAt(i));
+        }
+        if (node != null) {
+            node.collect(found);
+        }
+        return found;
+    }
+
+    /**
+     * Gets the words holding a piece, through the trigram lists when it is long enough.
+     */
+    private List<Word> wordsContaining(String piece) {
+        List<Word> found = new ArrayList<>();
+        if (piece.length() < GRAM_LENGTH) {
+            for (Word word : wordList) {
+                if (word.text.contains(piece)) found.add(word);
+            }
+            return found;
+        }
+
+        // Check the words of the rarest trigram
+        IntList shortest = null;
+        for (int i = 0; i + GRAM_LENGTH <= piece.length(); i++) {
+            IntList list = wordsByGram.get(gram(piece, i));
+            if (list == null) {
+                return found;
+            }
+            if (shortest == null || list.size < shortest.size) {
+                shortest = list;
+            }
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            Word word = wordList.get(shortest.values[i]);
+            if (word.text.contains(piece)) found.add(word);
+        }
+        return found;
+    }
+
+    /**
+     * Walks the postings of the candidate words, returning the items whose current
+     * text still holds the query, and stops as soon as there are enough.
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> collect(List<Word> candidates, String query, boolean wordStart, int limit, Predicate<T> filter) {
+        List<T> found = new ArrayList<>();
+        if (candidates.isEmpty() || limit <= 0) {
+            return found;
+        }
+
+        // An item can be posted under several candidate words, or twice after a change
+        BitSet seen = (candidates.size() > 1 || stalePostings > 0) ? new BitSet() : null;
+        for (Word word : candidates) {
+            int[] keys = word.postings.values;
+            for (int i = 0; i < word.postings.size; i++) {
+                int key = keys[i];
+                if (seen != null) {
+                    if (seen.get(key)) continue;
+                    seen.set(key);
+                }
+                T item = (T) items[key];
+                if (item != null && containsIgnoreCase(textOf.apply(item), query, wordStart)
+                        && (filter == null || filter.test(item))) {
+                    found.add(item);
+                    if (found.size() == limit) return found;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Splits text into lower case words at whitespace, as indexText does.
+     */
+    private static String[] pieces(String text) {
+        List<String> pieces = new ArrayList<>();
+        int length = (text == null) ? 0 : text.length();
+        int i = 0;
+        while (i < length) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            pieces.add(lowerCase(text.substring(start, i)));
+        }
+        return pieces.toArray(new String[0]);
+    }
+
+    /**
+     * Lower-cases one char at a time, so indexed words and queries fold the same way
+     * as String.regionMatches(true, ...) in every locale.
+     */
+    private static String lowerCase(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.toLowerCase(c) != c) {
+                char[] chars = s.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    chars[j] = Character.toLowerCase(chars[j]);
+                }
+                return new String(chars);
+            }
+        }
+        return s;
+    }
+
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    // -------------------------------------------------------------------------
+    // Structures
+    // -------------------------------------------------------------------------
+
+    /**
+     * One distinct word and the keys of the items using it.
+     */
+    private static final class Word {
+        final String text;
+        final int hash;
+        final IntList postings = new IntList();
+
+        // Key most recently posted, so a word used twice in one text is posted once
+        int lastKey = -1;
+
+        Word(String text, int hash) {
+            this.text = text;
+            this.hash = hash;
+        }
+
+        /**
+         * Checks if this word is text[start, end), ignoring case.
+         */
+        boolean matches(String other, int start, int end) {
+            if (end - start != text.length()) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (Character.toLowerCase(other.charAt(i)) != text.charAt(i - start)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * One trie node. Children are kept in arrays sorted by char.
+     */
+    private static final class TrieNode {
+        char[] chars = new char[0];
+        TrieNode[] children = new TrieNode[0];
+        Word word;
+
+        TrieNode child(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            return (i >= 0) ? children[i] : null;
+        }
+
+        TrieNode childFor(char c) {
+            int i = Arrays.binarySearch(chars, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] newChars = new char[chars.length + 1];
+            TrieNode[] newChildren = new TrieNode[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(chars, at, newChars, at + 1, chars.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            TrieNode node = new TrieNode();
+            newChars[at] = c;
+            newChildren[at] = node;
+            chars = newChars;
+            children = newChildren;
+            return node;
+        }
+
+        /**
+         * Adds the words at and below this node, iteratively so long words cannot overflow the stack.
+         */
+        void collect(List<Word> found) {
+            List<TrieNode> stack = new ArrayList<>();
+            stack.add(this);
+            while (!stack.isEmpty()) {
+                TrieNode node = stack.remove(stack.size() - 1);
+                if (node.word != null) found.add(node.word);
+                for (TrieNode child : node.children) stack.add(child);
+            }
+        }
+    }
+
+    /**
+     * Growable int array.
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
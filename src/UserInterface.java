@@ -2,12 +2,23 @@
  * UserInterface class handles all user interactions for the Project Management System
  * Provides a menu-driven interface for managing projects and tasks
  */
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Random;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import javax.management.JMException;
 
 public class UserInterface {
     
@@ -15,8 +26,38 @@ public class UserInterface {
     // Instance Variables
     // -------------------------------------------------------------------------
     
-    private Project[] projects = new Project[10];
+    private final ProjectService service;
     private Scanner scannerInput;
+
+    // Where listings go, see reportSettings()
+    private int reportPageSize;
+    private Path reportFile;
+
+    // Most projects or tasks listed when searching by text
+    private static final int SEARCH_RESULT_LIMIT = 20;
+
+    // Most tasks copied from a project at a time for a listing that is not paged
+    private static final int REPORT_BATCH_SIZE = 1000;
+
+    // Hours per histogram bin, and the longest bar, in the project summary
+    private static final int DURATION_BIN_WIDTH = 10;
+    private static final int HISTOGRAM_BAR_WIDTH = 40;
+
+    /**
+     * Creates a console with its own, empty set of projects.
+     */
+    public UserInterface() {
+        this(new ProjectService(new ProjectStore()));
+    }
+
+    /**
+     * Creates a console that works on the projects behind the given service,
+     * which other clients (e.g. the HTTP API) may be using at the same time.
+     * @param service ProjectService
+     */
+    public UserInterface(ProjectService service) {
+        this.service = service;
+    }
     
     // -------------------------------------------------------------------------
     // Main Method - Entry Point
@@ -24,9 +65,184 @@ public class UserInterface {
 
     /**
      * Entry point for the program. Creates a UserInterface object and runs the program.
+     *
+     * Options:
+     * --task-limits SMALL,MEDIUM,LARGE  most tasks per project type (default 1,2,3)
+     * --task-limits unlimited           no task limit for any project type
+     * --batch [FILE]                    run commands from FILE, or stdin, without the menu (see BatchRunner)
+     * --http PORT                       also serve the projects as a JSON API on localhost (see ProjectHttpServer),
+     *                                   loading and saving only files in the working directory
+     * --journal FILE                    load FILE and its journal, and save every change to the journal (see ProjectJournal)
+     * --load-report FILE                list every line skipped by each load in FILE, not just the first few
      */
     public static void main(String[] args) {
-        new UserInterface().run();
+        boolean batch = false;
+        String batchFile = null;
+        int httpPort = -1;
+        String journalFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--task-limits") && i + 1 < args.length) {
+                TaskLimitPolicy policy = parseTaskLimits(args[++i]);
+                if (policy == null) {
+                    System.out.println("[ERROR] Invalid task limits: " + args[i] + ". Expected SMALL,MEDIUM,LARGE or unlimited.");
+                    return;
+                }
+                Project.setDefaultTaskLimitPolicy(policy);
+            } else if (args[i].equals("--batch")) {
+                batch = true;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                    batchFile = args[++i];
+                }
+            } else if (args[i].equals("--journal") && i + 1 < args.length) {
+                journalFile = args[++i];
+            } else if (args[i].equals("--load-report") && i + 1 < args.length) {
+                try {
+                    ProjectDataLoader.setDefaultReportFile(Paths.get(args[++i]));
+                } catch (InvalidPathException e) {
+                    System.out.println("[ERROR] Invalid load report file: " + args[i]);
+                    return;
+                }
+            } else if (args[i].equals("--http") && i + 1 < args.length) {
+                httpPort = parsePort(args[++i]);
+                if (httpPort < 0) {
+                    System.out.println("[ERROR] Invalid HTTP port: " + args[i]);
+                    return;
+                }
+            } else {
+                System.out.println("[ERROR] Unknown option: " + args[i]);
+                return;
+            }
+        }
+
+        try {
+            Metrics.registerMBean();
+        } catch (JMException e) {
+            System.out.println("[WARNING] Statistics are not available over JMX: " + e.getMessage());
+        }
+
+        ProjectService service = new ProjectService(new ProjectStore());
+        if (journalFile != null && !openJournal(service, journalFile)) {
+            return;
+        }
+
+        if (batch) {
+            runBatch(service, batchFile);
+        } else if (httpPort >= 0) {
+            runWithHttp(service, httpPort);
+        } else {
+            new UserInterface(service).run();
+        }
+        closeJournal(service);
+    }
+
+    /**
+     * Loads a data file and replays its journal, then journals every change to it.
+     * @return true if the journal is open, false if it could not be opened (an error is printed)
+     */
+    private static boolean openJournal(ProjectService service, String filename) {
+        try {
+            ProjectJournal journal = ProjectJournal.open(Paths.get(filename));
+            service.replaceAll(journal.recover());
+            service.setJournal(journal);
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("[ERROR] Failed to open journal for " + filename + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Closes the journal, if there is one. Every change was already synced when it was made.
+     */
+    private static void closeJournal(ProjectService service) {
+        ProjectJournal journal = service.getJournal();
+        if (journal == null) {
+            return;
+        }
+        try {
+            service.setJournal(null);
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("[ERROR] Failed to close journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the console and the HTTP API on the same projects, stopping the API
+     * when the console exits.
+     */
+    private static void runWithHttp(ProjectService service, int port) {
+        ProjectHttpServer server;
+        try {
+            server = new ProjectHttpServer(service, port);
+        } catch (IOException e) {
+            System.out.println("[ERROR] Failed to start HTTP API on port " + port + ": " + e.getMessage());
+            return;
+        }
+        server.start();
+        System.out.println("HTTP API listening on http://localhost:" + server.getPort() + "/");
+        try {
+            new UserInterface(service).run();
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Runs batch commands from a file, or from stdin if no file is given or it is "-".
+     * Exits with status 1 if the commands cannot be read or any command fails.
+     */
+    private static void runBatch(ProjectService service, String filename) {
+        BatchRunner runner = new BatchRunner(service, System.out);
+        boolean fromStdin = filename == null || filename.equals("-");
+        try (BufferedReader in = fromStdin
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            runner.run(in);
+        } catch (NoSuchFileException e) {
+            System.out.println("[ERROR] File not found: " + filename);
+            System.exit(1);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("[ERROR] Failed to read batch commands: " + e.getMessage());
+            System.exit(1);
+        }
+        if (runner.getFailedCount() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses the --http option.
+     * @return The port, or -1 if the value is not valid.
+     */
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value.trim());
+            return (port >= 0 && port <= 65535) ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses the --task-limits option.
+     * @return The policy, or null if the value is not valid.
+     */
+    private static TaskLimitPolicy parseTaskLimits(String value) {
+        if (value.equalsIgnoreCase("unlimited")) {
+            return TaskLimitPolicy.UNLIMITED;
+        }
+        String[] limits = value.split(",");
+        if (limits.length != 3) {
+            return null;
+        }
+        try {
+            return TaskLimitPolicy.of(Integer.parseInt(limits[0].trim()),
+                    Integer.parseInt(limits[1].trim()), Integer.parseInt(limits[2].trim()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 
     // -------------------------------------------------------------------------
@@ -34,14 +250,9 @@ public class UserInterface {
     // -------------------------------------------------------------------------
 
     /**
-     * Initialises projects and scanner, loads seed data, and handles user menu input.
+     * Initialises the scanner and handles user menu input.
      */
     public void run() {
-    for (int i = 0; i < projects.length; i++) {
-        projects[i] = null;
-    }
-
-
     scannerInput = new Scanner(System.in);
 
     int choice;
@@ -49,23 +260,37 @@ public class UserInterface {
         // Loop until user selects -1 to exit
         do {
             choice = displayMenu();
-            switch (choice) {
-                case 1: createProject(); break;
-                case 2: removeProject(); break;
-                case 3: addTask(); break;
-                case 4: markTaskAsCompleted(); break;
-                case 5: removeTask(); break;
-                case 6: displayProjectDetails(); break;
-                case 7: displayCompletedTasks(); break;
-                case 8: filterTasksByType(); break;
-                case 9: displayProjectSummary(); break;
-                case 10: loadFromFile(); break;
-                case 11: saveToFile(); break;
-                case -1: 
-                    System.out.println("Thank you for using Project Managment System. Goodbye!"); break;
-                default: 
-                    System.out.println("Invalid choice. Please try again.");
-                }
+            try {
+                switch (choice) {
+                    case 1: createProject(); break;
+                    case 2: removeProject(); break;
+                    case 3: addTask(); break;
+                    case 4: markTaskAsCompleted(); break;
+                    case 5: removeTask(); break;
+                    case 6: displayProjectDetails(); break;
+                    case 7: displayCompletedTasks(); break;
+                    case 8: filterTasksByType(); break;
+                    case 9: displayProjectSummary(); break;
+                    case 10: loadFromFile(); break;
+                    case 11: saveToFile(); break;
+                    case 12: saveSnapshot(); break;
+                    case 13: loadSnapshot(); break;
+                    case 14: convertDataFile(); break;
+                    case 15: displayStatistics(); break;
+                    case 16: reportSettings(); break;
+                    case 17: queryTasks(); break;
+                    case 18: searchByText(); break;
+                    case -1: 
+                        System.out.println("Thank you for using Project Managment System. Goodbye!"); break;
+                    default: 
+                        System.out.println("Invalid choice. Please try again.");
+                    }
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Another client (e.g. the HTTP API) changed the projects while this action ran
+                System.out.println("[ERROR] " + e.getMessage());
+            } catch (UncheckedIOException e) {
+                System.out.println("[ERROR] " + e.getMessage());
+            }
         } while (choice != -1);
     }
 
@@ -91,6 +316,13 @@ public class UserInterface {
         System.out.println("9. Display project summary");
         System.out.println("10. Load from file");
         System.out.println("11. Save to file");
+        System.out.println("12. Save snapshot (binary)");
+        System.out.println("13. Open snapshot (binary)");
+        System.out.println("14. Convert between text and snapshot");
+        System.out.println("15. Display statistics");
+        System.out.println("16. Report settings (paging, output file)");
+        System.out.println("17. Query tasks");
+        System.out.println("18. Search projects and tasks by text");
         System.out.println("-1 Exit");
         System.out.print("Enter your choice: ");
         
@@ -121,8 +353,8 @@ public class UserInterface {
 
 /**
  * Prompts the user to create a new project with a unique ID, name, and type.
- * Validates input and assigns the project to the next available project slot.
- * Allows a maximum of three projects in the system at any time.
+ * Validates input and adds the project to the project store.
+ * Allows as many projects as there are free project IDs (1-999).
  */
     private void createProject() {
         // Check if there's room for a new project
@@ -188,13 +420,8 @@ public class UserInterface {
         System.out.println("Project Type " + p.getProjectType());
 
         // ----------------- Assign Project -----------------
-        for (int i = 0; i < projects.length; i++) {
-            if (projects[i] == null) {
-                projects[i] = p;
-                System.out.println("\nProject successfully created!");
-                return;
-            }
-        }
+        service.createProject(p.getProjectId(), p.getProjectName(), p.getProjectType());
+        System.out.println("\nProject successfully created!");
     }
 
 
@@ -227,12 +454,9 @@ public class UserInterface {
             }
 
             // Try to find and remove the project
-            for (int i = 0; i < projects.length; i++) {
-                if (projects[i] != null && projects[i].getProjectId() == projectIdToRemove) {
-                    projects[i] = null;
-                    System.out.println("Project ID " + projectIdToRemove + " successfully removed.");
-                    return;
-                }
+            if (service.removeProject(projectIdToRemove)) {
+                System.out.println("Project ID " + projectIdToRemove + " successfully removed.");
+                return;
             }
 
             // Loop back if no matching project was found
@@ -269,7 +493,7 @@ public class UserInterface {
 
         // Display how many tasks this project can have
         System.out.println("Project Type: " + workProject.getProjectType());
-        displayTaskLimitByProjectType(workProject.getProjectType());
+        displayTaskLimit(workProject);
 
         // Check to see if there's room to add a task
         if (!projectHasRoomForTask(workProject)) {
@@ -278,11 +502,16 @@ public class UserInterface {
         }
 
         // Get intial task ID from user
-        int taskId = promptValidTaskId(scannerInput);
+        int maxTaskId = service.readProject(workProject.getProjectId(), Project::getMaxTaskId);
+        int taskId = promptValidTaskId(scannerInput, maxTaskId);
 
         // Check if the ID is already taken within the selected project
         if (isTaskIdTakenInProject(workProject, taskId)) {
             System.out.println("Task ID " + taskId + " already exists in this project. Generating a new unique ID...");
+            if (!hasAvailableTaskId(workProject)) {
+                System.out.println("[ERROR] No free task IDs left in this project (1-" + maxTaskId + " are all in use).");
+                return;
+            }
             taskId = generateUniqueTaskId(workProject);
             System.out.println("Assigned new unique Task ID: " + taskId);
         }
@@ -353,25 +582,10 @@ public class UserInterface {
 
 
         // Create and assign task
-        Task newTask = new Task();
-        newTask.setTaskId(taskId);
-        newTask.setDescription(description);
-        newTask.setTaskType(taskType);
-        newTask.setTaskDuration(duration);
-        newTask.setCompleted(false);
-
-        boolean taskAdded = false;
-
-        for (int i =0; i < workProject.getTasks().length; i++) {
-            if (workProject.getTasks()[i] == null) {
-                workProject.getTasks()[i] = newTask;
-                taskAdded = true;
-                System.out.println("\nTask successfully added to project.");
-                break;
-            }
-        }
-
-        if (!taskAdded) {
+        try {
+            service.addTask(workProject.getProjectId(), taskId, description, taskType, duration, false);
+            System.out.println("\nTask successfully added to project.");
+        } catch (IllegalStateException e) {
             System.out.println("\nError: No available task slots in this project.");
         }
     }
@@ -414,11 +628,10 @@ public class UserInterface {
             return;
         }
 
-        if (selectedTask.isCompleted()) {
-            System.out.println("Task is already marked as completed.");
-        } else {
-            selectedTask.setCompleted(true);
+        if (service.completeTask(workProject.getProjectId(), selectedTask.getTaskId())) {
             System.out.println("Task marked as completed.");
+        } else {
+            System.out.println("Task is already marked as completed.");
         }
 
     }
@@ -452,13 +665,7 @@ public class UserInterface {
         // Display tasks in the project
         displayTasksForProject(workProject);
 
-        boolean hasTasks = false;
-        for (Task t :  workProject.getTasks()) {
-            if (t != null) {
-                hasTasks = true;
-                break;
-            }
-        }
+        boolean hasTasks = service.readProject(workProject.getProjectId(), p -> p.getTaskCount() > 0);
 
         if (!hasTasks) {
             System.out.println("There are no tasks to remove in this project.");
@@ -472,14 +679,10 @@ public class UserInterface {
             return;
         }
 
-        // Remove the task by finding and nulling its slot
-        Task[] tasks = workProject.getTasks();
-        for (int i = 0; i < tasks.length; i++) {
-            if (tasks[i] != null && tasks[i].getTaskId() == taskToRemove.getTaskId()) {
-                tasks[i] = null;
-                System.out.println("Task ID " + taskToRemove.getTaskId() + " successfully removed.");
-                return;
-            }
+        // Remove the task from its project
+        if (service.removeTask(workProject.getProjectId(), taskToRemove.getTaskId())) {
+            System.out.println("Task ID " + taskToRemove.getTaskId() + " successfully removed.");
+            return;
         }
 
         // Shouldn't reach here, but fallback just in case
@@ -494,6 +697,8 @@ public class UserInterface {
  * Displays all saved projects and their associated task details.
  * If no projects are saved, a message is shown instead.
  * For each project, tasks are listed with ID, description, type, duration, and status.
+ * Written as a report, so it can be paged or sent to a file (see reportSettings).
+ * Tasks are read a page at a time and written once the project's lock is let go.
  */
     private void displayProjectDetails() {
         if (noProjectsExist()) {
@@ -501,16 +706,25 @@ public class UserInterface {
             return;
         }
 
-        for (Project p : projects) {
-            if (p != null) {
-                System.out.println("\n---------------------------------------------------");
-                System.out.println("Project ID: " + p.getProjectId());
-                System.out.println("Project Name: " + p.getProjectName());
-                System.out.println("Project Type: " + p.getProjectType());
-                displayTasksForProject(p);
+        ReportWriter report = openReport();
+        if (report == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            for (int projectId : savedProjectIds()) {
+                if (report.isStopped()) break;
+                try {
+                    printTasks(report, projectId, true);
+                } catch (IllegalArgumentException e) {
+                    // Removed by another client since the IDs were listed
+                }
             }
+            report.line("---------------------------------------------------").endLine();
+        } finally {
+            closeReport(report);
         }
-        System.out.println("---------------------------------------------------\n");
+        Metrics.record(Metrics.Operation.DISPLAY_PROJECTS, start);
     }
 // -------------------------------------------------------------------------
 // DISPLAY COMPLETED TASKS
@@ -520,6 +734,7 @@ public class UserInterface {
  * Displays only completed tasks for a specific project by projectId.
  * Prompts the user to select a project, then lists completed tasks.
  * If none are found, an appropriate message is shown.
+ * Also shows how many tasks are completed across all projects.
  */
     private void displayCompletedTasks() {
         if (noProjectsExist()) {
@@ -534,22 +749,35 @@ public class UserInterface {
             return;
         }
 
-        System.out.println("\nCompleted Tasks in Project: " + workProject.getProjectName());
-        boolean foundTask = false;
+        ReportWriter report = openReport();
+        if (report == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            report.endLine().text("Completed Tasks in Project: ").text(workProject.getProjectName()).endLine();
+
+            // Only the project's completed slots are visited
+            long found = writeTaskBatches(report, workProject.getProjectId(), Project::nextCompletedTaskSlot, null,
+                (batch, t) -> report.text("* Task ID: ").number(t.getTaskId())
+                    .text(", Description: ").text(t.getDescription())
+                    .text(", Type: ").text(t.getTaskType())
+                    .text(", Duration: ").number(t.getTaskDuration()).text('h').endLine());
 
-        for (Task t : workProject.getTasks()) {
-            if (t != null && t.isCompleted()) {
-                System.out.println("* Task ID: " + t.getTaskId()
-                    + ", Description: " + t.getDescription()
-                    + ", Type: " + t.getTaskType()
-                    + ", Duration: " + t.getTaskDuration() + "h");
-                foundTask = true;
+            if (found == 0) {
+                report.line("No completed tasks found in this project.");
             }
-        }
 
-        if (!foundTask) {
-            System.out.println("No completed tasks found in this project.");
+            long[] counts = service.readAllIndexed(projects -> {
+                CompletionIndex completion = projects.getCompletionIndex();
+                return new long[] {completion.getCompletedCount(), completion.getTaskCount()};
+            });
+            report.text("Completed tasks across all projects: ").number(counts[0])
+                .text(" of ").number(counts[1]).endLine();
+        } finally {
+            closeReport(report);
         }
+        Metrics.record(Metrics.Operation.DISPLAY_COMPLETED, start);
     }
 // -------------------------------------------------------------------------
 // FILTER TASKS BY TYPE
@@ -559,6 +787,8 @@ public class UserInterface {
  * Prompts the user to enter a task type (A, S, or L),
  * then displays all matching tasks from all projects.
  * If no tasks match, informs the user.
+ * Matching tasks are read from the store's type index a page at a time, so only
+ * tasks of that type are visited, and written once the locks are let go.
  */
     private void filterTasksByType() {
         if (noProjectsExist()) {
@@ -580,28 +810,41 @@ public class UserInterface {
             }
         } while (!validType);
 
-        boolean foundType = false;
-        System.out.println("\nMatching tasks:");
-
-        for (Project p : projects) {
-            if (p != null) {
-                for (Task t : p.getTasks()) {
-                    if (t != null && t.getTaskType() == type) {
-                        foundType = true;
-                        String status = t.isCompleted() ? "Completed" : "Incomplete";
-                        System.out.println("- Project: " + p.getProjectName() +
-                                        " | Task ID: " + t.getTaskId() +
-                                        " | Desc: " + t.getDescription() +
-                                        " | Duration: " + t.getTaskDuration() + "h" +
-                                        " | Status: " + status);
-                    }
+        final char filterType = type;
+        ReportWriter report = openReport();
+        if (report == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            report.endLine().line("Matching tasks:");
+
+            // Only tasks of the chosen type are visited, using the store's type index
+            long found = 0;
+            int batchSize = reportBatchSize(report);
+            ProjectService.TypeBatch batch = service.getTaskBatchByType(filterType, 0, batchSize);
+            while (true) {
+                List<Task> tasks = batch.getTasks();
+                for (int i = 0; i < tasks.size() && !report.isStopped(); i++) {
+                    Task t = tasks.get(i);
+                    report.text("- Project: ").text(batch.getProjectName(i))
+                        .text(" | Task ID: ").number(t.getTaskId())
+                        .text(" | Desc: ").text(t.getDescription())
+                        .text(" | Duration: ").number(t.getTaskDuration())
+                        .text("h | Status: ").text(t.isCompleted() ? "Completed" : "Incomplete").endLine();
+                    found++;
                 }
+                if (batch.getNextOrdinal() < 0 || report.isStopped()) break;
+                batch = service.getTaskBatchByType(filterType, batch.getNextOrdinal(), batchSize);
             }
-        }
 
-        if (!foundType) {
-            System.out.println("No tasks of type " + type + " were found.");
+            if (found == 0 && !report.isStopped()) {
+                report.text("No tasks of type ").text(type).text(" were found.").endLine();
+            }
+        } finally {
+            closeReport(report);
         }
+        Metrics.record(Metrics.Operation.FILTER_BY_TYPE, start);
     }
 // -------------------------------------------------------------------------
 // DISPLAY PROJECT SUMMARY
@@ -612,6 +855,7 @@ public class UserInterface {
  *
  * Report includes:
  * - Average duration of each task type (Admin, Support, Logistics) across all projects.
+ * - Median, 90th and 99th percentile durations and a duration histogram of each task type.
  * - A breakdown of task durations by individual project.
  */
     private void displayProjectSummary() {
@@ -620,151 +864,199 @@ public class UserInterface {
             return;
         }
 
-        // Display combined averages across all projects
-        displayAverageDurationsAcrossAllProjects(projects);
-
-        // Display task breakdowns per individual project
-        for (Project p : projects) {
-            if (p != null) {
-                displayTaskDurationBreakdown(p);
+        ReportWriter report = openReport();
+        if (report == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // The totals are copied, so no lock is held while they are written
+            DurationStats totals = service.getDurationStats();
+
+            // Display combined averages across all projects
+            displayAverageDurationsAcrossAllProjects(report, totals);
+
+            // Display medians, percentiles and histograms across all projects
+            displayDurationDistribution(report, totals);
+
+            // Display task breakdowns per individual project
+            for (int projectId : savedProjectIds()) {
+                if (report.isStopped()) break;
+                try {
+                    displayTaskDurationBreakdown(report, projectId, service.getDurationStats(projectId));
+                } catch (IllegalArgumentException e) {
+                    // Removed by another client since the IDs were listed
+                }
             }
+        } finally {
+            closeReport(report);
         }
+        Metrics.record(Metrics.Operation.PROJECT_SUMMARY, start);
     }
 // -------------------------------------------------------------------------
-// LOAD PROJECTS FROM FILE
+// QUERY TASKS
 // -------------------------------------------------------------------------
 
 /**
- * Loads projects and tasks from an external file (e.g., ProjectData.txt).
- * Accepts mixed, out-of-order, or malformed input with graceful error handling.
- *
- * Expected project line format: ID,Name,Type
- * Expected task line format: ID,Type,Duration,Completed
+ * Prompts for a task query (see TaskQuery.USAGE) and lists the matching tasks
+ * across all projects, with the fields, order and limit the query asks for.
+ * Also shows how the tasks were found and how many matched.
+ * Written as a report, so it can be paged or sent to a file (see reportSettings).
  */
-private void loadFromFile() {
-    // Load file
-    System.out.print("Enter filename to load from (e.g., ProjectData.txt): ");
-    String filename = scannerInput.nextLine().trim();
-
-    // Scanner to read file
-    try (Scanner fileScanner = new Scanner(new File(filename))) {
-        Project[] loadedProjects = new Project[10];
-        int projectIndex = -1;
-        Project currentProject = null;
-
-        while (fileScanner.hasNextLine()) {
-            // Read each line and trime whitespace
-            String line = fileScanner.nextLine().trim();
-            // Splits line into tokens at the commas
-            String[] tokens = line.split(",");
-
-            // Skip blank lines
-            if (tokens.length == 0 || line.isEmpty()) continue;
-
-            try {
-                // Lines with only 3 tokens are Projects
-                if (tokens.length == 3) {
-                    // Checks the projectID is valid
-                    int projectId = Integer.parseInt(tokens[0].trim());
-                    if (projectId < 1 || projectId > 999) {
-                        System.out.println("[WARNING] Invalid project ID: " + projectId + ". Skipping line: " + line);
-                        continue;
-                    }
-
-
-                    String name = tokens[1].trim();
-                    String type = tokens[2].trim();
-
-                    // Limits to 10 projects
-                    if (++projectIndex >= 10) {
-                        System.out.println("[WARNING] Max project limit reached. Skipping extra project: " + line);
-                    }
-
-                    // Validate project type
-                    if (!type.equals("Small") && !type.equals("Medium") && !type.equals("Large")) {
-                        System.out.println("[WARNING] Invalid project type: " + type + ". Skipping line: " + line);
-                        continue;
-                    }
+    private void queryTasks() {
+        if (noProjectsExist()) {
+            System.out.println("\nThere are no saved projects to query.");
+            return;
+        }
 
+        System.out.println("\nQuery terms, separated by spaces:");
+        System.out.println(TaskQuery.USAGE);
+        System.out.print("Enter query (blank to cancel): ");
+        String input = scannerInput.nextLine().trim();
+        if (input.isEmpty()) {
+            System.out.println("Returning to main menu...");
+            return;
+        }
 
-                    currentProject = new Project();
-                    currentProject.setProjectId(projectId);
-                    currentProject.setProjectName(name);
-                    currentProject.setProjectType(type);
-                    loadedProjects[projectIndex] = currentProject;
+        TaskQuery query;
+        TaskQuery.Result result;
+        try {
+            query = TaskQuery.parse(input);
+            result = service.query(query);
+        } catch (IllegalArgumentException e) {
+            System.out.println("[ERROR] " + e.getMessage());
+            return;
+        }
 
+        ReportWriter report = openReport();
+        if (report == null) {
+            return;
+        }
+        try {
+            report.endLine().text("Plan: ").text(result.getPlan()).endLine();
+            for (TaskQuery.Match match : result.getMatches()) {
+                if (report.isStopped()) break;
+                report.text("- ");
+                for (int i = 0; i < query.getFields().size(); i++) {
+                    TaskQuery.Field field = query.getFields().get(i);
+                    if (i > 0) report.text(" | ");
+                    report.text(field.getName()).text(": ");
+                    writeField(report, field, match);
+                }
+                report.endLine();
+            }
 
-                    // If there are 5 tokens, it's a task, and it belongs to the most recent project above.
-                } else if (tokens.length == 5 && currentProject != null) {
-                    // Task line: ID, Description, Type, Duration, Completed
-                    if (!projectHasRoomForTask(currentProject)) {
-                        System.out.println("[WARNING] Project ID " + currentProject.getProjectId() + " full. Skipping task: " + line);
-                        continue;
-                    }
+            if (!result.isComplete()) {
+                report.text("Showing the first ").number(result.getMatches().size())
+                    .text(" matching tasks (add a sort to count every match).").endLine();
+            } else if (query.isCountOnly() || result.getMatches().size() == result.getMatchCount()) {
+                report.text("Matching tasks: ").number(result.getMatchCount()).endLine();
+            } else {
+                report.text("Showing ").number(result.getMatches().size())
+                    .text(" of ").number(result.getMatchCount()).text(" matching tasks.").endLine();
+            }
+        } finally {
+            closeReport(report);
+        }
+    }
 
-                    int taskId = Integer.parseInt(tokens[0].trim());
-                    String description = tokens[1].trim();
-                    char taskType = tokens[2].trim().toUpperCase().charAt(0);
-                    int duration = Integer.parseInt(tokens[3].trim());
-                    boolean completed = Boolean.parseBoolean(tokens[4].trim().toLowerCase());
-                    
-                    // Checks for empty description
-                    if (description.isEmpty()) {
-                        System.out.println("[WARNING] Task description is empty: Skipping line: " +line);
-                        continue;
-                    }
+    /**
+     * Writes one field of a query match, numbers as digits, without boxing or formatting it.
+     */
+    private static void writeField(ReportWriter report, TaskQuery.Field field, TaskQuery.Match match) {
+        Task t = match.getTask();
+        switch (field) {
+            case PROJECT_ID: report.number(match.getProjectId()); break;
+            case PROJECT_NAME: report.text(match.getProjectName()); break;
+            case PROJECT_TYPE: report.text(match.getProjectType()); break;
+            case TASK_ID: report.number(t.getTaskId()); break;
+            case DESCRIPTION: report.text(t.getDescription()); break;
+            case TYPE: report.text(t.getTaskType()); break;
+            case DURATION: report.number(t.getTaskDuration()); break;
+            default: report.text(t.isCompleted() ? "true" : "false");
+        }
+    }
+// -------------------------------------------------------------------------
+// SEARCH BY TEXT
+// -------------------------------------------------------------------------
 
-                    // Checks for valid task type
-                    if (taskType != 'A' && taskType != 'S' && taskType != 'L') {
-                        System.out.println("[WARNING] Invalid task type: " + taskType + ". Skipping: " + line);
-                        continue;
-                    }
+/**
+ * Prompts for some text and lists the projects whose names, and the tasks whose
+ * descriptions, hold it (matching the start of a word first, then anywhere).
+ * Written as a report, so it can be paged or sent to a file (see reportSettings).
+ */
+    private void searchByText() {
+        if (noProjectsExist()) {
+            System.out.println("\nThere are no saved projects to search.");
+            return;
+        }
 
-                    // Checks for valid duration
-                    if (duration <= 0 || duration > 100) {
-                        System.out.println("[WARNING] Invalid task duration : " + duration + ". Skipping: " + line);
-                        continue;
-                    }
+        System.out.print("\nEnter text to search for (blank to cancel): ");
+        String text = scannerInput.nextLine().trim();
+        if (text.isEmpty()) {
+            System.out.println("Returning to main menu...");
+            return;
+        }
 
-                    // Checks for completed boolean
-                    if (!projectHasRoomForTask(currentProject)) {
-                        System.out.println("[WARNING] Project ID " + currentProject.getProjectId() + " full. Skipping task: " +line);
-                        continue;
-                    }
+        List<Project> projects = service.findProjects(text, SEARCH_RESULT_LIMIT);
+        List<TaskQuery.Match> tasks = service.findTasks(text, 0, SEARCH_RESULT_LIMIT);
 
-                    Task task = new Task();
-                    task.setTaskId(taskId);
-                    task.setDescription(description);
-                    task.setTaskType(taskType);
-                    task.setTaskDuration(duration);
-                    task.setCompleted(completed);
-
-                    for (int i = 0; i < currentProject.getTasks().length; i++) {
-                        if (currentProject.getTasks()[i] == null) {
-                            currentProject.getTasks()[i] = task;
-                            break;
-                        }
-                    }
+        ReportWriter report = openReport();
+        if (report == null) {
+            return;
+        }
+        try {
+            report.endLine().text("Projects matching \"").text(text).text("\": ").number(projects.size()).endLine();
+            for (Project p : projects) {
+                if (report.isStopped()) break;
+                report.text("- Project ID: ").number(p.getProjectId())
+                    .text(" | Name: ").text(p.getProjectName()).endLine();
+            }
 
-                } else {
-                    System.out.println("[WARNING] Malformed line or out-of-place task: " + line);
-                }
+            report.endLine().text("Tasks matching \"").text(text).text("\": ").number(tasks.size()).endLine();
+            for (TaskQuery.Match match : tasks) {
+                if (report.isStopped()) break;
+                report.text("- Project ID: ").number(match.getProjectId())
+                    .text(" | Task ID: ").number(match.getTask().getTaskId())
+                    .text(" | Description: ").text(match.getTask().getDescription()).endLine();
+            }
 
-            } catch (Exception e) {
-                System.out.println("[ERROR] Failed to parse line: " + line + " — " + e.getMessage());
+            if (projects.size() == SEARCH_RESULT_LIMIT || tasks.size() == SEARCH_RESULT_LIMIT) {
+                report.text("Showing at most ").number(SEARCH_RESULT_LIMIT)
+                    .text(" of each, enter more text to narrow the search.").endLine();
             }
+        } finally {
+            closeReport(report);
         }
+    }
+// -------------------------------------------------------------------------
+// LOAD PROJECTS FROM FILE
+// -------------------------------------------------------------------------
 
-        // Load parsed projects into main array
-        for (int i = 0; i < projects.length; i++) {
-            projects[i] = (i <= projectIndex) ? loadedProjects[i] : null;
-        }
+/**
+ * Loads projects and tasks from an external file (e.g., ProjectData.txt).
+ * Accepts mixed, out-of-order, or malformed input with graceful error handling.
+ * Parsing is done by ProjectDataLoader, which streams the file instead of using Scanner
+ * and parses large files in parallel.
+ *
+ * Expected project line format: ID,Name,Type
+ * Expected task line format: ID,Description,Type,Duration,Completed
+ */
+private void loadFromFile() {
+    // Load file
+    System.out.print("Enter filename to load from (e.g., ProjectData.txt): ");
+    String filename = scannerInput.nextLine().trim();
 
+    try {
+        // Replace the current projects with the parsed ones
+        service.replaceAll(new ProjectDataLoader().load(new File(filename)));
         System.out.println("Projects loaded successfully.");
 
     // Catch for no file found
     } catch (FileNotFoundException e) {
         System.out.println("[ERROR] File not found: " + filename);
+    } catch (IOException e) {
+        System.out.println("[ERROR] Failed to read file: " + e.getMessage());
     }
 }
 // -------------------------------------------------------------------------
@@ -779,53 +1071,216 @@ private void loadFromFile() {
  * - Followed by task lines: taskId,description,taskType,duration,completed
  *
  * This method:
- * - Iterates through all non-null projects
- * - Writes each project and its associated tasks to the file
+ * - Hands all stored projects to ProjectDataWriter
+ * - Which writes the whole file to a temporary file, copying the unchanged projects'
+ *   lines from the old file and formatting only the changed ones, then moves it over
+ *   the old file (every project is formatted if the file was not saved from here before,
+ *   and nothing is written if no project changed since the last save)
  * - Handles exceptions to ensure data integrity
  */
     private void saveToFile() {
         System.out.print("Enter filename to save to (e.g., ProjectData.txt): ");
         String filename = scannerInput.nextLine().trim();
 
-        try (PrintWriter writer = new PrintWriter(new File(filename))) {
-            for (Project p : projects) {
-                if (p != null) {
-                    // Write project line
-                    writer.println(p.getProjectId() + "," + p.getProjectName() + "," + p.getProjectType());
-
-                    // Write task lines
-                    for (Task t : p.getTasks()) {
-                        if (t != null) {
-                            writer.println(t.getTaskId() + "," +
-                                        t.getDescription() + "," +
-                                        t.getTaskType() + "," +
-                                        t.getTaskDuration() + "," +
-                                        t.isCompleted());
-                        }
-                    }
-                }
+        try {
+            if (service.isJournaled(Paths.get(filename))) {
+                // Every change was saved to the journal when it was made
+                System.out.println("Projects saved successfully. (" + service.getJournal().getChangeCount()
+                        + " change(s) in the journal since the last full save)");
+                return;
             }
+            service.writeAll(projects -> new ProjectDataWriter().saveChanges(projects, Paths.get(filename)));
             System.out.println("Projects saved successfully.");
-        } catch (IOException e) {
+        } catch (IOException | InvalidPathException e) {
             System.out.println("Error writing to file: " + e.getMessage());
         }
     }
 
+// -------------------------------------------------------------------------
+// SAVE SNAPSHOT
+// -------------------------------------------------------------------------
+
+/**
+ * Saves all current projects and tasks to a binary snapshot file.
+ * Snapshots load much faster than the text format, see ProjectSnapshot for the layout.
+ */
+    private void saveSnapshot() {
+        System.out.print("Enter snapshot filename to save to (e.g., ProjectData.bin): ");
+        String filename = scannerInput.nextLine().trim();
+
+        try {
+            service.writeAll(projects -> new ProjectSnapshot().save(projects, Paths.get(filename)));
+            System.out.println("Snapshot saved successfully.");
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("Error writing to file: " + e.getMessage());
+        }
+    }
+
+// -------------------------------------------------------------------------
+// LOAD SNAPSHOT
+// -------------------------------------------------------------------------
+
+/**
+ * Opens a binary snapshot file, replacing the current projects.
+ * The file is memory-mapped, so each project is only read when it is first used.
+ */
+    private void loadSnapshot() {
+        System.out.print("Enter snapshot filename to load from (e.g., ProjectData.bin): ");
+        String filename = scannerInput.nextLine().trim();
+
+        try {
+            service.replaceAll(ProjectStore.openSnapshot(Paths.get(filename)));
+            System.out.println("Snapshot loaded successfully.");
+        } catch (FileNotFoundException e) {
+            System.out.println("[ERROR] File not found: " + filename);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("[ERROR] " + e.getMessage());
+        }
+    }
+
+// -------------------------------------------------------------------------
+// CONVERT DATA FILE
+// -------------------------------------------------------------------------
+
+/**
+ * Converts a data file between the text format and the binary snapshot format.
+ * The direction is picked from the source file: snapshots become text, text becomes a snapshot.
+ * The projects currently in memory are not changed.
+ */
+    private void convertDataFile() {
+        System.out.print("Enter filename to convert from: ");
+        String source = scannerInput.nextLine().trim();
+        System.out.print("Enter filename to convert to: ");
+        String target = scannerInput.nextLine().trim();
+
+        try {
+            boolean toSnapshot = new ProjectSnapshot().convert(Paths.get(source), Paths.get(target));
+            System.out.println(toSnapshot ? "Text file converted to snapshot." : "Snapshot converted to text file.");
+        } catch (FileNotFoundException e) {
+            System.out.println("[ERROR] File not found: " + source);
+        } catch (IOException | InvalidPathException e) {
+            System.out.println("[ERROR] " + e.getMessage());
+        }
+    }
+
+// -------------------------------------------------------------------------
+// DISPLAY STATISTICS
+// -------------------------------------------------------------------------
+
+/**
+ * Displays how many times each operation has run since startup and how long it took,
+ * the read and write rates of data file operations, and how many lines of each kind
+ * the loader skipped. The same values are published over JMX, see Metrics.
+ */
+    private void displayStatistics() {
+        Metrics metrics = Metrics.global();
+
+        System.out.println("\nOperation                    Count    p50 (us)    p99 (us)    max (us)");
+        for (Metrics.Operation op : Metrics.Operation.values()) {
+            System.out.printf("%-24s %9d %11d %11d %11d%n", op.getLabel(), metrics.getCount(op),
+                    metrics.getPercentileMicros(op, 0.50), metrics.getPercentileMicros(op, 0.99),
+                    metrics.getMaxMicros(op));
+        }
+
+        System.out.println("\nData files                 Lines/s      MB/s");
+        for (Metrics.Operation op : Metrics.Operation.values()) {
+            if (op.isTransfer()) {
+                System.out.printf("%-24s %10.0f %9.1f%n", op.getLabel(),
+                        metrics.getLinesPerSecond(op), metrics.getBytesPerSecond(op) / (1024 * 1024));
+            }
+        }
+
+        System.out.println("\nLines skipped by the loader");
+        for (ProjectDataLoader.Issue issue : ProjectDataLoader.Issue.values()) {
+            System.out.printf("%-9s %-36s %9d%n", issue.getLevel(), issue.getLabel(), metrics.getIssueCount(issue));
+        }
+    }
+
+// -------------------------------------------------------------------------
+// REPORT SETTINGS
+// -------------------------------------------------------------------------
+
+/**
+ * Sets how listings (project details, completed tasks, tasks by type and the
+ * project summary) are shown: paged on the console every so many lines, or
+ * written to a file instead. By default they go to the console without paging.
+ * Listings copy one page of tasks at a time (1000 when not paged) under a short lock,
+ * so no lock is held while a page waits for Enter and other clients (e.g. the HTTP API)
+ * can keep changing projects; later pages show the projects as they are when reached.
+ */
+    private void reportSettings() {
+        System.out.print("Lines per page on the console, 0 for no paging (currently " + reportPageSize + "): ");
+        String input = scannerInput.nextLine().trim();
+        if (!input.isEmpty()) {
+            if (input.matches("\\d{1,9}")) {
+                reportPageSize = Integer.parseInt(input);
+            } else {
+                System.out.println("Invalid number. Page size not changed.");
+            }
+        }
+
+        System.out.print("Write listings to file, blank for the console (currently "
+                + (reportFile == null ? "the console" : reportFile.toString()) + "): ");
+        input = scannerInput.nextLine().trim();
+        try {
+            reportFile = input.isEmpty() ? null : Paths.get(input);
+        } catch (InvalidPathException e) {
+            System.out.println("[ERROR] Invalid file name: " + input);
+            return;
+        }
+        System.out.println("Report settings saved.");
+    }
+
+    /**
+     * Starts a listing on the console or in the report file.
+     * @return ReportWriter, or null if the report file cannot be created (an error is printed)
+     */
+    private ReportWriter openReport() {
+        if (reportFile == null) {
+            return ReportWriter.console(reportPageSize, this::askForNextPage);
+        }
+        try {
+            return ReportWriter.toFile(reportFile);
+        } catch (IOException e) {
+            System.out.println("[ERROR] Failed to create report file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finishes a listing, saying where it went if it was written to a file.
+     */
+    private void closeReport(ReportWriter report) {
+        report.finish();
+        if (reportFile != null) {
+            System.out.println("Report written to " + reportFile + " (" + report.getLineCount() + " lines).");
+        }
+    }
+
+    /**
+     * Asked at each page break of a console listing.
+     * @return true to show the next page, false to stop
+     */
+    private boolean askForNextPage() {
+        System.out.print("-- Press Enter for more, or q to stop -- ");
+        if (!scannerInput.hasNextLine()) {
+            return false;
+        }
+        return !scannerInput.nextLine().trim().equalsIgnoreCase("q");
+    }
+
 // -------------------------------------------------------------------------
 // HELPER METHOD 1: Check if No Projects Exist
 // -------------------------------------------------------------------------
 
 /**
- * Checks if all project slots in the array are currently empty.
+ * Checks if the project store is currently empty.
  * This is useful for preventing actions like displaying or removing projects when none exist.
  * 
- * @return true if all project slots are null (i.e. no projects exist), false otherwise.
+ * @return true if no projects exist, false otherwise.
  */
 private boolean noProjectsExist() {
-    for (Project p : projects) {
-        if (p != null) return false;
-    }
-    return true;
+    return service.readAll(ProjectStore::isEmpty);
 }
 
 
@@ -833,18 +1288,13 @@ private boolean noProjectsExist() {
 // HELPER METHOD 2: Check for Available Project Slot
 // -------------------------------------------------------------------------
 /**
- * Scans the projects array to determine if there is an empty slot available.
- * Used before allowing a new project to be created, since the system only allows up to three projects.
+ * Checks the project store to determine if another project can be created.
+ * Used before allowing a new project to be created, since every project needs a unique ID (1-999).
  *
- * @return true if at least one project slot is null (i.e. available), false otherwise.
+ * @return true if at least one project ID is still free, false otherwise.
  */
 private boolean hasAvailableProjectSlot() {
-    for (Project p : projects) {
-        if (p == null) {
-            return true;
-        }
-    }
-    return false;
+    return service.readAll(ProjectStore::hasAvailableId);
 }
     
 // -------------------------------------------------------------------------
@@ -901,10 +1351,11 @@ private int promptValidProjectId(Scanner scannerInput, boolean allowCancel) {
 
 /**
  * Prompts the user to enter a project ID for an existing project.
- * Accepts only numeric input and allows the user to enter -1 to cancel.
- * Ensures the input is not empty and is a valid integer.
+ * Allows the user to enter -1 to cancel, or part of a project's name instead
+ * of its ID: if exactly one project name matches, that project's ID is used,
+ * otherwise the matching projects are listed and the user is asked again.
  * 
- * Loops until a valid integer is entered.
+ * Loops until a valid integer is entered or found.
  * 
  * @param scannerInput The Scanner object used for reading user input.
  * @param promptLabel The custom prompt message to display to the user.
@@ -929,7 +1380,20 @@ private int promptExistingProjectId(Scanner scannerInput, String promptLabel) {
                 projectId = Integer.parseInt(input);
                 validInput = true;
             } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter a valid number (between 1-999).");
+                List<Project> matches = service.findProjects(input, SEARCH_RESULT_LIMIT);
+                if (matches.size() == 1) {
+                    projectId = matches.get(0).getProjectId();
+                    System.out.println("Selected project " + projectId + ": " + matches.get(0).getProjectName());
+                    validInput = true;
+                } else if (matches.isEmpty()) {
+                    System.out.println("No project name matches \"" + input
+                        + "\". Please enter a project ID (between 1-999) or part of a project name.");
+                } else {
+                    System.out.println("Several projects match \"" + input + "\", please enter one of their IDs:");
+                    for (Project p : matches) {
+                        System.out.println("- Project ID: " + p.getProjectId() + " | Name: " + p.getProjectName());
+                    }
+                }
             }
         }
     } while (!validInput);
@@ -943,40 +1407,44 @@ private int promptExistingProjectId(Scanner scannerInput, String promptLabel) {
 /**
  * Displays a list of all currently saved projects.
  * Useful for user reference before selecting a project by ID.
- * Skips over any null project slots.
  */
 private void displayExistingProjects() {
-    System.out.println("\nExisting Projects: ");
-    for (Project p : projects) {
-        if (p != null) {
-            System.out.println("- ID: " + p.getProjectId() + " | Name: " + p.getProjectName());
-        }
+    ReportWriter report = ReportWriter.console(0, null);
+    try {
+        report.endLine().line("Existing Projects: ");
+        service.readAll(projects -> {
+            for (int projectId : projects.getProjectIds()) {
+                report.text("- ID: ").number(projectId).text(" | Name: ")
+                    .text(projects.getProjectInfo(projectId).getProjectName()).endLine();
+            }
+            return null;
+        });
+    } finally {
+        report.finish();
     }
 }
 
 // -------------------------------------------------------------------------
-// HELPER METHOD 6: Display Task Limit for Project Type
+// HELPER METHOD 6: Display Task Limit for Project
 // -------------------------------------------------------------------------
 
 /**
- * Displays how many tasks are allowed based on the given project type.
+ * Displays how many tasks are allowed in the given project, from its type
+ * and the task limit policy in use.
  * Useful for informing the user before adding a new task.
  *
- * @param type The project type ("Small", "Medium", or "Large").
+ * @param project The project to describe.
  */
-private void displayTaskLimitByProjectType(String type) {
-    switch (type) {
-        case "Small":
-            System.out.println("This project allows only 1 task.");
-            break;
-        case "Medium":
-            System.out.println("This project allows up to 2 tasks.");
-            break;
-        case "Large":
-            System.out.println("This project allows up to 3 tasks.");
-            break;
-        default:
-            System.out.println("Unknown project type.");
+private void displayTaskLimit(Project project) {
+    int limit = project.getTaskLimit();
+    if (limit == Integer.MAX_VALUE) {
+        System.out.println("This project has no task limit.");
+    } else if (limit == 1) {
+        System.out.println("This project allows only 1 task.");
+    } else if (limit > 1) {
+        System.out.println("This project allows up to " + limit + " tasks.");
+    } else {
+        System.out.println("Unknown project type.");
     }
 }
 
@@ -992,25 +1460,7 @@ private void displayTaskLimitByProjectType(String type) {
  * @return true if the project has space for another task, false otherwise.
  */
 private boolean projectHasRoomForTask(Project project) {
-    int taskLimit = 0;
-    switch (project.getProjectType()) {
-        case "Small":
-            taskLimit = 1;
-            break;
-        case "Medium":
-            taskLimit = 2;
-            break;
-        case "Large":
-            taskLimit = 3;
-            break;
-    }
-
-    int currentTasks = 0;
-    for (Task t : project.getTasks()) {
-        if (t != null) currentTasks++;
-    }
-
-    return currentTasks < taskLimit;
+    return service.readProject(project.getProjectId(), Project::hasRoomForTask);
 }
 
 // -------------------------------------------------------------------------
@@ -1018,20 +1468,22 @@ private boolean projectHasRoomForTask(Project project) {
 // -------------------------------------------------------------------------
 
 /**
- * Prompts the user to enter a valid task ID between 1 and 9.
+ * Prompts the user to enter a valid task ID between 1 and the project's highest
+ * task ID (99, or the task limit if that is higher).
  * Ensures the input is an integer within range.
  * 
  * Loops until a valid ID is provided. Does not check for uniqueness.
  *
  * @param scannerInput The Scanner object used to read user input.
- * @return A validated integer task ID between 1 and 9.
+ * @param maxTaskId The highest task ID the project accepts.
+ * @return A validated integer task ID between 1 and maxTaskId.
  */
-private int promptValidTaskId(Scanner scannerInput) {
+private int promptValidTaskId(Scanner scannerInput, int maxTaskId) {
     int taskId = 0;
     boolean validInput = false;
 
     do {
-        System.out.print("\nEnter Task ID (1-99): ");
+        System.out.print("\nEnter Task ID (1-" + maxTaskId + "): ");
         if (scannerInput.hasNextLine()) {
             String input = scannerInput.nextLine().trim();
 
@@ -1042,13 +1494,13 @@ private int promptValidTaskId(Scanner scannerInput) {
 
             try {
                 taskId = Integer.parseInt(input);
-                if (taskId >= 1 && taskId <= 99) {
+                if (taskId >= 1 && taskId <= maxTaskId) {
                     validInput = true;
                 } else {
-                    System.out.println("Task ID must be between 1 and 99.");
+                    System.out.println("Task ID must be between 1 and " + maxTaskId + ".");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Invalid input. Please enter a number between 1 and 99.");
+                System.out.println("Invalid input. Please enter a number between 1 and " + maxTaskId + ".");
             }
         }
     } while (!validInput);
@@ -1077,10 +1529,10 @@ private Project selectProjectById(Scanner scannerInput, String promptLabel) {
             return null;  // user cancelled
         }
 
-        for (Project p : projects) {
-            if (p != null && p.getProjectId() == selectedId) {
-                return p;
-            }
+        try {
+            return service.readProject(selectedId, p -> p);
+        } catch (IllegalArgumentException e) {
+            // No project uses that ID
         }
 
         System.out.println("No project found with ID: " + selectedId + ". Please try again or enter -1 to cancel.");
@@ -1094,6 +1546,8 @@ private Project selectProjectById(Scanner scannerInput, String promptLabel) {
 /**
  * Prompts the user to enter a Task ID to select a task from the given project.
  * Validates that the task exists. Entering -1 cancels the operation.
+ * Part of a task's description may be entered instead of its ID, as for projects
+ * (see promptExistingProjectId).
  *
  * @param project The project containing the tasks.
  * @param scannerInput The Scanner object for user input.
@@ -1116,15 +1570,31 @@ private Task selectTaskById(Project project, Scanner scannerInput) {
                 return null; // User cancelled
             }
 
-            for (Task t : project.getTasks()) {
-                if (t != null && t.getTaskId() == taskId) {
-                    return t;
-                }
+            Task selected = service.getTask(project.getProjectId(), taskId);
+            if (selected != null) {
+                return selected;
             }
 
             System.out.println("No task found with ID: " + taskId + ". Please try again or enter -1 to cancel.");
         } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Please enter a number.");
+            List<TaskQuery.Match> matches = service.findTasks(input, project.getProjectId(), SEARCH_RESULT_LIMIT);
+            if (matches.size() == 1) {
+                Task found = matches.get(0).getTask();
+                Task selected = service.getTask(project.getProjectId(), found.getTaskId());
+                if (selected != null) {
+                    System.out.println("Selected task " + found.getTaskId() + ": " + found.getDescription());
+                    return selected;
+                }
+            } else if (matches.isEmpty()) {
+                System.out.println("No task description matches \"" + input
+                    + "\". Please enter a task ID or part of a task description.");
+            } else {
+                System.out.println("Several tasks match \"" + input + "\", please enter one of their IDs:");
+                for (TaskQuery.Match match : matches) {
+                    System.out.println("- Task ID: " + match.getTask().getTaskId()
+                        + " | Description: " + match.getTask().getDescription());
+                }
+            }
         }
     }
 }
@@ -1135,91 +1605,130 @@ private Task selectTaskById(Project project, Scanner scannerInput) {
 
 /**
  * Displays all tasks within a given project.
- * Skips over any null task slots.
  *
  * @param project The project whose tasks should be displayed.
  */
 private void displayTasksForProject(Project project) {
-    System.out.println("\nTasks in project: " + project.getProjectName());
-    boolean hasTasks = false;
-
-    for (Task t : project.getTasks()) {
-        if (t != null) {
-            hasTasks = true;
-            String status = t.isCompleted() ? "Completed" : "Incomplete";
-            System.out.println("- Task ID: " + t.getTaskId() +
-                               " | Desc: " + t.getDescription() +
-                               " | Type: " + t.getTaskType() +
-                               " | Duration: " + t.getTaskDuration() + "h" +
-                               " | Status: " + status);
+    ReportWriter report = ReportWriter.console(0, null);
+    try {
+        printTasks(report, project.getProjectId(), false);
+    } finally {
+        report.finish();
+    }
+}
+
+/**
+ * Writes all tasks within a given project to a report, a batch at a time.
+ * Skips over any empty task slots.
+ *
+ * @param report Where to write the tasks.
+ * @param projectId The project whose tasks should be printed.
+ * @param withDetails true to write the project's ID, name and type first.
+ * @throws IllegalArgumentException if the project does not exist.
+ */
+private void printTasks(ReportWriter report, int projectId, boolean withDetails) {
+    long written = writeTaskBatches(report, projectId, Project::nextTaskSlot, batch -> {
+        if (withDetails) {
+            report.endLine().line("---------------------------------------------------");
+            report.text("Project ID: ").number(projectId).endLine();
+            report.text("Project Name: ").text(batch.getProjectName()).endLine();
+            report.text("Project Type: ").text(batch.getProjectType()).endLine();
         }
+        report.endLine().text("Tasks in project: ").text(batch.getProjectName()).endLine();
+    }, (batch, t) -> report.text("- Task ID: ").number(t.getTaskId())
+        .text(" | Desc: ").text(t.getDescription())
+        .text(" | Type: ").text(t.getTaskType())
+        .text(" | Duration: ").number(t.getTaskDuration())
+        .text("h | Status: ").text(t.isCompleted() ? "Completed" : "Incomplete").endLine());
+
+    if (written == 0) {
+        report.line("This project has no tasks.");
+    }
+}
+
+/**
+ * Writes some of a project's tasks to a report, reading a batch of copies under the
+ * project's lock and writing it once the lock is let go, then reading the next batch.
+ * A batch holds one page of tasks when the report is paged, so no more is read than
+ * the reader may want to see, and nobody waits on the lock while a page is shown.
+ *
+ * @param report Where to write the tasks.
+ * @param projectId The project to read.
+ * @param slots Which of the project's task slots to write, e.g. Project::nextTaskSlot.
+ * @param header Writes the project's details from the first batch, or null for none.
+ * @param row Writes one task.
+ * @return Number of tasks written.
+ * @throws IllegalArgumentException if the project does not exist.
+ */
+private long writeTaskBatches(ReportWriter report, int projectId, ProjectService.TaskSlots slots,
+                              Consumer<ProjectService.TaskBatch> header,
+                              BiConsumer<ProjectService.TaskBatch, Task> row) {
+    int batchSize = reportBatchSize(report);
+    ProjectService.TaskBatch batch = service.getTaskBatch(projectId, slots, 0, batchSize);
+    if (header != null) {
+        header.accept(batch);
     }
 
-    if (!hasTasks) {
-        System.out.println("This project has no tasks.");
+    long written = 0;
+    while (true) {
+        for (Task t : batch.getTasks()) {
+            if (report.isStopped()) return written;
+            row.accept(batch, t);
+            written++;
+        }
+        if (batch.getNextSlot() < 0 || report.isStopped()) {
+            return written;
+        }
+        batch = service.getTaskBatch(projectId, slots, batch.getNextSlot(), batchSize);
     }
 }
 
+/**
+ * Gets how many tasks a listing copies at a time: one page when the report is
+ * paged, otherwise REPORT_BATCH_SIZE.
+ *
+ * @param report The report the tasks are written to.
+ * @return batch size as int
+ */
+private int reportBatchSize(ReportWriter report) {
+    return (report.getPageSize() > 0) ? report.getPageSize() : REPORT_BATCH_SIZE;
+}
+
 // -------------------------------------------------------------------------
 // HELPER METHOD 12: Display Average Durations Across All Projects
 // -------------------------------------------------------------------------
 
 /**
- * Calculates and displays the average duration for each task type (Admin, Support, Logistics)
+ * Displays the average duration for each task type (Admin, Support, Logistics)
  * across all saved projects.
+ * Uses the running totals kept by the project store, so no tasks are scanned.
  *
- * @param projects An array of all saved projects
+ * @param report Where to write the averages
+ * @param stats The duration totals across all saved projects
  */
-private void displayAverageDurationsAcrossAllProjects(Project[] projects) {
-    int totalAdmin = 0, countAdmin = 0;
-    int totalSupport = 0, countSupport = 0;
-    int totalLogistics = 0, countLogistics = 0;
-
-    // Loop through all projects and their tasks
-    for (Project p : projects) {
-        if (p != null) {
-            for (Task t : p.getTasks()) {
-                if (t != null) {
-                    switch (t.getTaskType()) {
-                        case 'A':
-                            totalAdmin += t.getTaskDuration();
-                            countAdmin++;
-                            break;
-                        case 'S':
-                            totalSupport += t.getTaskDuration();
-                            countSupport++;
-                            break;
-                        case 'L':
-                            totalLogistics += t.getTaskDuration();
-                            countLogistics++;
-                            break;
-                    }
-                }
-            }
-        }
-    }
+private void displayAverageDurationsAcrossAllProjects(ReportWriter report, DurationStats stats) {
 
-    System.out.println("\n------------------------ Average Task Duration ------------------\n");
+    report.endLine().line("------------------------ Average Task Duration ------------------").endLine();
 
     // Display average for Admin tasks
-    if (countAdmin > 0) {
-        System.out.println("* Average task duration of administrative tasks is " + (totalAdmin / countAdmin) + " hours\n");
+    if (stats.getCount('A') > 0) {
+        report.text("* Average task duration of administrative tasks is ").text(stats.formatAverage('A')).line(" hours").endLine();
     } else {
-        System.out.println("* No administrative tasks found.\n");
+        report.line("* No administrative tasks found.").endLine();
     }
 
     // Display average for Support tasks
-    if (countSupport > 0) {
-        System.out.println("* Average task duration of support tasks is " + (totalSupport / countSupport) + " hours\n");
+    if (stats.getCount('S') > 0) {
+        report.text("* Average task duration of support tasks is ").text(stats.formatAverage('S')).line(" hours").endLine();
     } else {
-        System.out.println("* No support tasks found.\n");
+        report.line("* No support tasks found.").endLine();
     }
 
     // Display average for Logistics tasks
-    if (countLogistics > 0) {
-        System.out.println("* Average task duration of logistics tasks is " + (totalLogistics / countLogistics) + " hours\n");
+    if (stats.getCount('L') > 0) {
+        report.text("* Average task duration of logistics tasks is ").text(stats.formatAverage('L')).line(" hours").endLine();
     } else {
-        System.out.println("* No logistics tasks found.\n");
+        report.line("* No logistics tasks found.").endLine();
     }
 }
 
@@ -1228,57 +1737,35 @@ private void displayAverageDurationsAcrossAllProjects(Project[] projects) {
 // -------------------------------------------------------------------------
 
 /**
- * Calculates and displays the average duration for each task type (Admin, Support, Logistics)
- * within a single project.
+ * Displays the average duration for each task type (Admin, Support, Logistics)
+ * within a single project, using the project's running totals.
  *
- * @param p The project to analyze
+ * @param report Where to write the breakdown
+ * @param projectId The project to analyze
+ * @param stats The project's duration totals
  */
-private void displayTaskDurationBreakdown(Project p) {
-    int admin = 0, countA = 0;
-    int support = 0, countS = 0;
-    int logistics = 0, countL = 0;
-
-    // Loop through each task in the project and tally durations by type
-    for (Task t : p.getTasks()) {
-        if (t != null) {
-            switch (t.getTaskType()) {
-                case 'A':
-                    admin += t.getTaskDuration();
-                    countA++;
-                    break;
-                case 'S':
-                    support += t.getTaskDuration();
-                    countS++;
-                    break;
-                case 'L':
-                    logistics += t.getTaskDuration();
-                    countL++;
-                    break;
-            }
-        }
-    }
-
-    System.out.println("\n---------------- Project " + p.getProjectId() + " ----------------\n");
+private void displayTaskDurationBreakdown(ReportWriter report, int projectId, DurationStats stats) {
+    report.endLine().text("---------------- Project ").number(projectId).line(" ----------------").endLine();
 
     // Display Admin average
-    if (countA > 0) {
-        System.out.println("* Admin average: " + (admin / countA) + " hours\n");
+    if (stats.getCount('A') > 0) {
+        report.text("* Admin average: ").text(stats.formatAverage('A')).line(" hours").endLine();
     } else {
-        System.out.println("* No admin tasks found.\n");
+        report.line("* No admin tasks found.").endLine();
     }
 
     // Display Support average
-    if (countS > 0) {
-        System.out.println("* Support average: " + (support / countS) + " hours\n");
+    if (stats.getCount('S') > 0) {
+        report.text("* Support average: ").text(stats.formatAverage('S')).line(" hours").endLine();
     } else {
-        System.out.println("* No support tasks found.\n");
+        report.line("* No support tasks found.").endLine();
     }
 
     // Display Logistics average
-    if (countL > 0) {
-        System.out.println("* Logistics average: " + (logistics / countL) + " hours\n");
+    if (stats.getCount('L') > 0) {
+        report.text("* Logistics average: ").text(stats.formatAverage('L')).line(" hours").endLine();
     } else {
-        System.out.println("* No logistics tasks found.\n");
+        report.line("* No logistics tasks found.").endLine();
     }
 }
 
@@ -1287,20 +1774,13 @@ private void displayTaskDurationBreakdown(Project p) {
 // -------------------------------------------------------------------------
 
 /**
- * Generates a random unique project ID between 1 and 999 that is not already
+ * Gets the lowest project ID between 1 and 999 that is not already
  * used by any existing project in the system.
  *
  * @return A unique project ID not currently used.
  */
 private int generateUniqueProjectId() {
-    Random rand = new Random();
-    int id;
-
-    do {
-        id = rand.nextInt(999) + 1; // generates number between 1 and 999
-    } while (isProjectIdTaken(id));
-
-    return id;
+    return service.readAll(ProjectStore::nextFreeId);
 }
 
 /**
@@ -1310,12 +1790,7 @@ private int generateUniqueProjectId() {
  * @return true if the ID is taken, false otherwise.
  */
 private boolean isProjectIdTaken(int id) {
-    for (Project p : projects) {
-        if (p != null && p.getProjectId() == id) {
-            return true;
-        }
-    }
-    return false;
+    return service.containsProject(id);
 }
 
 // -------------------------------------------------------------------------
@@ -1323,21 +1798,14 @@ private boolean isProjectIdTaken(int id) {
 // -------------------------------------------------------------------------
 
 /**
- * Generates a random unique task ID between 1 and 99 that is not already
+ * Gets the lowest task ID between 1 and the project's highest task ID that is not already
  * used by any existing task in the given project.
  *
  * @param project The project to generate a unique task ID for.
  * @return A unique task ID not currently used in that project.
  */
 private int generateUniqueTaskId(Project project) {
-    Random rand = new Random();
-    int id;
-    
-    do {
-        id = rand.nextInt(99) + 1; // generates number between 1 and 99
-    } while (isTaskIdTakenInProject(project, id));
-    
-    return id;
+    return service.readProject(project.getProjectId(), Project::nextFreeTaskId);
 }
 
 /**
@@ -1348,12 +1816,96 @@ private int generateUniqueTaskId(Project project) {
  * @return true if the ID is taken, false otherwise.
  */
 private boolean isTaskIdTakenInProject(Project project, int id) {
-    for (Task t : project.getTasks()) {
-        if (t != null && t.getTaskId() == id) {
-            return true;
+    return service.readProject(project.getProjectId(), p -> p.containsTask(id));
+}
+
+/**
+ * Checks if the given project still has an unused task ID.
+ *
+ * @param project The project to check.
+ * @return true if a new task ID can be generated, false otherwise.
+ */
+private boolean hasAvailableTaskId(Project project) {
+    return service.readProject(project.getProjectId(), Project::hasFreeTaskId);
+}
+
+// -------------------------------------------------------------------------
+// HELPER METHOD 16: Display Duration Distribution Across All Projects
+// -------------------------------------------------------------------------
+
+/**
+ * Displays the median, 90th and 99th percentile durations of each task type
+ * across all saved projects, with a histogram of durations in 10 hour bins.
+ * Read from the store's counts of tasks by duration, so no tasks are scanned.
+ *
+ * @param report Where to write the distribution
+ * @param stats The duration totals across all saved projects
+ */
+private void displayDurationDistribution(ReportWriter report, DurationStats stats) {
+    char[] types = {'A', 'S', 'L'};
+    String[] names = {"Administrative", "Support", "Logistics"};
+
+    report.line("------------------------ Task Duration Distribution ------------").endLine();
+
+    for (int i = 0; i < types.length; i++) {
+        char type = types[i];
+        if (stats.getCount(type) == 0) {
+            continue;
+        }
+        report.text("* ").text(names[i]).text(" tasks: median ").number(stats.getMedian(type))
+            .text(" hours, 90th percentile ").number(stats.getPercentile(type, 90))
+            .text(" hours, 99th percentile ").number(stats.getPercentile(type, 99)).line(" hours");
+
+        int[] bins = stats.getHistogram(type, DURATION_BIN_WIDTH);
+        int largest = 0;
+        for (int count : bins) {
+            largest = Math.max(largest, count);
+        }
+        for (int b = 0; b < bins.length; b++) {
+            // Bin range padded to 8 columns, e.g. "1-10h   "
+            int low = b * DURATION_BIN_WIDTH + 1;
+            int high = (b + 1) * DURATION_BIN_WIDTH;
+            report.text("  ").number(low).text('-').number(high).text('h')
+                .repeat(' ', 8 - (digitCount(low) + digitCount(high) + 2)).text(" | ");
+            int bar = (int) Math.ceil((double) bins[b] * HISTOGRAM_BAR_WIDTH / largest);
+            if (bar > 0) {
+                report.repeat('#', bar).text(' ');
+            }
+            report.number(bins[b]).endLine();
+        }
+        if (stats.getOutOfRangeCount(type) > 0) {
+            report.text("  (").number(stats.getOutOfRangeCount(type))
+                .line(" tasks outside 1-100 hours are counted in the first or last bin)");
         }
+        report.endLine();
+    }
+}
+
+/**
+ * Counts the decimal digits of a non-negative number, for padding report columns.
+ */
+private static int digitCount(int value) {
+    int digits = 1;
+    while (value >= 10) {
+        value /= 10;
+        digits++;
     }
-    return false;
+    return digits;
+}
+
+// -------------------------------------------------------------------------
+// HELPER METHOD 17: List Saved Project IDs
+// -------------------------------------------------------------------------
+
+/**
+ * Lists the IDs of all saved projects, in the store's order.
+ * Used by reports that read one project at a time, so no lock is held
+ * while the reader looks at a page.
+ *
+ * @return The saved project IDs.
+ */
+private int[] savedProjectIds() {
+    return service.readAll(ProjectStore::getProjectIds);
 }
 
 
@@ -0,0 +1,196 @@
+/**
+ * Tests for ProjectDataLoader.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProjectDataLoaderTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("loader-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void skipsBadLinesAndKeepsTheRest() throws IOException {
+        String data = String.join("\n",
+                "1,Alpha,Large",
+                "1,First,A,5,true",
+                "2,Second,S,10,false",
+                "3,,A,5,false",
+                "4,Bad type,X,5,false",
+                "5,Bad duration,L,0,false",
+                "1,Alpha again,Small",
+                "1000,Too high,Small",
+                "2,Beta,Small",
+                "1,Only,L,7,false",
+                "2,Over the limit,L,7,false",
+                "");
+        ProjectDataLoader loader = new ProjectDataLoader();
+        ProjectStore projects = loader.load(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, projects.size());
+        assertEquals(2, projects.get(1).getTaskCount());
+        assertEquals("Second", projects.get(1).getTask(2).getDescription());
+        assertEquals(1, projects.get(2).getTaskCount());
+
+        LoadDiagnostics diagnostics = loader.getDiagnostics();
+        assertEquals(1, diagnostics.getCount(ProjectDataLoader.Issue.EMPTY_DESCRIPTION));
+        assertEquals(1, diagnostics.getCount(ProjectDataLoader.Issue.INVALID_TASK_TYPE));
+        assertEquals(1, diagnostics.getCount(ProjectDataLoader.Issue.INVALID_DURATION));
+        assertEquals(1, diagnostics.getCount(ProjectDataLoader.Issue.DUPLICATE_PROJECT_ID));
+        assertEquals(1, diagnostics.getCount(ProjectDataLoader.Issue.INVALID_PROJECT_ID));
+        assertEquals(1, diagnostics.getCount(ProjectDataLoader.Issue.PROJECT_FULL));
+        assertEquals(6, diagnostics.getTotal());
+    }
+
+    @Test
+    void parallelLoadMatchesSequentialLoad() throws IOException {
+        Path file = dir.resolve("data.txt");
+        Files.writeString(file, sampleData());
+        ProjectStore sequential = new ProjectDataLoader().load(file.toFile());
+
+        for (long chunkSize : new long[] {1, 16, 100, 1000}) {
+            ProjectDataLoader loader = new ProjectDataLoader();
+            ProjectStore parallel;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                parallel = loader.loadParallel(channel, chunkSize);
+            }
+            String context = "chunk size " + chunkSize;
+            assertEquals(dump(sequential), dump(parallel), context);
+            assertEquals(sequential.getDurationStats().getTotal('A'), parallel.getDurationStats().getTotal('A'), context);
+            assertEquals(sequential.getTasksByType('S').size(), parallel.getTasksByType('S').size(), context);
+            assertEquals(sequential.getCompletionIndex().getCompletedCount(),
+                    parallel.getCompletionIndex().getCompletedCount(), context);
+            assertEquals(sequential.searchTaskDescriptions("task 7", false, 100, null).size(),
+                    parallel.searchTaskDescriptions("task 7", false, 100, null).size(), context);
+            assertEquals(3, loader.getDiagnostics().getCount(ProjectDataLoader.Issue.DUPLICATE_PROJECT_ID), context);
+        }
+    }
+
+    @Test
+    void parallelLoadKeepsOnlyTheFirstOfADuplicateProject() throws IOException {
+        Path file = dir.resolve("data.txt");
+        Files.writeString(file, "7,First,Small\n1,Kept,A,1,false\n7,Second,Small\n1,Dropped,A,1,false\n");
+
+        ProjectStore parallel;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            parallel = new ProjectDataLoader().loadParallel(channel, 1);
+        }
+        assertEquals(1, parallel.size());
+        assertEquals("First", parallel.get(7).getProjectName());
+        assertEquals("Kept", parallel.get(7).getTask(1).getDescription());
+        assertNull(parallel.get(8));
+    }
+
+    @Test
+    void summaryKeepsOnlyASampleOfSkippedLines() throws IOException {
+        StringBuilder data = new StringBuilder("1,Alpha,Large\n");
+        for (int i = 0; i < 50; i++) {
+            data.append("bad line ").append(i).append('\n');
+        }
+        ProjectDataLoader loader = new ProjectDataLoader();
+        loader.load(new ByteArrayInputStream(data.toString().getBytes(StandardCharsets.UTF_8)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        loader.getDiagnostics().printSummary(new PrintStream(out, true, StandardCharsets.UTF_8), "test");
+        long shown = out.toString(StandardCharsets.UTF_8).lines().filter(line -> line.startsWith("  Line ")).count();
+
+        assertEquals(50, loader.getDiagnostics().getCount(ProjectDataLoader.Issue.MALFORMED_LINE));
+        assertEquals(LoadDiagnostics.SAMPLE_SIZE, shown);
+    }
+
+    @Test
+    void parallelReportMatchesSequentialReport() throws IOException {
+        Path file = dir.resolve("data.txt");
+        Files.writeString(file, sampleData());
+        Path sequentialReport = dir.resolve("sequential.txt");
+        Path parallelReport = dir.resolve("parallel.txt");
+
+        ProjectDataLoader sequential = new ProjectDataLoader();
+        sequential.setReportFile(sequentialReport);
+        sequential.load(file.toFile());
+
+        ProjectDataLoader parallel = new ProjectDataLoader();
+        parallel.setReportFile(parallelReport);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            parallel.loadParallel(channel, 16);
+        }
+        parallel.getDiagnostics().finish();
+
+        List<String> lines = Files.readAllLines(sequentialReport);
+        assertEquals(sequential.getDiagnostics().getTotal(), lines.size());
+        assertEquals(lines, Files.readAllLines(parallelReport));
+        // The chunks' spill files are gone
+        try (Stream<Path> files = Files.list(dir)) {
+            assertFalse(files.anyMatch(p -> p.getFileName().toString().endsWith(".part")));
+        }
+    }
+
+    /**
+     * Builds a file with 40 projects, some of them repeating an earlier ID.
+     */
+    static String sampleData() {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 1; p <= 40; p++) {
+            int projectId = (p % 13 == 0) ? p / 13 + 100 : p + 100;
+            sb.append(projectId).append(",Project ").append(p).append(",Large\n");
+            for (int t = 1; t <= p % 4; t++) {
+                sb.append(t).append(",Task ").append(p * 10 + t).append(',')
+                        .append("ASL".charAt((p + t) % 3)).append(',').append((p * t) % 100 + 1)
+                        .append(',').append(t % 2 == 0).append('\n');
+            }
+            if (p % 9 == 0) {
+                sb.append("not,a,valid,line\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lists every project and task, in store order.
+     */
+    static String dump(ProjectStore projects) {
+        StringBuilder sb = new StringBuilder();
+        for (Project p : projects) {
+            sb.append(p.getProjectId()).append(',').append(p.getProjectName()).append(',')
+                    .append(p.getProjectType()).append('\n');
+            for (Task t : p.getTasks()) {
+                if (t != null) {
+                    sb.append("  ").append(t.getTaskId()).append(',').append(t.getDescription()).append(',')
+                            .append(t.getTaskType()).append(',').append(t.getTaskDuration()).append(',')
+                            .append(t.isCompleted()).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
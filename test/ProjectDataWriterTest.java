@@ -0,0 +1,122 @@
+/**
+ * Tests for ProjectDataWriter.
+ */
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProjectDataWriterTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("writer-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void savedFileLoadsBackTheSameProjects() throws IOException {
+        ProjectStore projects = sampleProjects();
+        Path file = dir.resolve("data.txt");
+        new ProjectDataWriter().save(projects, file);
+
+        ProjectStore loaded = new ProjectDataLoader().load(file.toFile());
+        assertEquals(ProjectDataLoaderTest.dump(projects), ProjectDataLoaderTest.dump(loaded));
+        // No temporary file is left next to the data file
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void saveKeepsTheFilePermissions() throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        ProjectStore projects = sampleProjects();
+        Path file = dir.resolve("data.txt");
+        new ProjectDataWriter().save(projects, file);
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r--r--"));
+
+        new ProjectDataWriter().save(projects, file);
+        assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+    }
+
+    @Test
+    void saveChangesWritesNothingWhenNothingChanged() throws IOException {
+        ProjectStore projects = sampleProjects();
+        Path file = dir.resolve("data.txt");
+        new ProjectDataWriter().save(projects, file);
+        FileTime saved = Files.getLastModifiedTime(file);
+
+        assertEquals(0, new ProjectDataWriter().saveChanges(projects, file));
+        assertEquals(saved, Files.getLastModifiedTime(file));
+    }
+
+    @Test
+    void saveChangesMatchesAFullSave() throws IOException {
+        ProjectStore projects = sampleProjects();
+        Path file = dir.resolve("data.txt");
+        new ProjectDataWriter().save(projects, file);
+
+        projects.get(1).getTask(2).setDescription("Edited");
+        projects.get(3).setProjectName("Renamed");
+        assertEquals(2, new ProjectDataWriter().saveChanges(projects, file));
+        projects.remove(2);
+        assertEquals(1, new ProjectDataWriter().saveChanges(projects, file));
+
+        Path full = dir.resolve("full.txt");
+        new ProjectDataWriter().save(projects, full);
+        assertArrayEquals(Files.readAllBytes(full), Files.readAllBytes(file));
+    }
+
+    @Test
+    void saveChangesRewritesAFileChangedElsewhere() throws IOException {
+        ProjectStore projects = sampleProjects();
+        Path file = dir.resolve("data.txt");
+        new ProjectDataWriter().save(projects, file);
+        Files.writeString(file, "1,Someone else's,Small\n");
+
+        assertEquals(3, new ProjectDataWriter().saveChanges(projects, file));
+        assertEquals(ProjectDataLoaderTest.dump(projects),
+                ProjectDataLoaderTest.dump(new ProjectDataLoader().load(file.toFile())));
+    }
+
+    /**
+     * Creates three projects with a few tasks each, one with text outside ASCII.
+     */
+    static ProjectStore sampleProjects() {
+        ProjectStore projects = new ProjectStore();
+        for (int id = 1; id <= 3; id++) {
+            Project p = new Project();
+            p.setProjectId(id);
+            p.setProjectName("Project " + id);
+            p.setProjectType("Large");
+            projects.add(p);
+            for (int t = 1; t <= 3; t++) {
+                p.addTask(new Task(t, "Task " + t + (id == 2 ? " caf\u00e9" : ""), "ASL".charAt(t - 1), id * 10 + t, t == 2));
+            }
+        }
+        return projects;
+    }
+}
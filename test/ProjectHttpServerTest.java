@@ -0,0 +1,62 @@
+/**
+ * Tests for ProjectHttpServer.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProjectHttpServerTest {
+
+    private ProjectHttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new ProjectHttpServer(new ProjectService(new ProjectStore()), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    void foreignHostIsRefused() throws IOException {
+        assertEquals(403, statusFor("attacker.example"));
+        assertEquals(403, statusFor("attacker.example:" + server.getPort()));
+        assertEquals(403, statusFor("localhost.attacker.example"));
+    }
+
+    @Test
+    void loopbackHostsAreServed() throws IOException {
+        assertEquals(200, statusFor("localhost"));
+        assertEquals(200, statusFor("localhost:" + server.getPort()));
+        assertEquals(200, statusFor("127.0.0.1:" + server.getPort()));
+        assertEquals(200, statusFor("[::1]:" + server.getPort()));
+    }
+
+    /**
+     * Sends GET /projects with the given Host header and returns the response status.
+     */
+    private int statusFor(String host) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            String request = "GET /projects HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n";
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            String response = new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+            // Status line: HTTP/1.1 200 OK
+            return Integer.parseInt(response.split(" ", 3)[1]);
+        }
+    }
+}
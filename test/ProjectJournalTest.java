@@ -0,0 +1,130 @@
+/**
+ * Tests for ProjectJournal.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProjectJournalTest {
+
+    private Path dir;
+    private Path dataFile;
+
+    @BeforeEach
+    void createDataFile() throws IOException {
+        dir = Files.createTempDirectory("journal-test");
+        dataFile = dir.resolve("data.txt");
+        new ProjectDataWriter().save(ProjectDataWriterTest.sampleProjects(), dataFile);
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void recoverReplaysChangesOnTopOfTheDataFile() throws IOException {
+        ProjectJournal journal = ProjectJournal.open(dataFile);
+        ProjectStore projects = journal.recover();
+        recordChanges(journal, projects);
+        journal.sync();
+        journal.close();
+
+        ProjectJournal reopened = ProjectJournal.open(dataFile);
+        ProjectStore recovered = reopened.recover();
+        reopened.close();
+        assertEquals(ProjectDataLoaderTest.dump(projects), ProjectDataLoaderTest.dump(recovered));
+        assertEquals(5, reopened.getChangeCount());
+    }
+
+    @Test
+    void tornRecordAtTheEndIsDropped() throws IOException {
+        ProjectJournal journal = ProjectJournal.open(dataFile);
+        ProjectStore projects = journal.recover();
+        recordChanges(journal, projects);
+        journal.sync();
+        long complete = Files.size(journalFile());
+        journal.addTask(1, new Task(9, "Torn", 'A', 5, false));
+        journal.sync();
+        journal.close();
+
+        // Cut the last record short, as a crash part way through the write would
+        try (FileChannel channel = FileChannel.open(journalFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(journalFile()) - 3);
+        }
+
+        ProjectJournal reopened = ProjectJournal.open(dataFile);
+        ProjectStore recovered = reopened.recover();
+        assertEquals(ProjectDataLoaderTest.dump(projects), ProjectDataLoaderTest.dump(recovered));
+        assertEquals(complete, Files.size(journalFile()));
+
+        // New records go after the last complete one
+        reopened.completeTask(3, 1);
+        reopened.sync();
+        reopened.close();
+        ProjectJournal again = ProjectJournal.open(dataFile);
+        ProjectStore afterRestart = again.recover();
+        again.close();
+        assertTrue(afterRestart.get(3).getTask(1).isCompleted());
+        assertEquals(6, again.getChangeCount());
+    }
+
+    @Test
+    void compactWritesTheDataFileAndEmptiesTheJournal() throws IOException {
+        ProjectJournal journal = ProjectJournal.open(dataFile);
+        ProjectStore projects = journal.recover();
+        recordChanges(journal, projects);
+        journal.compact(projects);
+        assertEquals(0, journal.getChangeCount());
+        assertEquals(ProjectJournal.HEADER_SIZE, Files.size(journalFile()));
+        journal.close();
+
+        ProjectJournal reopened = ProjectJournal.open(dataFile);
+        ProjectStore recovered = reopened.recover();
+        reopened.close();
+        assertEquals(ProjectDataLoaderTest.dump(projects), ProjectDataLoaderTest.dump(recovered));
+    }
+
+    /**
+     * Makes five changes to the projects and records each one in the journal.
+     */
+    private static void recordChanges(ProjectJournal journal, ProjectStore projects) throws IOException {
+        Project added = new Project();
+        added.setProjectId(4);
+        added.setProjectName("Added later");
+        added.setProjectType("Medium");
+        projects.add(added);
+        journal.createProject(added);
+
+        Task task = new Task(1, "Journaled task", 'L', 12, false);
+        added.addTask(task);
+        journal.addTask(4, task);
+
+        projects.get(1).getTask(1).setCompleted(true);
+        journal.completeTask(1, 1);
+
+        projects.get(3).removeTask(2);
+        journal.removeTask(3, 2);
+
+        projects.remove(2);
+        journal.removeProject(2);
+    }
+
+    private Path journalFile() {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".journal");
+    }
+}
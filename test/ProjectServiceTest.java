@@ -0,0 +1,43 @@
+/**
+ * Tests for ProjectService.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ProjectServiceTest {
+
+    @AfterEach
+    void restoreTaskLimits() {
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.STANDARD);
+    }
+
+    @Test
+    void unlimitedProjectTakesMoreThan99Tasks() {
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.UNLIMITED);
+        ProjectService service = new ProjectService(new ProjectStore());
+        int projectId = service.createProject("Big project", "Large");
+
+        for (int i = 1; i <= 250; i++) {
+            assertEquals(i, service.addTask(projectId, "Task " + i, 'A', 5, false));
+        }
+        service.addTask(projectId, 1000, "Chosen ID", 'S', 5, false);
+
+        assertEquals(251, service.getTasks(projectId).size());
+        assertEquals("Chosen ID", service.getTask(projectId, 1000).getDescription());
+    }
+
+    @Test
+    void standardProjectKeepsTaskIdsUpTo99() {
+        ProjectService service = new ProjectService(new ProjectStore());
+        int projectId = service.createProject("Small project", "Small");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.addTask(projectId, 100, "Too high", 'A', 5, false));
+        service.addTask(projectId, 99, "Highest", 'A', 5, false);
+        assertThrows(IllegalStateException.class,
+                () -> service.addTask(projectId, "Over the limit", 'A', 5, false));
+    }
+}
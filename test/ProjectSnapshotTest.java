@@ -0,0 +1,107 @@
+/**
+ * Tests for ProjectSnapshot and stores opened from a snapshot.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProjectSnapshotTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("snapshot-test");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.STANDARD);
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void loadedSnapshotHoldsTheSavedProjects() throws IOException {
+        ProjectStore projects = ProjectDataWriterTest.sampleProjects();
+        Path file = dir.resolve("data.snap");
+        new ProjectSnapshot().save(projects, file);
+
+        assertTrue(ProjectSnapshot.isSnapshot(file));
+        assertEquals(ProjectDataLoaderTest.dump(projects), ProjectDataLoaderTest.dump(new ProjectSnapshot().load(file)));
+    }
+
+    @Test
+    void openedSnapshotReadsEachProjectOnFirstUse() throws IOException {
+        ProjectStore projects = ProjectDataWriterTest.sampleProjects();
+        Path file = dir.resolve("data.snap");
+        new ProjectSnapshot().save(projects, file);
+
+        ProjectStore opened = ProjectStore.openSnapshot(file);
+        assertEquals(3, opened.size());
+        assertFalse(opened.isInMemory(1));
+        assertFalse(opened.isInMemory(2));
+
+        assertEquals("Project 2", opened.get(2).getProjectName());
+        assertEquals(3, opened.get(2).getTaskCount());
+        assertTrue(opened.isInMemory(2));
+        assertFalse(opened.isInMemory(1));
+
+        opened.readAllIntoMemory();
+        assertTrue(opened.isAllInMemory());
+        assertEquals(ProjectDataLoaderTest.dump(projects), ProjectDataLoaderTest.dump(opened));
+    }
+
+    @Test
+    void openedSnapshotHasDurationTotalsWithoutReadingProjects() throws IOException {
+        ProjectStore projects = ProjectDataWriterTest.sampleProjects();
+        DurationStats saved = projects.getDurationStats();
+        Path file = dir.resolve("data.snap");
+        new ProjectSnapshot().save(projects, file);
+
+        ProjectStore opened = ProjectStore.openSnapshot(file);
+        for (char type : new char[] {'A', 'S', 'L'}) {
+            assertEquals(saved.getCount(type), opened.getDurationStats().getCount(type));
+            assertEquals(saved.getTotal(type), opened.getDurationStats().getTotal(type));
+        }
+        assertFalse(opened.isInMemory(1));
+
+        // Reading the projects in does not count their tasks again
+        opened.readAllIntoMemory();
+        assertEquals(saved.getTotal('S'), opened.getDurationStats().getTotal('S'));
+        assertEquals(saved.getMedian('L'), opened.getDurationStats().getMedian('L'));
+    }
+
+    @Test
+    void snapshotKeepsTasksBeyondTheCurrentTaskLimit() throws IOException {
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.UNLIMITED);
+        ProjectStore projects = new ProjectStore();
+        Project big = new Project();
+        big.setProjectId(1);
+        big.setProjectName("Big");
+        big.setProjectType("Small");
+        projects.add(big);
+        for (int t = 1; t <= 10; t++) {
+            big.addTask(new Task(t, "Task " + t, 'A', t, false));
+        }
+        Path file = dir.resolve("data.snap");
+        new ProjectSnapshot().save(projects, file);
+
+        // Version 2 snapshots carry the task limits the projects were saved with
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.STANDARD);
+        ProjectStore opened = ProjectStore.openSnapshot(file);
+        assertEquals(10, opened.get(1).getTaskCount());
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Tests for QueryPlanner.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class QueryPlannerTest {
+
+    private ProjectStore projects;
+
+    /**
+     * 20 projects of 10 tasks: 100 Admin, 60 Support and 40 Logistics tasks, every
+     * third one completed, with durations 1-50.
+     */
+    @BeforeEach
+    void createProjects() {
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.UNLIMITED);
+        projects = new ProjectStore();
+        int n = 0;
+        for (int id = 1; id <= 20; id++) {
+            Project p = new Project();
+            p.setProjectId(id);
+            p.setProjectName("Project " + id);
+            p.setProjectType("Large");
+            projects.add(p);
+            for (int t = 1; t <= 10; t++, n++) {
+                char type = (t <= 5) ? 'A' : (t <= 8) ? 'S' : 'L';
+                p.addTask(new Task(t, "Task " + n, type, n % 50 + 1, n % 3 == 0));
+            }
+        }
+    }
+
+    @AfterEach
+    void restoreTaskLimits() {
+        Project.setDefaultTaskLimitPolicy(TaskLimitPolicy.STANDARD);
+    }
+
+    @Test
+    void typeOnlyQueryIsAnsweredByTheTypeIndex() {
+        QueryPlanner.Plan plan = QueryPlanner.plan(TaskQuery.parse("type=S"), projects);
+        assertEquals(60, plan.getEstimatedTasks());
+        assertTrue(plan.isExact());
+        assertTrue(plan.describe().startsWith("type index"));
+    }
+
+    @Test
+    void narrowProjectRangeBeatsTheScan() {
+        QueryPlanner.Plan plan = QueryPlanner.plan(TaskQuery.parse("project=3..4 duration=5"), projects);
+        assertEquals(20, plan.getEstimatedTasks());
+        assertFalse(plan.isExact());
+        assertTrue(plan.describe().startsWith("project ID range"));
+    }
+
+    @Test
+    void completionIndexWinsWhenItIsTheSmallestSet() {
+        QueryPlanner.Plan plan = QueryPlanner.plan(TaskQuery.parse("completed=true name=Project"), projects);
+        assertEquals(67, plan.getEstimatedTasks());
+        assertTrue(plan.describe().startsWith("completion index"));
+    }
+
+    @Test
+    void durationPlanIsCostedByTheTasksItReads() {
+        // Without types it reads every task, even though only a few match
+        QueryPlanner.Plan all = QueryPlanner.plan(TaskQuery.parse("duration=1..2"), projects);
+        assertEquals(200, all.getEstimatedTasks());
+        assertEquals(8, all.getMatchCount());
+        assertTrue(all.isExact());
+
+        QueryPlanner.Plan logistics = QueryPlanner.plan(TaskQuery.parse("type=L duration=1..10"), projects);
+        assertEquals(40, logistics.getEstimatedTasks());
+        assertTrue(logistics.describe().startsWith("duration counts"));
+    }
+
+    @Test
+    void countQueryMatchesTheTasksFound() {
+        for (String text : new String[] {"duration=1..2", "type=A,L duration=10..30", "completed=false type=S",
+                "project=5..9 completed=true"}) {
+            long counted = TaskQuery.parse(text + " count").run(projects).getMatchCount();
+            long listed = TaskQuery.parse(text).run(projects).getMatches().size();
+            assertEquals(listed, counted, text);
+        }
+    }
+}
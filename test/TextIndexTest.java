@@ -0,0 +1,99 @@
+/**
+ * Tests for TextIndex.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TextIndexTest {
+
+    // Items are one-element arrays, so a test can change an item's text
+    private TextIndex<String[]> index;
+    private final List<String[]> items = new ArrayList<>();
+
+    @BeforeEach
+    void createIndex() {
+        index = new TextIndex<>(item -> item[0]);
+        add("Fix login page");
+        add("Update the website");
+        add("Order office supplies");
+        add("Web site launch");
+        add("Plan the launch party, launch day");
+    }
+
+    @Test
+    void prefixSearchMatchesTheStartOfAnyWord() {
+        // Items come in the order of the words they matched: "web", then "website"
+        assertEquals(List.of("Web site launch", "Update the website"), texts(index.searchPrefix("we", 10, null)));
+        assertEquals(List.of("Fix login page"), texts(index.searchPrefix("LOG", 10, null)));
+        assertEquals(List.of(), texts(index.searchPrefix("ogin", 10, null)));
+    }
+
+    @Test
+    void prefixSearchWithSeveralWordsMatchesThePhrase() {
+        assertEquals(List.of("Web site launch"), texts(index.searchPrefix("web si", 10, null)));
+        assertEquals(List.of(), texts(index.searchPrefix("site web", 10, null)));
+    }
+
+    @Test
+    void substringSearchMatchesInsideWords() {
+        assertEquals(List.of("Fix login page"), texts(index.searchSubstring("ogin", 10, null)));
+        assertEquals(List.of("Update the website"), texts(index.searchSubstring("bsit", 10, null)));
+        // Under three letters the whole dictionary is checked
+        assertEquals(List.of("Order office supplies"), texts(index.searchSubstring("ff", 10, null)));
+        assertEquals(List.of("Plan the launch party, launch day"), texts(index.searchSubstring("ty, lau", 10, null)));
+    }
+
+    @Test
+    void eachItemIsFoundOnceAndLimitAndFilterApply() {
+        assertEquals(List.of("Web site launch", "Plan the launch party, launch day"),
+                texts(index.searchPrefix("launch", 10, null)));
+        assertEquals(1, index.searchPrefix("launch", 1, null).size());
+        assertEquals(List.of("Plan the launch party, launch day"),
+                texts(index.searchSubstring("aunc", 10, item -> item[0].startsWith("Plan"))));
+    }
+
+    @Test
+    void removedAndChangedItemsAreFoundByTheirCurrentText() {
+        index.remove(0, items.get(0)[0]);
+        assertEquals(List.of(), texts(index.searchPrefix("login", 10, null)));
+        assertEquals(4, index.size());
+
+        String old = items.get(2)[0];
+        items.get(2)[0] = "Order new chairs";
+        index.textChanged(2, old);
+        assertEquals(List.of(), texts(index.searchPrefix("office", 10, null)));
+        assertEquals(List.of("Order new chairs"), texts(index.searchSubstring("hair", 10, null)));
+    }
+
+    @Test
+    void manyChangesStillFindTheCurrentText() {
+        String[] item = items.get(1);
+        for (int i = 0; i < 500; i++) {
+            String old = item[0];
+            item[0] = "Revision " + i;
+            index.textChanged(1, old);
+        }
+        assertEquals(List.of("Revision 499"), texts(index.searchPrefix("revision 499", 10, null)));
+        assertEquals(1, index.searchPrefix("revision", 10, null).size());
+        assertTrue(index.countPrefixCandidates("revision") >= 1);
+    }
+
+    private void add(String text) {
+        String[] item = {text};
+        index.add(items.size(), item);
+        items.add(item);
+    }
+
+    private static List<String> texts(List<String[]> found) {
+        List<String> texts = new ArrayList<>();
+        for (String[] item : found) {
+            texts.add(item[0]);
+        }
+        return texts;
+    }
+}